@@ -0,0 +1,198 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cstansbury.vertx.jdbc.benchmark;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+
+/**
+ * The in-memory HSQLDB schema of the benchmarks: a 'narrow' table of 4 columns and a 'wide' table of 32 columns of
+ * mixed types, each filled with the given number of rows, and an 'insert_narrow' procedure.
+ *
+ * @author cstansbury
+ */
+public class BenchmarkDatabase implements AutoCloseable {
+
+  // -------------------------------------------------------------------------
+  // Constants
+  // -------------------------------------------------------------------------
+
+  public static final String USER = "sa";
+
+  public static final String PASSWORD = "";
+
+  public static final int WIDE_COLUMN_GROUPS = 8;
+
+  public static final JsonArray PARAMS_INFO_INSERT_NARROW = new JsonArray()
+    .add(new JsonObject().put("mode", "IN"))
+    .add(new JsonObject().put("mode", "IN"))
+    .add(new JsonObject().put("mode", "OUT").put("name", "total").put("type", Types.INTEGER));
+
+  // -------------------------------------------------------------------------
+  // Member Variables
+  // -------------------------------------------------------------------------
+
+  private final String mUrl;
+
+  private final Connection mConnection;
+
+  // -------------------------------------------------------------------------
+  // Constructors
+  // -------------------------------------------------------------------------
+
+  /**
+   * Creates (and fills) the schema in the named in-memory database.
+   *
+   * @param name
+   * @param rows the number of rows of each table
+   * @throws SQLException
+   */
+  public BenchmarkDatabase(final String name, final int rows) throws SQLException {
+    mUrl = "jdbc:hsqldb:mem:" + name;
+    mConnection = DriverManager.getConnection(mUrl, USER, PASSWORD);
+
+    try (final Statement statement = mConnection.createStatement()) {
+      statement.execute("create table narrow ( " +
+        "id integer generated by default as identity(start with 1) primary key, " +
+        "name varchar(30) not null, " +
+        "amount integer, " +
+        "active boolean " +
+      ")");
+
+      final StringBuilder wide = new StringBuilder("create table wide (id integer primary key");
+      for (int i = 0; i < WIDE_COLUMN_GROUPS; i++) {
+        wide.append(", name").append(i).append(" varchar(30)");
+        wide.append(", amount").append(i).append(" bigint");
+        wide.append(", price").append(i).append(" double");
+        wide.append(", created").append(i).append(" timestamp");
+      }
+      statement.execute(wide.append(", total double, flag boolean, code char(4))").toString());
+
+      statement.execute("create procedure insert_narrow (name varchar(30), amount integer, out total integer) " +
+        "modifies sql data " +
+        "begin atomic " +
+          "insert into narrow values (DEFAULT, name, amount, true); " +
+          "select count(*) into total from narrow; " +
+        "end");
+    }
+
+    fill(rows);
+  }
+
+  // -------------------------------------------------------------------------
+  // Public Protocol
+  // -------------------------------------------------------------------------
+
+  /**
+   * Returns the config of an executor of the database.
+   *
+   * @param address
+   * @param maximumPoolSize
+   * @return
+   */
+  public JsonObject getExecutorConfig(final String address, final int maximumPoolSize) {
+    return new JsonObject()
+      .put("address", address)
+      .put("pool", new JsonObject()
+        .put("jdbcUrl", mUrl)
+        .put("username", USER)
+        .put("password", PASSWORD)
+        .put("maximumPoolSize", maximumPoolSize)
+      )
+      .put("statementCache", new JsonObject());
+  }
+
+  /**
+   * Returns the params of a row of the 'wide' table.
+   *
+   * @param id
+   * @return
+   */
+  public static JsonArray getWideRowParams(final int id) {
+    final JsonArray params = new JsonArray().add(id);
+    for (int i = 0; i < WIDE_COLUMN_GROUPS; i++) {
+      params.add("name-" + id + "-" + i).add((long) id * i).add(id / 3.0 + i).add("2014-12-11 10:00:0" + i);
+    }
+    return params.add(1234.56).add(id % 2 == 0).add("C" + (id % 1000));
+  }
+
+  @Override
+  public void close() throws SQLException {
+    try (final Statement statement = mConnection.createStatement()) {
+      statement.execute("drop procedure insert_narrow");
+      statement.execute("drop table narrow");
+      statement.execute("drop table wide");
+    } finally {
+      mConnection.close();
+    }
+  }
+
+  // -------------------------------------------------------------------------
+  // Private Protocol
+  // -------------------------------------------------------------------------
+
+  private void fill(final int rows) throws SQLException {
+    final StringBuilder wideSql = new StringBuilder("insert into wide values (?");
+    for (int i = 1; i < 4 * WIDE_COLUMN_GROUPS + 4; i++) {
+      wideSql.append(", ?");
+    }
+
+    try (final PreparedStatement narrow = mConnection.prepareStatement("insert into narrow(name, amount, active) values (?, ?, ?)");
+      final PreparedStatement wide = mConnection.prepareStatement(wideSql.append(')').toString())) {
+      for (int id = 1; id <= rows; id++) {
+        narrow.setString(1, "name-" + id);
+        narrow.setInt(2, id);
+        narrow.setBoolean(3, id % 2 == 0);
+        narrow.addBatch();
+
+        final JsonArray params = getWideRowParams(id);
+        for (int i = 0; i < params.size(); i++) {
+          final Object value = params.getValue(i);
+          if (value instanceof String && ((String) value).startsWith("2014-")) {
+            wide.setTimestamp(i + 1, Timestamp.valueOf((String) value));
+          } else {
+            wide.setObject(i + 1, value);
+          }
+        }
+        wide.addBatch();
+      }
+      narrow.executeBatch();
+      wide.executeBatch();
+    }
+  }
+
+  // -------------------------------------------------------------------------
+  // Member Accessors
+  // -------------------------------------------------------------------------
+
+  public String getUrl() {
+    return mUrl;
+  }
+
+  public Connection getConnection() {
+    return mConnection;
+  }
+
+}
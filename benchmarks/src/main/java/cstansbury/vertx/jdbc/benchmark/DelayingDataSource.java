@@ -0,0 +1,216 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cstansbury.vertx.jdbc.benchmark;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+/**
+ * A DataSource of the connections of a JDBC URL that simulates a (slow) remote database: each statement execution,
+ * commit and rollback is delayed by 'delayMillis' (plus a random 'jitterMillis'), as if it were a round trip over the
+ * network.
+ * <p>
+ * It is configured as the executor's pool data source through the HikariCP config:
+ * <pre>
+ *   pool: {
+ *     dataSourceClassName: "cstansbury.vertx.jdbc.benchmark.DelayingDataSource",
+ *     dataSource.url: "jdbc:hsqldb:mem:load",
+ *     dataSource.user: "sa",
+ *     dataSource.delayMillis: 5
+ *   }
+ * </pre>
+ *
+ * @author cstansbury
+ */
+public class DelayingDataSource implements DataSource {
+
+  // -------------------------------------------------------------------------
+  // Member Variables
+  // -------------------------------------------------------------------------
+
+  private String mUrl;
+
+  private String mUser;
+
+  private String mPassword = "";
+
+  private long mDelayMillis;
+
+  private long mJitterMillis;
+
+  private PrintWriter mLogWriter;
+
+  private int mLoginTimeout;
+
+  // -------------------------------------------------------------------------
+  // Overridden DataSource Protocol
+  // -------------------------------------------------------------------------
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    return getConnection(mUser, mPassword);
+  }
+
+  @Override
+  public Connection getConnection(final String user, final String password) throws SQLException {
+    return wrap(Connection.class, DriverManager.getConnection(mUrl, user, password));
+  }
+
+  @Override
+  public PrintWriter getLogWriter() {
+    return mLogWriter;
+  }
+
+  @Override
+  public void setLogWriter(final PrintWriter logWriter) {
+    mLogWriter = logWriter;
+  }
+
+  @Override
+  public void setLoginTimeout(final int seconds) {
+    mLoginTimeout = seconds;
+  }
+
+  @Override
+  public int getLoginTimeout() {
+    return mLoginTimeout;
+  }
+
+  @Override
+  public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+    throw new SQLFeatureNotSupportedException();
+  }
+
+  @Override
+  public <T> T unwrap(final Class<T> iface) throws SQLException {
+    throw new SQLException("Not a wrapper of " + iface);
+  }
+
+  @Override
+  public boolean isWrapperFor(final Class<?> iface) {
+    return false;
+  }
+
+  // -------------------------------------------------------------------------
+  // Private Protocol
+  // -------------------------------------------------------------------------
+
+  /**
+   * Wraps the connection or statement in a proxy that delays its round trips, and wraps the statements it creates.
+   */
+  private <T> T wrap(final Class<T> type, final T target) {
+    final InvocationHandler handler = (proxy, method, args) -> {
+      if (isRoundTrip(method)) {
+        delay();
+      }
+
+      final Object result;
+      try {
+        result = method.invoke(target, args);
+      } catch (final InvocationTargetException e) {
+        throw e.getCause();
+      }
+
+      if (result instanceof CallableStatement) {
+        return wrap(CallableStatement.class, (CallableStatement) result);
+      } else if (result instanceof PreparedStatement) {
+        return wrap(PreparedStatement.class, (PreparedStatement) result);
+      } else if (result instanceof Statement) {
+        return wrap(Statement.class, (Statement) result);
+      }
+      return result;
+    };
+
+    return type.cast(Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { type }, handler));
+  }
+
+  private boolean isRoundTrip(final Method method) {
+    final String name = method.getName();
+    return name.startsWith("execute") || "commit".equals(name) || "rollback".equals(name);
+  }
+
+  private void delay() {
+    final long delay = mDelayMillis + (mJitterMillis > 0 ? ThreadLocalRandom.current().nextLong(mJitterMillis + 1) : 0);
+    if (delay > 0) {
+      try {
+        TimeUnit.MILLISECONDS.sleep(delay);
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  // -------------------------------------------------------------------------
+  // Member Accessors
+  // -------------------------------------------------------------------------
+
+  public String getUrl() {
+    return mUrl;
+  }
+
+  public void setUrl(final String url) {
+    mUrl = url;
+  }
+
+  public String getUser() {
+    return mUser;
+  }
+
+  public void setUser(final String user) {
+    mUser = user;
+  }
+
+  public String getPassword() {
+    return mPassword;
+  }
+
+  public void setPassword(final String password) {
+    mPassword = password;
+  }
+
+  public long getDelayMillis() {
+    return mDelayMillis;
+  }
+
+  public void setDelayMillis(final long delayMillis) {
+    mDelayMillis = delayMillis;
+  }
+
+  public long getJitterMillis() {
+    return mJitterMillis;
+  }
+
+  public void setJitterMillis(final long jitterMillis) {
+    mJitterMillis = jitterMillis;
+  }
+
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cstansbury.vertx.jdbc.benchmark;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cstansbury.vertx.jdbc.dialect.BaseJdbcDialect;
+import cstansbury.vertx.jdbc.dialect.BindPlan;
+
+/**
+ * Micro-benchmarks of the hot paths of {@link BaseJdbcDialect}: parsing a ResultSet (of narrow or wide rows) into
+ * JSON, binding params and splitting a request's params into its sets of bind params. The ResultSets are scrollable,
+ * and rewound before each parse, so the benchmarks measure the parsing rather than the query.
+ *
+ * @author cstansbury
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DialectBenchmark {
+
+  // -------------------------------------------------------------------------
+  // Params
+  // -------------------------------------------------------------------------
+
+  @Param({ "narrow", "wide" })
+  public String table;
+
+  @Param({ "100" })
+  public int rows;
+
+  // -------------------------------------------------------------------------
+  // Member Variables
+  // -------------------------------------------------------------------------
+
+  private BenchmarkDatabase mDatabase;
+
+  private BenchmarkDialect mDialect;
+
+  private PreparedStatement mQueryStatement;
+
+  private ResultSet mResultSet;
+
+  private PreparedStatement mInsertStatement;
+
+  private JsonArray mInsertParams;
+
+  private BindPlan mInsertBindPlan;
+
+  private JsonObject mSingleParamsBody;
+
+  private JsonObject mMultiParamsBody;
+
+  // -------------------------------------------------------------------------
+  // Setup / Teardown
+  // -------------------------------------------------------------------------
+
+  @Setup
+  public void setUp() throws SQLException {
+    mDatabase = new BenchmarkDatabase("dialect-" + table, rows);
+    mDialect = new BenchmarkDialect();
+
+    mQueryStatement = mDatabase.getConnection().prepareStatement("select * from " + table + " order by id", ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+    mResultSet = mQueryStatement.executeQuery();
+
+    final JsonArray rowParams = "wide".equals(table) ? BenchmarkDatabase.getWideRowParams(rows + 1) : new JsonArray().add("name").add(rows + 1).add(true);
+    final StringBuilder insertSql = new StringBuilder("insert into ").append(table).append(" values (").append("narrow".equals(table) ? "DEFAULT, ?" : "?");
+    for (int i = 1; i < rowParams.size(); i++) {
+      insertSql.append(", ?");
+    }
+    mInsertStatement = mDatabase.getConnection().prepareStatement(insertSql.append(')').toString());
+    mInsertParams = rowParams;
+    mInsertBindPlan = BindPlan.fromMetaData(mInsertStatement);
+
+    final JsonArray allParams = new JsonArray();
+    for (int i = 0; i < rows; i++) {
+      allParams.add(rowParams.copy());
+    }
+    mSingleParamsBody = new JsonObject().put("sql", insertSql.toString()).put("params", rowParams);
+    mMultiParamsBody = new JsonObject().put("sql", insertSql.toString()).put("params", allParams);
+  }
+
+  @TearDown
+  public void tearDown() throws SQLException {
+    mResultSet.close();
+    mQueryStatement.close();
+    mInsertStatement.close();
+    mDatabase.close();
+  }
+
+  // -------------------------------------------------------------------------
+  // Benchmarks
+  // -------------------------------------------------------------------------
+
+  @Benchmark
+  public JsonArray parseResultSetArray() throws SQLException {
+    mResultSet.beforeFirst();
+    return mDialect.parseResultSetArray(mResultSet);
+  }
+
+  @Benchmark
+  public JsonObject parseResultSetObject() throws SQLException {
+    mResultSet.first();
+    return mDialect.parseResultSetObject(mResultSet);
+  }
+
+  @Benchmark
+  public PreparedStatement applyBindParams_untyped() throws SQLException {
+    return mDialect.applyBindParams(mInsertStatement, mInsertParams);
+  }
+
+  @Benchmark
+  public PreparedStatement applyBindParams_bindPlan() throws SQLException {
+    return mDialect.applyBindParams(mInsertStatement, mInsertParams, mInsertBindPlan);
+  }
+
+  @Benchmark
+  public List<JsonArray> getAllBindParams_single() {
+    return mDialect.getAllBindParams(mSingleParamsBody, mInsertStatement);
+  }
+
+  @Benchmark
+  public List<JsonArray> getAllBindParams_multi() {
+    return mDialect.getAllBindParams(mMultiParamsBody, mInsertStatement);
+  }
+
+  // -------------------------------------------------------------------------
+  // Inner Classes
+  // -------------------------------------------------------------------------
+
+  /**
+   * Opens up the (protected) protocol of the dialect to the benchmarks.
+   */
+  public static class BenchmarkDialect extends BaseJdbcDialect {
+
+    @Override
+    public JsonArray parseResultSetArray(final ResultSet resultSet) throws SQLException {
+      return super.parseResultSetArray(resultSet);
+    }
+
+    @Override
+    public PreparedStatement applyBindParams(final PreparedStatement statement, final JsonArray bindParams) throws SQLException {
+      return super.applyBindParams(statement, bindParams);
+    }
+
+    @Override
+    public PreparedStatement applyBindParams(final PreparedStatement statement, final JsonArray bindParams, final BindPlan bindPlan) throws SQLException {
+      return super.applyBindParams(statement, bindParams, bindPlan);
+    }
+
+    @Override
+    public List<JsonArray> getAllBindParams(final JsonObject requestBody, final PreparedStatement preparedStatement) {
+      return super.getAllBindParams(requestBody, preparedStatement);
+    }
+
+  }
+
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cstansbury.vertx.jdbc.benchmark;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End-to-end benchmarks of the executor: the throughput of query, update and call requests sent over the event bus to
+ * a {@link cstansbury.vertx.jdbc.JdbcExecutorVerticle} of an in-memory HSQLDB. Each benchmark thread sends one
+ * request at a time and waits for its reply, so run with more threads (-t) to measure the executor under load.
+ *
+ * @author cstansbury
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class ExecutorBenchmark {
+
+  // -------------------------------------------------------------------------
+  // Constants
+  // -------------------------------------------------------------------------
+
+  private static final String ADDRESS = "jdbc-executor.benchmark";
+
+  private static final DeliveryOptions QUERY = new DeliveryOptions().addHeader("action", "query");
+
+  private static final DeliveryOptions UPDATE = new DeliveryOptions().addHeader("action", "update");
+
+  private static final DeliveryOptions CALL = new DeliveryOptions().addHeader("action", "call");
+
+  // -------------------------------------------------------------------------
+  // Params
+  // -------------------------------------------------------------------------
+
+  @Param({ "100" })
+  public int rows;
+
+  @Param({ "4" })
+  public int poolSize;
+
+  // -------------------------------------------------------------------------
+  // Member Variables
+  // -------------------------------------------------------------------------
+
+  private BenchmarkDatabase mDatabase;
+
+  private Vertx mVertx;
+
+  // -------------------------------------------------------------------------
+  // Setup / Teardown
+  // -------------------------------------------------------------------------
+
+  @Setup
+  public void setUp() throws Exception {
+    mDatabase = new BenchmarkDatabase("executor", rows);
+    mVertx = Vertx.vertx();
+
+    final CompletableFuture<String> deployed = new CompletableFuture<>();
+    mVertx.deployVerticle("java:cstansbury.vertx.jdbc.JdbcExecutorVerticle",
+      new DeploymentOptions().setConfig(mDatabase.getExecutorConfig(ADDRESS, poolSize)),
+      deployResult -> {
+        if (deployResult.succeeded()) {
+          deployed.complete(deployResult.result());
+        } else {
+          deployed.completeExceptionally(deployResult.cause());
+        }
+      });
+    deployed.get(30, TimeUnit.SECONDS);
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    final CompletableFuture<Void> closed = new CompletableFuture<>();
+    mVertx.close(closeResult -> closed.complete(null));
+    closed.get(30, TimeUnit.SECONDS);
+    mDatabase.close();
+  }
+
+  // -------------------------------------------------------------------------
+  // Benchmarks
+  // -------------------------------------------------------------------------
+
+  @Benchmark
+  public Object query_byId() throws Exception {
+    final int id = ThreadLocalRandom.current().nextInt(rows) + 1;
+    return send(QUERY, new JsonObject().put("sql", "select * from narrow where id = ?").put("params", new JsonArray().add(id)));
+  }
+
+  @Benchmark
+  public Object query_wide() throws Exception {
+    return send(QUERY, new JsonObject().put("sql", "select * from wide order by id"));
+  }
+
+  @Benchmark
+  public Object update() throws Exception {
+    final int id = ThreadLocalRandom.current().nextInt(rows) + 1;
+    return send(UPDATE, new JsonObject().put("sql", "update narrow set amount = amount + 1 where id = ?").put("params", new JsonArray().add(id)));
+  }
+
+  @Benchmark
+  public Object call() throws Exception {
+    return send(CALL, new JsonObject()
+      .put("sql", "{call insert_narrow(?, ?, ?)}")
+      .put("params", new JsonArray().add("called").add(1))
+      .put("paramsInfo", BenchmarkDatabase.PARAMS_INFO_INSERT_NARROW));
+  }
+
+  // -------------------------------------------------------------------------
+  // Private Protocol
+  // -------------------------------------------------------------------------
+
+  private Object send(final DeliveryOptions options, final JsonObject request) throws Exception {
+    final CompletableFuture<Object> reply = new CompletableFuture<>();
+
+    mVertx.eventBus().send(ADDRESS, request, options, response -> {
+      if (response.succeeded()) {
+        reply.complete(response.result().body());
+      } else {
+        reply.completeExceptionally(response.cause());
+      }
+    });
+
+    return reply.get(30, TimeUnit.SECONDS);
+  }
+
+}
@@ -0,0 +1,334 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cstansbury.vertx.jdbc.benchmark;
+
+import io.vertx.core.Context;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A capacity test of the executor: deploys a {@link cstansbury.vertx.jdbc.JdbcExecutorVerticle} of an in-memory
+ * HSQLDB (optionally behind a {@link DelayingDataSource}) for each pool size, and drives it with a closed loop of
+ * 'concurrency' outstanding requests, of a weighted mix of query, update, call and batch requests, for each
+ * concurrency. Each run reports its throughput and its p50, p99 and p999 latencies.
+ * <p>
+ * Options are given as <code>--name=value</code>:
+ * <pre>
+ *   --mix=query:70,update:20,call:5,batch:5   the weights of the request actions
+ *   --concurrency=1,8,32                      the concurrencies to sweep
+ *   --poolSize=4                              the pool sizes to sweep
+ *   --duration=10                             the seconds measured of each run
+ *   --warmup=3                                the seconds of warmup of each run
+ *   --delay=0                                 the milliseconds of delay of each database round trip
+ *   --jitter=0                                the milliseconds of random delay added to each round trip
+ *   --rows=1000                               the rows of each table
+ *   --out=results.json                        the file to write the results of all the runs to (as JSON)
+ * </pre>
+ *
+ * @author cstansbury
+ */
+public class LoadGenerator {
+
+  // -------------------------------------------------------------------------
+  // Constants
+  // -------------------------------------------------------------------------
+
+  private static final String[] ACTIONS = { "query", "update", "call", "batch" };
+
+  private static final double NANOS_PER_MILLI = 1000000.0;
+
+  // -------------------------------------------------------------------------
+  // Member Variables
+  // -------------------------------------------------------------------------
+
+  private final Map<String, String> mOptions;
+
+  private final int[] mWeights = new int[ACTIONS.length];
+
+  private final int mRows;
+
+  private final Random mRandom = new Random(42);
+
+  private Vertx mVertx;
+
+  private BenchmarkDatabase mDatabase;
+
+  // -------------------------------------------------------------------------
+  // Constructors
+  // -------------------------------------------------------------------------
+
+  public LoadGenerator(final Map<String, String> options) {
+    mOptions = options;
+    mRows = Integer.parseInt(getOption("rows", "1000"));
+
+    for (final String weight : getOption("mix", "query:70,update:20,call:5,batch:5").split(",")) {
+      final String[] actionWeight = weight.split(":");
+      final int action = Arrays.asList(ACTIONS).indexOf(actionWeight[0].trim());
+      if (action < 0) {
+        throw new IllegalArgumentException("Invalid action: " + actionWeight[0]);
+      }
+      mWeights[action] = Integer.parseInt(actionWeight[1].trim());
+    }
+  }
+
+  // -------------------------------------------------------------------------
+  // Main
+  // -------------------------------------------------------------------------
+
+  public static void main(final String[] args) throws Exception {
+    final Map<String, String> options = new HashMap<>();
+
+    for (final String arg : args) {
+      if (!arg.startsWith("--") || arg.indexOf('=') < 0) {
+        throw new IllegalArgumentException("Invalid option (expected --name=value): " + arg);
+      }
+      options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+    }
+
+    new LoadGenerator(options).run();
+  }
+
+  // -------------------------------------------------------------------------
+  // Public Protocol
+  // -------------------------------------------------------------------------
+
+  /**
+   * Runs the sweep of pool sizes and concurrencies, printing (and optionally writing) the results of each run.
+   *
+   * @throws Exception
+   */
+  public void run() throws Exception {
+    final JsonArray results = new JsonArray();
+    final long duration = TimeUnit.SECONDS.toNanos(Long.parseLong(getOption("duration", "10")));
+    final long warmup = TimeUnit.SECONDS.toNanos(Long.parseLong(getOption("warmup", "3")));
+
+    mVertx = Vertx.vertx();
+    mDatabase = new BenchmarkDatabase("load", mRows);
+
+    try {
+      System.out.println(String.format("%8s %11s %10s %12s %9s %9s %9s %7s", "poolSize", "concurrency", "requests", "requests/s", "p50(ms)", "p99(ms)", "p999(ms)", "errors"));
+      for (final int poolSize : getIntegers("poolSize", "4")) {
+        final String address = "jdbc-executor.load." + poolSize;
+        final String deploymentId = deploy(address, poolSize);
+        for (final int concurrency : getIntegers("concurrency", "1,8,32")) {
+          final Run run = new Run(address, concurrency);
+          run.execute(warmup);
+          final JsonObject result = run.execute(duration).put("poolSize", poolSize);
+          System.out.println(String.format("%8d %11d %10d %12.1f %9.2f %9.2f %9.2f %7d",
+            poolSize, concurrency, result.getLong("requests"), result.getDouble("throughput"),
+            result.getDouble("p50"), result.getDouble("p99"), result.getDouble("p999"), result.getLong("errors")));
+          results.add(result);
+        }
+        undeploy(deploymentId);
+      }
+    } finally {
+      final CompletableFuture<Void> closed = new CompletableFuture<>();
+      mVertx.close(closeResult -> closed.complete(null));
+      closed.get(30, TimeUnit.SECONDS);
+      mDatabase.close();
+    }
+
+    if (mOptions.containsKey("out")) {
+      final JsonObject report = new JsonObject().put("options", new JsonObject(new LinkedHashMap<>(mOptions))).put("results", results);
+      Files.write(Paths.get(mOptions.get("out")), report.encodePrettily().getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  // -------------------------------------------------------------------------
+  // Private Protocol
+  // -------------------------------------------------------------------------
+
+  private String deploy(final String address, final int poolSize) throws Exception {
+    final JsonObject config = mDatabase.getExecutorConfig(address, poolSize);
+    final long delay = Long.parseLong(getOption("delay", "0"));
+    final long jitter = Long.parseLong(getOption("jitter", "0"));
+
+    if (delay > 0 || jitter > 0) {
+      config.put("pool", new JsonObject()
+        .put("dataSourceClassName", DelayingDataSource.class.getName())
+        .put("dataSource.url", mDatabase.getUrl())
+        .put("dataSource.user", BenchmarkDatabase.USER)
+        .put("dataSource.password", BenchmarkDatabase.PASSWORD)
+        .put("dataSource.delayMillis", delay)
+        .put("dataSource.jitterMillis", jitter)
+        .put("maximumPoolSize", poolSize));
+    }
+
+    final CompletableFuture<String> deployed = new CompletableFuture<>();
+    mVertx.deployVerticle("java:cstansbury.vertx.jdbc.JdbcExecutorVerticle", new DeploymentOptions().setConfig(config), deployResult -> {
+      if (deployResult.succeeded()) {
+        deployed.complete(deployResult.result());
+      } else {
+        deployed.completeExceptionally(deployResult.cause());
+      }
+    });
+    return deployed.get(30, TimeUnit.SECONDS);
+  }
+
+  private void undeploy(final String deploymentId) throws Exception {
+    final CompletableFuture<Void> undeployed = new CompletableFuture<>();
+    mVertx.undeploy(deploymentId, undeployResult -> undeployed.complete(null));
+    undeployed.get(30, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Returns a request of a (weighted) random action: its action, then its body.
+   */
+  private Object[] nextRequest() {
+    int pick = mRandom.nextInt(Math.max(1, Arrays.stream(mWeights).sum()));
+    int action = 0;
+    while (action < ACTIONS.length - 1 && pick >= mWeights[action]) {
+      pick -= mWeights[action++];
+    }
+
+    final int id = mRandom.nextInt(mRows) + 1;
+    final JsonObject body;
+    switch (ACTIONS[action]) {
+    case "update":
+      body = new JsonObject().put("sql", "update narrow set amount = amount + 1 where id = ?").put("params", new JsonArray().add(id));
+      break;
+    case "call":
+      body = new JsonObject()
+        .put("sql", "{call insert_narrow(?, ?, ?)}")
+        .put("params", new JsonArray().add("load").add(id))
+        .put("paramsInfo", BenchmarkDatabase.PARAMS_INFO_INSERT_NARROW);
+      break;
+    case "batch":
+      body = new JsonObject().put("transaction", true).put("batch", new JsonArray()
+        .add(new JsonObject().put("action", "update").put("sql", "update narrow set amount = amount - 1 where id = ?").put("params", new JsonArray().add(id)))
+        .add(new JsonObject().put("action", "query").put("sql", "select * from narrow where id = ?").put("params", new JsonArray().add(id))));
+      break;
+    default:
+      body = new JsonObject().put("sql", "select * from narrow where id = ?").put("params", new JsonArray().add(id));
+    }
+
+    return new Object[] { ACTIONS[action], body };
+  }
+
+  private String getOption(final String name, final String defaultValue) {
+    return mOptions.getOrDefault(name, defaultValue);
+  }
+
+  private int[] getIntegers(final String name, final String defaultValue) {
+    return Arrays.stream(getOption(name, defaultValue).split(",")).mapToInt(value -> Integer.parseInt(value.trim())).toArray();
+  }
+
+  // -------------------------------------------------------------------------
+  // Inner Classes
+  // -------------------------------------------------------------------------
+
+  /**
+   * A closed-loop run: 'concurrency' requests are kept outstanding, each reply sending the next request, until the
+   * run's time is up. The requests are sent, and their latencies recorded, on a single event loop context.
+   */
+  private class Run {
+
+    private final String mAddress;
+    private final int mConcurrency;
+    private long[] mLatencies = new long[1 << 16];
+    private int mCount;
+    private long mErrors;
+    private long mEndTime;
+    private int mOutstanding;
+    private CompletableFuture<Void> mCompleted;
+
+    private Run(final String address, final int concurrency) {
+      mAddress = address;
+      mConcurrency = concurrency;
+    }
+
+    private JsonObject execute(final long duration) throws Exception {
+      final Context context = mVertx.getOrCreateContext();
+      final long startTime = System.nanoTime();
+
+      mCount = 0;
+      mErrors = 0;
+      mEndTime = startTime + duration;
+      mCompleted = new CompletableFuture<>();
+      context.runOnContext(v -> {
+        for (mOutstanding = 0; mOutstanding < mConcurrency; mOutstanding++) {
+          send();
+        }
+      });
+      mCompleted.get(duration / 1000000000L + 60, TimeUnit.SECONDS);
+
+      final double seconds = (System.nanoTime() - startTime) / 1000000000.0;
+      final long[] latencies = Arrays.copyOf(mLatencies, mCount);
+      Arrays.sort(latencies);
+
+      return new JsonObject()
+        .put("concurrency", mConcurrency)
+        .put("requests", mCount)
+        .put("errors", mErrors)
+        .put("throughput", mCount / seconds)
+        .put("p50", getPercentile(latencies, 50))
+        .put("p99", getPercentile(latencies, 99))
+        .put("p999", getPercentile(latencies, 99.9))
+        .put("max", latencies.length == 0 ? 0.0 : latencies[latencies.length - 1] / NANOS_PER_MILLI);
+    }
+
+    private void send() {
+      final Object[] request = nextRequest();
+      final long sendTime = System.nanoTime();
+
+      mVertx.eventBus().send(mAddress, request[1], new DeliveryOptions().addHeader("action", (String) request[0]), reply -> {
+        final long now = System.nanoTime();
+        if (reply.failed()) {
+          mErrors++;
+        }
+        record(now - sendTime);
+        if (now - mEndTime < 0) {
+          send();
+        } else if (--mOutstanding == 0) {
+          mCompleted.complete(null);
+        }
+      });
+    }
+
+    private void record(final long latency) {
+      if (mCount == mLatencies.length) {
+        mLatencies = Arrays.copyOf(mLatencies, mLatencies.length * 2);
+      }
+      mLatencies[mCount++] = latency;
+    }
+
+    private double getPercentile(final long[] latencies, final double percentile) {
+      if (latencies.length == 0) {
+        return 0.0;
+      }
+      final int index = (int) Math.ceil(latencies.length * percentile / 100.0) - 1;
+      return latencies[Math.max(0, Math.min(latencies.length - 1, index))] / NANOS_PER_MILLI;
+    }
+
+  }
+
+}
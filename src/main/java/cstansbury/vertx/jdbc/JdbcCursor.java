@@ -0,0 +1,52 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cstansbury.vertx.jdbc;
+
+import io.vertx.core.json.JsonArray;
+
+import java.sql.SQLException;
+
+/**
+ * An open query result that is read a chunk of rows at a time.
+ * 
+ * @author cstansbury
+ */
+public interface JdbcCursor extends AutoCloseable {
+
+  /**
+   * Reads (at most) the next maxRows rows.
+   * 
+   * @param maxRows
+   * @return
+   * @throws SQLException
+   */
+  JsonArray next(int maxRows) throws SQLException;
+
+  /**
+   * Returns true once the last row has been read.
+   * 
+   * @return
+   */
+  boolean isExhausted();
+
+  /**
+   * Closes the underlying ResultSet and statement (but not the connection).
+   */
+  @Override
+  void close();
+
+}
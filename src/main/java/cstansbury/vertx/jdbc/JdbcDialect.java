@@ -26,4 +26,6 @@ public interface JdbcDialect {
 
   Object executeUpdate(JdbcRequest request) throws SQLException;
 
+  JdbcCursor openCursor(JdbcRequest request) throws SQLException;
+
 }
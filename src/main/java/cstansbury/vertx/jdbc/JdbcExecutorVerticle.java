@@ -19,21 +19,73 @@ package cstansbury.vertx.jdbc;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.eventbus.Message;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.SQLTransientException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import javax.management.JMX;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
 
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.pool.HikariPoolMBean;
 
 import cstansbury.vertx.jdbc.JdbcRequest.CommitStatus;
+import cstansbury.vertx.jdbc.JdbcRequest.ReplyEncoding;
+import cstansbury.vertx.jdbc.cache.QueryResultCache;
+import cstansbury.vertx.jdbc.cache.StatementCache;
 import cstansbury.vertx.jdbc.dialect.BaseJdbcDialect;
+import cstansbury.vertx.jdbc.dialect.InListExpander;
+import cstansbury.vertx.jdbc.dialect.TemporalFormat;
+import cstansbury.vertx.jdbc.metrics.ExecutorMetrics;
+import cstansbury.vertx.jdbc.metrics.SlowQueryLog;
+import cstansbury.vertx.jdbc.metrics.StatementMetrics;
+import cstansbury.vertx.jdbc.pool.ReplicaSet;
+import cstansbury.vertx.jdbc.pool.ReplicaSet.Replica;
+import cstansbury.vertx.jdbc.pool.RowMerger;
+import cstansbury.vertx.jdbc.pool.ShardResolver;
+import cstansbury.vertx.jdbc.pool.ShardSet;
 
 /**
+ * Executes JDBC requests received over the event bus. The (blocking) JDBC work runs on the verticle's own bounded 
+ * executor, sized to the connection pool, rather than on the event loop or the shared worker pool. When the 
+ * executor's queue is full, or a request cannot be started (or get a connection) within its deadline, the request 
+ * fails fast with {@link #FAILURE_OVERLOADED} or {@link #FAILURE_TIMEOUT}.
+ * <p>
+ * The executor's metrics (see {@link ExecutorMetrics}), and the state of its queue and connection pool, are
+ * available from the 'stats' action of the <code>&lt;address&gt;.metrics</code> address.
+ * <p>
+ * When 'replicas' are configured, queries (outside of transactions) are routed to the read replicas (see 
+ * {@link ReplicaSet}), and updates, calls, batches, streams and transactions to the primary 'pool'. When 'shards' are
+ * configured, a request with a 'shardKey' is routed to the pool of its shard (see {@link ShardSet}), and a 'scatter'
+ * query to every shard, merging their rows.
  * 
  * @author cstansbury
  */
@@ -45,26 +97,118 @@ public class JdbcExecutorVerticle extends AbstractVerticle implements Handler<Me
   
   protected static final String DEFAULT_ADDRESS = "jdbc-executor";
   
+  protected static final int DEFAULT_STREAM_CHUNK_SIZE = 100;
+  
+  protected static final long DEFAULT_STREAM_TIMEOUT = 30000;
+  
+  protected static final long DEFAULT_TRANSACTION_TIMEOUT = 10000;
+  
+  protected static final int DEFAULT_QUEUE_SIZE = 1000;
+  
+  protected static final int DEFAULT_TOP_STATEMENTS = 10;
+  
+  /** The failure code of a request rejected because the executor's queue is full. */
+  public static final int FAILURE_OVERLOADED = 503;
+  
+  /** The failure code of a request that waited longer than its deadline for the executor or for a connection. */
+  public static final int FAILURE_TIMEOUT = 504;
+  
   // -------------------------------------------------------------------------
   // Member Variables
   // -------------------------------------------------------------------------
 
   private HikariDataSource mDataSource;
   
+  private ReplicaSet mReplicas;
+  
+  private ShardSet mShards;
+  
   private JdbcDialect mDialect;
   
+  private StatementCache mStatementCache;
+  
+  private final Set<JdbcTransaction> mTransactions = ConcurrentHashMap.newKeySet();
+  
+  private ThreadPoolExecutor mExecutor;
+  
+  private long mMaxQueueWaitNanos;
+  
+  private UpdateCoalescer mCoalescer;
+  
+  private QueryResultCache mQueryCache;
+  
+  private boolean mSingleFlight;
+  
+  private final Map<String, InFlightQuery> mInFlightQueries = new HashMap<>();
+  
+  private final AtomicLong mWriteGeneration = new AtomicLong();
+  
+  private final ExecutorMetrics mMetrics = new ExecutorMetrics();
+  
+  private final AtomicInteger mConnectionWaiters = new AtomicInteger();
+  
+  private StatementMetrics mStatementMetrics;
+  
+  private SlowQueryLog mSlowQueryLog;
+  
+  private String mSlowQueryAddress;
+  
   // -------------------------------------------------------------------------
   // Overridden AbstractVerticle Protocol
   // -------------------------------------------------------------------------
 
   @Override
   public void start(final Future<Void> startFuture) throws Exception {
-    mDataSource = new HikariDataSource(getPoolConfig());
-    mDialect = new BaseJdbcDialect();
+    mStatementCache = getStatementCache();
+    mDialect = createDialect();
+    final HikariConfig poolConfig = getPoolConfig();
+    mDataSource = new HikariDataSource(poolConfig);
+    mReplicas = getReplicaSet();
+    mShards = getShardSet();
+    mExecutor = createExecutor(poolConfig, poolConfig.getMaximumPoolSize() 
+      + (mReplicas != null ? mReplicas.getMaximumPoolSize() : 0) 
+      + (mShards != null ? mShards.getMaximumPoolSize() : 0));
+    JdbcResultSetCodec.register(vertx.eventBus());
+    mCoalescer = getUpdateCoalescer();
+    mQueryCache = getQueryResultCache();
+    mSingleFlight = config().getBoolean("singleFlight", false);
+    mStatementMetrics = getStatementMetrics();
+    mSlowQueryLog = getSlowQueryLog();
     vertx.eventBus().consumer(config().getString("address", DEFAULT_ADDRESS), this);
+    vertx.eventBus().consumer(config().getString("address", DEFAULT_ADDRESS) + ".metrics", this::handleMetrics);
     startFuture.complete();
   }
   
+  @Override
+  public void stop() throws Exception {
+    if (mCoalescer != null) {
+      mCoalescer.close();
+    }
+    mExecutor.shutdown();
+    for (final JdbcTransaction transaction : mTransactions) {
+      transaction.close();
+    }
+    if (mStatementCache != null) {
+      mStatementCache.clear();
+    }
+    if (mQueryCache != null) {
+      mQueryCache.clear();
+    }
+    if (mStatementMetrics != null) {
+      mStatementMetrics.clear();
+    }
+    if (mSlowQueryLog != null) {
+      mSlowQueryLog.clear();
+    }
+    mDataSource.close();
+    if (mReplicas != null) {
+      mReplicas.close();
+    }
+    if (mShards != null) {
+      mShards.close();
+    }
+  }
+  
   // -------------------------------------------------------------------------
   // Overridden Handler Protocol
   // -------------------------------------------------------------------------
@@ -73,15 +217,350 @@ public class JdbcExecutorVerticle extends AbstractVerticle implements Handler<Me
   public void handle(final Message<JsonObject> message) {
     final JsonObject requestBody = message.body();
     final String action = message.headers().get("action");
-    Object responseBody = null;
+    String error = null;
 
-    if (requestBody == null) {
-      message.fail(0, "Missing request body");
-    } else if (requestBody.getString("sql") == null) {
-      message.fail(0, "Missing request body SQL");
+    mMetrics.recordRequest(action);
+    
+    if ("startTransaction".equals(action)) {
+      submit(message, () -> handleStartTransaction(message, requestBody == null ? new JsonObject() : requestBody));
+    } else if ("cacheStats".equals(action)) {
+      message.reply(mQueryCache != null ? mQueryCache.getStats() : new JsonObject());
+    } else if ((error = validate(action, requestBody)) != null) {
+      fail(message, 0, error);
+    } else if ("query".equals(action) && requestBody.getBoolean("scatter", false)) {
+      handleScatterQuery(message, requestBody);
+    } else if ("query".equals(action) && isParallelQuery(message, requestBody)) {
+      handleParallelQuery(message, requestBody);
+    } else if ("query".equals(action) && (mSingleFlight || mQueryCache != null) && !isReadYourWrites(message)) {
+      handleQuery(message, requestBody);
+    } else if ("stream".equals(action)) {
+      submit(message, () -> handleStream(message, requestBody));
+    } else if (mCoalescer != null && "update".equals(action) && !isSharded(requestBody) && mCoalescer.offer(message)) {
+      // The update is executed (with others of the same SQL) when the coalescer flushes
     } else {
-      try (final Connection connection = mDataSource.getConnection()) {
-        JdbcRequest jdbcRequest = new JdbcRequest(action, requestBody, connection);
+      submit(message, () -> handleRequest(message, action, requestBody));
+    }
+  }
+
+  // -------------------------------------------------------------------------
+  // Executor Protocol
+  // -------------------------------------------------------------------------
+
+  /**
+   * Submits the (blocking) task for the message to the executor. The message is failed with 
+   * {@link #FAILURE_OVERLOADED} if the executor's queue is full, or with {@link #FAILURE_TIMEOUT} if the task waited
+   * in the queue for longer than the 'maxQueueWait'.
+   * 
+   * @param message
+   * @param task
+   */
+  public void submit(final Message<?> message, final Runnable task) {
+    submit(message, task, null);
+  }
+
+  /**
+   * Submits the (blocking) task for the message to the executor, running onRejected (if given) when the task is
+   * not run because it was rejected or timed out in the queue.
+   * 
+   * @param message
+   * @param task
+   * @param onRejected
+   */
+  public void submit(final Message<?> message, final Runnable task, final Runnable onRejected) {
+    submit(task, (failureCode, error) -> {
+      fail(message, failureCode, error);
+      if (onRejected != null) {
+        onRejected.run();
+      }
+    });
+  }
+
+  /**
+   * Submits the (blocking) task to the executor, calling onRejected with the failure code and message if the task
+   * is not run because the executor's queue is full, or because it waited in the queue for longer than the 
+   * 'maxQueueWait'.
+   * 
+   * @param task
+   * @param onRejected
+   */
+  public void submit(final Runnable task, final BiConsumer<Integer, String> onRejected) {
+    final long enqueueTime = System.nanoTime();
+    
+    try {
+      mExecutor.execute(() -> {
+        final long queueWait = System.nanoTime() - enqueueTime;
+        mMetrics.recordQueueWait(queueWait);
+        if (mMaxQueueWaitNanos > 0 && queueWait > mMaxQueueWaitNanos) {
+          onRejected.accept(FAILURE_TIMEOUT, "Request timed out waiting in the executor queue");
+        } else {
+          task.run();
+        }
+      });
+    } catch (final RejectedExecutionException e) {
+      onRejected.accept(FAILURE_OVERLOADED, "Request rejected, executor queue is full (" + getQueueDepth() + " queued)");
+    }
+  }
+
+  /**
+   * Runs internal (blocking) housekeeping, such as closing abandoned streams and transactions, on the executor. The
+   * task is not subject to admission control, so it runs on the calling thread if the queue is full.
+   * 
+   * @param task
+   */
+  public void runBlocking(final Runnable task) {
+    try {
+      mExecutor.execute(task);
+    } catch (final RejectedExecutionException e) {
+      task.run();
+    }
+  }
+
+  /**
+   * Returns the number of tasks waiting in the executor's queue.
+   * 
+   * @return
+   */
+  public int getQueueDepth() {
+    return mExecutor.getQueue().size();
+  }
+
+  /**
+   * Replies to the message, recording the size of a Buffer reply (the one reply whose size is known without
+   * encoding it), and starting the 'read your writes' window of the sender of a write.
+   * 
+   * @param message
+   * @param body
+   */
+  public void reply(final Message<?> message, final Object body) {
+    final String action = message.headers().get("action");
+    
+    if (body instanceof Buffer) {
+      mMetrics.recordReplyBytes(action, ((Buffer) body).length());
+    }
+    if (mReplicas != null && isWriteAction(action)) {
+      mReplicas.recordWrite(message.headers().get("sender"));
+    }
+    message.reply(body);
+  }
+
+  /**
+   * Fails the message, recording an error of its action.
+   * 
+   * @param message
+   * @param failureCode
+   * @param error
+   */
+  public void fail(final Message<?> message, final int failureCode, final String error) {
+    fail(message, message.headers().get("action"), failureCode, error);
+  }
+
+  /**
+   * Fails the message, recording an error of the given action.
+   * 
+   * @param message
+   * @param action
+   * @param failureCode
+   * @param error
+   */
+  public void fail(final Message<?> message, final String action, final int failureCode, final String error) {
+    mMetrics.recordError(action);
+    message.fail(failureCode, error);
+  }
+
+  /**
+   * Returns a snapshot of the executor's metrics, together with the state of its queue and connection pool (and of
+   * the query cache, if enabled).
+   * 
+   * @return
+   */
+  public JsonObject getStats() {
+    final JsonObject stats = mMetrics.toJson()
+      .put("executor", new JsonObject()
+        .put("queueDepth", getQueueDepth())
+        .put("activeThreads", mExecutor.getActiveCount())
+        .put("poolSize", mExecutor.getPoolSize())
+        .put("completedTasks", mExecutor.getCompletedTaskCount()))
+      .put("pool", getPoolStats());
+    
+    if (mReplicas != null) {
+      final JsonArray replicas = new JsonArray();
+      for (final Replica replica : mReplicas.getReplicas()) {
+        replicas.add(getPoolStats(replica.getDataSource()).mergeIn(replica.toJson()));
+      }
+      stats.put("replicas", replicas);
+    }
+    if (mShards != null) {
+      final JsonObject shards = new JsonObject();
+      for (final String shard : mShards.getShards()) {
+        shards.put(shard, getPoolStats(mShards.getDataSource(shard)));
+      }
+      stats.put("shards", shards);
+    }
+    if (mStatementCache != null) {
+      stats.put("statementCache", mStatementCache.getStats());
+    }
+    if (mQueryCache != null) {
+      stats.put("queryCache", mQueryCache.getStats());
+    }
+    
+    return stats;
+  }
+
+  // -------------------------------------------------------------------------
+  // Protected Protocol
+  // -------------------------------------------------------------------------
+
+  /**
+   * Replies to the query from the query cache, or joins an identical query that is already in flight (started since
+   * the last committed update), or else executes it (and caches its result). Runs on the event loop.
+   * 
+   * @param message
+   * @param requestBody
+   */
+  protected void handleQuery(final Message<JsonObject> message, final JsonObject requestBody) {
+    final ReplyEncoding replyEncoding;
+    try {
+      replyEncoding = getReplyEncoding(message);
+    } catch (final IllegalArgumentException e) {
+      fail(message, 0, e.getMessage());
+      return;
+    }
+    
+    // The same query of different shards is a different query
+    final String key = QueryResultCache.getKey(requestBody) + '\u0000' + replyEncoding + (isSharded(requestBody) ? "\u0000" + requestBody.getValue("shardKey") : "");
+    final long ttl = mQueryCache != null ? mQueryCache.getTtl(requestBody) : 0;
+    
+    if (ttl > 0) {
+      final Object cachedResult = mQueryCache.get(key);
+      if (cachedResult != null) {
+        reply(message, cachedResult);
+        return;
+      }
+    }
+    
+    final long generation = ttl > 0 ? mQueryCache.getGeneration() : 0;
+    
+    if (!mSingleFlight) {
+      submit(message, () -> handleCacheableQuery(message, requestBody, key, ttl, generation));
+      return;
+    }
+    
+    final long writeGeneration = mWriteGeneration.get();
+    final InFlightQuery inFlightQuery = mInFlightQueries.get(key);
+    
+    if (inFlightQuery != null && inFlightQuery.mWriteGeneration == writeGeneration) {
+      inFlightQuery.mMessages.add(message);
+    } else {
+      final InFlightQuery newQuery = new InFlightQuery(writeGeneration, message);
+      mInFlightQueries.put(key, newQuery);
+      submit(() -> {
+        try {
+          final Object result = executeQuery(message, requestBody, replyEncoding);
+          if (ttl > 0) {
+            mQueryCache.put(key, requestBody.getString("sql"), result, ttl, generation);
+          }
+          context.runOnContext(v -> completeQuery(key, newQuery, result, 0, null));
+        } catch (final SQLException e) {
+          context.runOnContext(v -> completeQuery(key, newQuery, null, e.getErrorCode(), e.getMessage()));
+        } catch (final IllegalArgumentException e) {
+          context.runOnContext(v -> completeQuery(key, newQuery, null, 0, e.getMessage()));
+        } catch (final RuntimeException e) {
+          // The query must still be completed, or every identical query would join it and never be replied to
+          context.runOnContext(v -> completeQuery(key, newQuery, null, 0, e.toString()));
+        }
+      }, (failureCode, error) -> context.runOnContext(v -> completeQuery(key, newQuery, null, failureCode, error)));
+    }
+  }
+
+  /**
+   * Executes the (cacheable) query, caching its result before replying with it.
+   * 
+   * @param message
+   * @param requestBody
+   * @param key
+   * @param ttl
+   * @param generation the generation of the query cache when the query was received
+   */
+  protected void handleCacheableQuery(final Message<JsonObject> message, final JsonObject requestBody, final String key, final long ttl, final long generation) {
+    final Object result = executeRequest(message, "query", requestBody);
+    
+    if (result != null) {
+      if (ttl > 0) {
+        mQueryCache.put(key, requestBody.getString("sql"), result, ttl, generation);
+      }
+      reply(message, result);
+    }
+  }
+
+  /**
+   * Executes the query of the message on a connection of its own (of its shard or a replica, if any), through
+   * {@link #handle(Message, JdbcRequest)}.
+   * 
+   * @param message
+   * @param requestBody
+   * @param replyEncoding
+   * @return
+   * @throws SQLException
+   */
+  protected Object executeQuery(final Message<JsonObject> message, final JsonObject requestBody, final ReplyEncoding replyEncoding) throws SQLException {
+    final Replica replica = selectReplica("query", requestBody, null);
+    
+    try (final Connection connection = getConnection(requestBody, replica)) {
+      return handle(message, new JdbcRequest("query", requestBody, connection).setReplyEncoding(replyEncoding));
+    } finally {
+      if (replica != null) {
+        replica.release();
+      }
+    }
+  }
+
+  /**
+   * Replies to (or fails) every message waiting on the in-flight query. Runs on the event loop.
+   */
+  private void completeQuery(final String key, final InFlightQuery inFlightQuery, final Object result, final int failureCode, final String error) {
+    if (mInFlightQueries.get(key) == inFlightQuery) {
+      mInFlightQueries.remove(key);
+    }
+    
+    for (final Message<JsonObject> message : inFlightQuery.mMessages) {
+      if (error != null || result == null) {
+        fail(message, failureCode, error);
+      } else {
+        reply(message, result);
+      }
+    }
+  }
+
+  /**
+   * Executes a query, update, call or batch request on a connection of its own, and replies with its result.
+   * 
+   * @param message
+   * @param action
+   * @param requestBody
+   */
+  protected void handleRequest(final Message<JsonObject> message, final String action, final JsonObject requestBody) {
+    final Object responseBody = executeRequest(message, action, requestBody);
+    
+    if (responseBody != null) {
+      reply(message, responseBody);
+    }
+  }
+
+  /**
+   * Executes a query, update, call or batch request on a connection of its own (of its shard or, for a query, a 
+   * replica, if any), failing the message if it fails.
+   * 
+   * @param message
+   * @param action
+   * @param requestBody
+   * @return the result to reply with, or null if the request failed
+   */
+  protected Object executeRequest(final Message<JsonObject> message, final String action, final JsonObject requestBody) {
+    final Replica replica = selectReplica(action, requestBody, message.headers().get("sender"));
+    Object responseBody = null;
+
+    try (final Connection connection = getConnection(requestBody, replica)) {
+        JdbcRequest jdbcRequest = new JdbcRequest(action, requestBody, connection).setReplyEncoding(getReplyEncoding(message));
         try {
           responseBody = handle(message, jdbcRequest);
         } catch(final Exception e) {
@@ -90,59 +569,1121 @@ public class JdbcExecutorVerticle extends AbstractVerticle implements Handler<Me
           }
           throw e;
         }
+    } catch (final SQLException e) {
+      fail(message, e.getErrorCode(), e.getMessage());
+    } catch (final IllegalArgumentException e) {
+      fail(message, 0, e.getMessage());
+    } finally {
+      if (replica != null) {
+        replica.release();
+      }
+    }
+    
+    return responseBody;
+  }
+
+  /**
+   * Executes the query on every shard in parallel, and replies with the merge of their rows, in the 'orderBy' order
+   * (if any) and up to the 'limit' (if any). The query fails if it fails on any shard. Runs on the event loop.
+   * 
+   * @param message
+   * @param requestBody
+   */
+  protected void handleScatterQuery(final Message<JsonObject> message, final JsonObject requestBody) {
+    final List<String> shards;
+    final RowMerger merger;
+    try {
+      if (mShards == null) {
+        throw new IllegalArgumentException("No shards configured");
+      } else if (getReplyEncoding(message) != ReplyEncoding.JSON) {
+        throw new IllegalArgumentException("Scatter queries only support the json reply encoding");
+      }
+      shards = mShards.getShards();
+      merger = new RowMerger(requestBody.getJsonArray("orderBy"), requestBody.getString("nulls"), requestBody.getInteger("limit", 0));
+    } catch (final IllegalArgumentException e) {
+      fail(message, 0, e.getMessage());
+      return;
+    }
+    
+    final List<String> parts = new ArrayList<>();
+    for (final String shard : shards) {
+      parts.add("Shard " + shard);
+    }
+    
+    final FanOutQuery fanOutQuery = new FanOutQuery(message, parts, merger::merge);
+    for (int i = 0; i < shards.size(); i++) {
+      submitFanOutPart(fanOutQuery, i, requestBody, mShards.getDataSource(shards.get(i)));
+    }
+  }
+
+  /**
+   * Splits the (multiple) sets of params of the query across (at most) 'parallel' connections, executing each
+   * (contiguous) slice of the sets on a connection of its own, and replies with the results of all the sets in their
+   * original order, as if they had been executed one after another on one connection. Runs on the event loop.
+   * 
+   * @param message
+   * @param requestBody
+   */
+  protected void handleParallelQuery(final Message<JsonObject> message, final JsonObject requestBody) {
+    final JsonArray allParams = requestBody.getJsonArray("params");
+    final int parallelism;
+    try {
+      parallelism = Math.min(Math.min(requestBody.getInteger("parallel"), allParams.size()), getMaximumPoolSize(requestBody));
+    } catch (final IllegalArgumentException e) {
+      fail(message, 0, e.getMessage());
+      return;
+    }
+    
+    final List<String> parts = new ArrayList<>();
+    final List<JsonObject> partBodies = new ArrayList<>();
+    final int[] partSizes = new int[parallelism];
+    for (int i = 0; i < parallelism; i++) {
+      final int from = (int) ((long) i * allParams.size() / parallelism);
+      final int to = (int) ((long) (i + 1) * allParams.size() / parallelism);
+      final JsonArray partParams = new JsonArray();
+      for (int j = from; j < to; j++) {
+        partParams.add(allParams.getValue(j));
+      }
+      parts.add("Params " + from + "-" + (to - 1));
+      partBodies.add(requestBody.copy().put("params", partParams));
+      partSizes[i] = to - from;
+    }
+    
+    final FanOutQuery fanOutQuery = new FanOutQuery(message, parts, results -> {
+      final JsonArray responseRows = new JsonArray();
+      for (int i = 0; i < results.size(); i++) {
+        // The result of a single set of params is not wrapped in an array of results
+        if (partSizes[i] == 1) {
+          responseRows.add(results.get(i));
+        } else {
+          responseRows.addAll((JsonArray) results.get(i));
+        }
+      }
+      return responseRows;
+    });
+    for (int i = 0; i < parallelism; i++) {
+      submitFanOutPart(fanOutQuery, i, partBodies.get(i), null);
+    }
+  }
+
+  /**
+   * Returns true if the query asks for its (multiple) sets of params to be executed in parallel, on 'parallel' 
+   * connections, and is replied to as JSON (the other encodings are always executed on one connection). The sets of
+   * a query with IN-list placeholders are always executed on one connection, as its params are ambiguous until the
+   * dialect expands them.
+   * 
+   * @param message
+   * @param requestBody
+   * @return
+   */
+  protected boolean isParallelQuery(final Message<JsonObject> message, final JsonObject requestBody) {
+    final Object parallel = requestBody.getValue("parallel");
+    final Object params = requestBody.getValue("params");
+    final String replyEncoding = message.headers().get("replyEncoding");
+    
+    return parallel instanceof Integer && (Integer) parallel > 1 
+      && params instanceof JsonArray && ((JsonArray) params).size() > 1 && ((JsonArray) params).getValue(0) instanceof JsonArray
+      && (replyEncoding == null || "json".equals(replyEncoding))
+      && requestBody.getString("sql").indexOf(InListExpander.MARKER) < 0;
+  }
+
+  /**
+   * Submits a part of the fan-out query, to be executed on a connection of the given pool, or else of the pool the
+   * request is routed to.
+   */
+  private void submitFanOutPart(final FanOutQuery fanOutQuery, final int part, final JsonObject partBody, final HikariDataSource dataSource) {
+    submit(() -> {
+      final Replica replica = dataSource == null ? selectReplica("query", partBody, fanOutQuery.mMessage.headers().get("sender")) : null;
+      try (final Connection connection = dataSource != null ? getConnection(dataSource) : getConnection(partBody, replica)) {
+        final Object result = execute(new JdbcRequest("query", partBody, connection));
+        context.runOnContext(v -> completeFanOutQuery(fanOutQuery, part, result, 0, null));
       } catch (final SQLException e) {
-        message.fail(e.getErrorCode(), e.getMessage());
+        context.runOnContext(v -> completeFanOutQuery(fanOutQuery, part, null, e.getErrorCode(), e.getMessage()));
+      } catch (final IllegalArgumentException e) {
+        context.runOnContext(v -> completeFanOutQuery(fanOutQuery, part, null, 0, e.getMessage()));
+      } catch (final RuntimeException e) {
+        // The part must still be completed, or the query would never be replied to
+        context.runOnContext(v -> completeFanOutQuery(fanOutQuery, part, null, 0, e.toString()));
+      } finally {
+        if (replica != null) {
+          replica.release();
+        }
       }
+    }, (failureCode, error) -> context.runOnContext(v -> completeFanOutQuery(fanOutQuery, part, null, failureCode, error)));
+  }
+
+  /**
+   * Records the result (or failure) of a part of the fan-out query, replying with the gathered results once every
+   * part has completed, or failing it on the first part that fails. Runs on the event loop.
+   */
+  private void completeFanOutQuery(final FanOutQuery fanOutQuery, final int part, final Object result, final int failureCode, final String error) {
+    if (fanOutQuery.mFailed) {
+      return;
+    } else if (error != null) {
+      fanOutQuery.mFailed = true;
+      fail(fanOutQuery.mMessage, failureCode, fanOutQuery.mParts.get(part) + ": " + error);
+      return;
     }
     
-    if (responseBody != null) {
-      message.reply(responseBody);
+    fanOutQuery.mResults.set(part, result);
+    if (--fanOutQuery.mRemaining == 0) {
+      try {
+        reply(fanOutQuery.mMessage, fanOutQuery.mGather.apply(fanOutQuery.mResults));
+      } catch (final IllegalArgumentException e) {
+        fail(fanOutQuery.mMessage, 0, e.getMessage());
+      }
     }
   }
 
-  // -------------------------------------------------------------------------
-  // Protected Protocol
-  // -------------------------------------------------------------------------
+  /**
+   * Executes a group of (coalesced) single-row updates of the same SQL as one JDBC batch, in one transaction, on one
+   * connection, and replies to each message with its own row count. If the batch fails, each update is retried on
+   * its own, so that each message gets its own result or failure.
+   * 
+   * @param sql
+   * @param messages
+   */
+  protected void handleCoalescedUpdates(final String sql, final List<Message<JsonObject>> messages) {
+    try (final Connection connection = getConnection()) {
+      if (messages.size() > 1) {
+        final JsonArray allParams = new JsonArray();
+        for (final Message<JsonObject> message : messages) {
+          allParams.add(message.body().getJsonArray("params", new JsonArray()));
+        }
+        
+        try {
+          final JsonObject batchBody = new JsonObject().put("sql", sql).put("params", allParams).put("batch", true);
+          final JsonArray rowCounts = ((JsonObject) execute(new JdbcRequest("update", batchBody, connection))).getJsonArray("rowCount");
+          for (int i = 0; i < messages.size(); i++) {
+            reply(messages.get(i), new JsonObject().put("rowCount", rowCounts.getInteger(i)));
+          }
+          return;
+        } catch (final SQLException e) {
+          // The batch was rolled back, fall through to execute the updates one by one
+        }
+      }
+      
+      for (final Message<JsonObject> message : messages) {
+        try {
+          reply(message, execute(new JdbcRequest("update", message.body(), connection)));
+        } catch (final SQLException e) {
+          fail(message, e.getErrorCode(), e.getMessage());
+        }
+      }
+    } catch (final SQLException e) {
+      for (final Message<JsonObject> message : messages) {
+        fail(message, e.getErrorCode(), e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Returns the encoding of the reply requested by the message's 'replyEncoding' header: "json" (the default),
+   * "resultset" (a {@link JdbcResultSet}) or "buffer" (a Buffer of JSON text); the latter two only apply to queries.
+   * 
+   * @param message
+   * @return
+   * @throws IllegalArgumentException if the encoding is unknown
+   */
+  protected ReplyEncoding getReplyEncoding(final Message<?> message) {
+    final String replyEncoding = message.headers().get("replyEncoding");
+    
+    if (replyEncoding == null || "json".equals(replyEncoding)) {
+      return ReplyEncoding.JSON;
+    } else if ("resultset".equals(replyEncoding)) {
+      return ReplyEncoding.RESULTSET;
+    } else if ("buffer".equals(replyEncoding)) {
+      return ReplyEncoding.BUFFER;
+    } else {
+      throw new IllegalArgumentException("Invalid reply encoding: " + replyEncoding);
+    }
+  }
+
+  /**
+   * Checks a connection out of the pool, failing with {@link #FAILURE_TIMEOUT} if none becomes available within the
+   * pool's 'connectionTimeout'.
+   * 
+   * @return
+   * @throws SQLException
+   */
+  protected Connection getConnection() throws SQLException {
+    return getConnection(mDataSource);
+  }
+
+  /**
+   * Checks a connection out of the given pool, failing with {@link #FAILURE_TIMEOUT} if none becomes available within
+   * the pool's 'connectionTimeout'.
+   * 
+   * @param dataSource
+   * @return
+   * @throws SQLException
+   */
+  protected Connection getConnection(final HikariDataSource dataSource) throws SQLException {
+    final long startTime = System.nanoTime();
+    
+    mConnectionWaiters.incrementAndGet();
+    try {
+      return dataSource.getConnection();
+    } catch (final SQLTransientException e) {
+      throw new SQLException(e.getMessage(), e.getSQLState(), FAILURE_TIMEOUT, e);
+    } finally {
+      mConnectionWaiters.decrementAndGet();
+      mMetrics.recordCheckout(System.nanoTime() - startTime);
+    }
+  }
+
+  /**
+   * Checks a connection out of the replica's pool or, if there is no replica or it fails to return a connection (and
+   * so is marked unhealthy), out of the primary pool.
+   * 
+   * @param replica the replica selected for a query, or null
+   * @return
+   * @throws SQLException
+   */
+  protected Connection getConnection(final Replica replica) throws SQLException {
+    if (replica != null) {
+      try {
+        return replica.getConnection();
+      } catch (final SQLException e) {
+        // Fall back to the primary
+      }
+    }
+    
+    return getConnection();
+  }
+
+  /**
+   * Checks a connection out of the pool of the request's shard, if it has a 'shardKey', or else out of the replica's
+   * pool (if any) or the primary pool.
+   * 
+   * @param requestBody
+   * @param replica the replica selected for a query, or null
+   * @return
+   * @throws SQLException
+   * @throws IllegalArgumentException if the 'shardKey' does not resolve to a known shard
+   */
+  protected Connection getConnection(final JsonObject requestBody, final Replica replica) throws SQLException {
+    return isSharded(requestBody) ? getConnection(mShards.resolve(requestBody.getValue("shardKey"))) : getConnection(replica);
+  }
+
+  /**
+   * Selects the replica of the request, if it is a query of the primary pool (rather than of a shard) and there are
+   * replicas. The selected replica must be released once the query has completed.
+   * 
+   * @param action
+   * @param requestBody
+   * @param sender the 'sender' header of the request, or null
+   * @return the selected replica, or null
+   */
+  protected Replica selectReplica(final String action, final JsonObject requestBody, final String sender) {
+    return mReplicas != null && "query".equals(action) && !isSharded(requestBody) ? mReplicas.select(sender) : null;
+  }
+
+  /**
+   * Returns the maximum size of the pool the request is routed to: the pool of its shard, or the primary pool.
+   * 
+   * @param requestBody
+   * @return
+   * @throws IllegalArgumentException if the 'shardKey' does not resolve to a known shard
+   */
+  protected int getMaximumPoolSize(final JsonObject requestBody) {
+    return (isSharded(requestBody) ? mShards.resolve(requestBody.getValue("shardKey")) : mDataSource).getMaximumPoolSize();
+  }
+
+  /**
+   * Returns true if the request is routed to a shard by its 'shardKey'.
+   * 
+   * @param requestBody
+   * @return
+   */
+  protected boolean isSharded(final JsonObject requestBody) {
+    return mShards != null && requestBody.containsKey("shardKey");
+  }
+
+  /**
+   * Returns the state of the primary connection pool: its active, idle and total connections, and the number of 
+   * requests waiting for a connection.
+   * 
+   * @return
+   */
+  protected JsonObject getPoolStats() {
+    return new JsonObject().put("pending", mConnectionWaiters.get()).mergeIn(getPoolStats(mDataSource));
+  }
+
+  /**
+   * Returns the state of the connection pool. The connection counts are read from the pool's MBean, so are only 
+   * available when the pool's 'registerMbeans' is on (the default).
+   * 
+   * @param dataSource
+   * @return
+   */
+  protected JsonObject getPoolStats(final HikariDataSource dataSource) {
+    final JsonObject stats = new JsonObject().put("maximumPoolSize", dataSource.getMaximumPoolSize());
+    
+    if (dataSource.isRegisterMbeans()) {
+      try {
+        final ObjectName name = new ObjectName("com.zaxxer.hikari:type=Pool (" + dataSource.getPoolName() + ")");
+        final HikariPoolMBean pool = JMX.newMBeanProxy(ManagementFactory.getPlatformMBeanServer(), name, HikariPoolMBean.class);
+        stats.put("active", pool.getActiveConnections())
+          .put("idle", pool.getIdleConnections())
+          .put("total", pool.getTotalConnections())
+          .put("pending", pool.getThreadsAwaitingConnection());
+      } catch (final MalformedObjectNameException | RuntimeException e) {
+        // The pool's MBean is not (or no longer) registered
+      }
+    }
+    
+    return stats;
+  }
 
   protected HikariConfig getPoolConfig() {
-    final JsonObject config = config().getJsonObject("pool");
+    return getPoolConfig(config().getJsonObject("pool"));
+  }
+
+  protected HikariConfig getPoolConfig(final JsonObject config) {
     final Properties configProperties = new Properties();
     
     configProperties.putAll(config.getMap());
+    // The pool's MBean is the only view of its connections (for the 'stats' of the metrics address)
+    if (!config.containsKey("registerMbeans")) {
+      configProperties.put("registerMbeans", "true");
+    }
     
     return new HikariConfig(configProperties);
   }
   
+  /**
+   * Creates the read replicas from the (optional) 'replicas' config entry, or returns null if there are none. Each of
+   * its 'pools' is configured like the primary 'pool', but a replica that is down does not fail the start (unless its
+   * 'initializationFailFast' is set): it is marked unhealthy by the first query that fails to connect to it.
+   * 
+   * @return
+   */
+  protected ReplicaSet getReplicaSet() {
+    final JsonObject config = config().getJsonObject("replicas");
+    final JsonArray pools = config != null ? config.getJsonArray("pools", new JsonArray()) : new JsonArray();
+    
+    if (pools.isEmpty()) {
+      return null;
+    }
+    
+    final List<HikariDataSource> dataSources = new ArrayList<>();
+    for (int i = 0; i < pools.size(); i++) {
+      final JsonObject poolConfig = pools.getJsonObject(i);
+      final HikariConfig replicaConfig = getPoolConfig(poolConfig);
+      if (!poolConfig.containsKey("initializationFailFast")) {
+        replicaConfig.setInitializationFailFast(false);
+      }
+      dataSources.add(new HikariDataSource(replicaConfig));
+    }
+    
+    return new ReplicaSet(dataSources, 
+      config.getLong("retryInterval", ReplicaSet.DEFAULT_RETRY_INTERVAL), 
+      config.getLong("readYourWrites", 0L));
+  }
+  
+  /**
+   * Creates the shards from the (optional) 'shards' config entry, or returns null if there are none. Each of its
+   * named 'pools' is configured like the primary 'pool', and its 'resolver' selects the {@link ShardSet#createResolver
+   * shard resolver} of the requests' 'shardKey'.
+   * 
+   * @return
+   */
+  protected ShardSet getShardSet() {
+    final JsonObject config = config().getJsonObject("shards");
+    final JsonObject pools = config != null ? config.getJsonObject("pools", new JsonObject()) : new JsonObject();
+    
+    if (pools.isEmpty()) {
+      return null;
+    }
+    
+    // The resolver is created (and so validated) before any of the pools are started
+    final ShardResolver resolver = ShardSet.createResolver(config.getJsonObject("resolver", new JsonObject()), new ArrayList<>(pools.fieldNames()));
+    final Map<String, HikariDataSource> dataSources = new LinkedHashMap<>();
+    for (final String shard : pools.fieldNames()) {
+      dataSources.put(shard, new HikariDataSource(getPoolConfig(pools.getJsonObject(shard))));
+    }
+    
+    return new ShardSet(dataSources, resolver);
+  }
+  
+  /**
+   * Creates the update coalescer from the (optional) 'coalesce' config entry, or returns null if coalescing is not
+   * enabled.
+   * 
+   * @return
+   */
+  protected UpdateCoalescer getUpdateCoalescer() {
+    final JsonObject config = config().getJsonObject("coalesce");
+    
+    if (config == null) {
+      return null;
+    }
+    
+    return new UpdateCoalescer(vertx, this, 
+      config.getLong("windowMs", UpdateCoalescer.DEFAULT_WINDOW), 
+      config.getInteger("maxRows", UpdateCoalescer.DEFAULT_MAX_ROWS));
+  }
+  
+  /**
+   * Creates the query result cache from the (optional) 'queryCache' config entry, or returns null if it is not
+   * enabled.
+   * 
+   * @return
+   */
+  protected QueryResultCache getQueryResultCache() {
+    final JsonObject config = config().getJsonObject("queryCache");
+    
+    if (config == null) {
+      return null;
+    }
+    
+    final Map<String, Long> statementTtls = new HashMap<>();
+    final JsonObject ttls = config.getJsonObject("ttls", new JsonObject());
+    for (final String sql : ttls.fieldNames()) {
+      statementTtls.put(sql, ttls.getLong(sql));
+    }
+    
+    return new QueryResultCache(config.getLong("maxBytes", QueryResultCache.DEFAULT_MAX_BYTES), config.getLong("ttl", 0L), statementTtls);
+  }
+  
+  /**
+   * Creates the bounded executor from the (optional) 'executor' config entry. The executor has one thread per pooled 
+   * connection (of the primary and replica pools), and a queue of (at most) 'queueSize' requests, which may wait in 
+   * it for (at most) 'maxQueueWait' milliseconds (defaults to the primary pool's 'connectionTimeout').
+   * 
+   * @param poolConfig
+   * @param poolSize
+   * @return
+   */
+  protected ThreadPoolExecutor createExecutor(final HikariConfig poolConfig, final int poolSize) {
+    final JsonObject config = config().getJsonObject("executor", new JsonObject());
+    final int queueSize = config.getInteger("queueSize", DEFAULT_QUEUE_SIZE);
+    final AtomicInteger threadCount = new AtomicInteger();
+    
+    mMaxQueueWaitNanos = TimeUnit.MILLISECONDS.toNanos(config.getLong("maxQueueWait", poolConfig.getConnectionTimeout()));
+    
+    return new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueSize), runnable -> {
+      final Thread thread = new Thread(runnable, "vertx-jdbc-executor-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+  
+  /**
+   * Creates the per-statement statistics from the (optional) 'statementStats' config entry, or returns null if they
+   * are disabled (with a 'maxStatements' of 0).
+   * 
+   * @return
+   */
+  protected StatementMetrics getStatementMetrics() {
+    final JsonObject config = config().getJsonObject("statementStats", new JsonObject());
+    final int maxStatements = config.getInteger("maxStatements", StatementMetrics.DEFAULT_MAX_STATEMENTS);
+    
+    return maxStatements > 0 ? new StatementMetrics(maxStatements) : null;
+  }
+  
+  /**
+   * Creates the slow query log from the (optional) 'slowQueries' config entry, or returns null if it is not enabled.
+   * 
+   * @return
+   */
+  protected SlowQueryLog getSlowQueryLog() {
+    final JsonObject config = config().getJsonObject("slowQueries");
+    
+    if (config == null) {
+      return null;
+    }
+    
+    mSlowQueryAddress = config.getString("publishAddress");
+    
+    return new SlowQueryLog(
+      config.getLong("threshold", SlowQueryLog.DEFAULT_THRESHOLD), 
+      config.getDouble("sampleRate", 1.0), 
+      config.getInteger("capacity", SlowQueryLog.DEFAULT_CAPACITY), 
+      config.getBoolean("redactParams", false));
+  }
+  
+  /**
+   * Creates the dialect of the (optional) 'dialect' config entry: the class name of a {@link JdbcDialect} (with a 
+   * public no-arg constructor), defaulting to {@link BaseJdbcDialect}. A {@link BaseJdbcDialect} is given the 
+   * statement cache and the 'temporalFormat'; then any dialect is configured with the settings of the (optional) 
+   * 'dialectConfig' entry.
+   * 
+   * @return
+   * @throws IllegalArgumentException if the dialect cannot be created or configured
+   */
+  protected JdbcDialect createDialect() {
+    final String className = config().getString("dialect", "").trim();
+    final JdbcDialect dialect;
+    
+    try {
+      dialect = className.isEmpty() ? new BaseJdbcDialect() : Class.forName(className, true, getClass().getClassLoader()).asSubclass(JdbcDialect.class).getDeclaredConstructor().newInstance();
+    } catch (final ReflectiveOperationException | ClassCastException e) {
+      final Throwable cause = e instanceof InvocationTargetException ? e.getCause() : e;
+      throw new IllegalArgumentException("Invalid dialect: " + className + " (" + cause + ")", cause);
+    }
+    
+    if (dialect instanceof BaseJdbcDialect) {
+      ((BaseJdbcDialect) dialect).setStatementCache(mStatementCache);
+      ((BaseJdbcDialect) dialect).setTemporalFormat(TemporalFormat.forName(config().getString("temporalFormat"), TemporalFormat.STRING));
+    }
+    configureDialect(dialect, config().getJsonObject("dialectConfig", new JsonObject()));
+    
+    return dialect;
+  }
+  
+  /**
+   * Applies each setting of the config to the dialect through its (bean) setter, e.g. 'fetchSize' through 
+   * setFetchSize(int). The setter may take a boolean, number, String, enum (by name), JsonObject or JsonArray.
+   * 
+   * @param dialect
+   * @param config
+   * @throws IllegalArgumentException if the dialect has no setter for a setting, or the setter rejects its value
+   */
+  protected void configureDialect(final JdbcDialect dialect, final JsonObject config) {
+    for (final String name : config.fieldNames()) {
+      final String setterName = "set" + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+      final Object value = config.getValue(name);
+      Method setter = null;
+      
+      for (final Method method : dialect.getClass().getMethods()) {
+        if (method.getName().equals(setterName) && method.getParameterCount() == 1) {
+          setter = method;
+          break;
+        }
+      }
+      if (setter == null) {
+        throw new IllegalArgumentException("Unknown dialect setting: " + name);
+      }
+      
+      try {
+        setter.invoke(dialect, toSettingValue(setter.getParameterTypes()[0], value));
+      } catch (final ReflectiveOperationException | RuntimeException e) {
+        final Throwable cause = e instanceof InvocationTargetException ? e.getCause() : e;
+        throw new IllegalArgumentException("Invalid dialect setting: " + name + " = " + value + " (" + cause + ")", cause);
+      }
+    }
+  }
+  
+  /**
+   * Converts the (JSON) value of a dialect setting to the type of its setter.
+   */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  private static Object toSettingValue(final Class<?> type, final Object value) {
+    if (value == null || type.isInstance(value)) {
+      return value;
+    } else if (value instanceof Number && (type == int.class || type == Integer.class)) {
+      return ((Number) value).intValue();
+    } else if (value instanceof Number && (type == long.class || type == Long.class)) {
+      return ((Number) value).longValue();
+    } else if (value instanceof Number && (type == double.class || type == Double.class)) {
+      return ((Number) value).doubleValue();
+    } else if (value instanceof Boolean && type == boolean.class) {
+      return value;
+    } else if (type == TemporalFormat.class) {
+      return TemporalFormat.forName(value.toString(), null);
+    } else if (type.isEnum()) {
+      return Enum.valueOf((Class<Enum>) type, value.toString().toUpperCase());
+    }
+    
+    throw new IllegalArgumentException("Expected a " + type.getSimpleName());
+  }
+  
+  /**
+   * Creates the per-connection statement cache from the (optional) 'statementCache' config entry, or returns null
+   * when statement caching has not been configured.
+   * 
+   * @return
+   */
+  protected StatementCache getStatementCache() {
+    final JsonObject config = config().getJsonObject("statementCache");
+    StatementCache statementCache = null;
+    
+    if (config != null) {
+      final int maxSize = config.getInteger("maxSize", StatementCache.DEFAULT_MAX_SIZE);
+      if (maxSize > 0) {
+        statementCache = new StatementCache(maxSize);
+      }
+    }
+    
+    return statementCache;
+  }
+  
   protected Object handle(final Message<JsonObject> message, final JdbcRequest request) throws SQLException {
     final String action = request.getAction();
     Object responseBody = null;
     
-    if ("query".equals(action)) {
-      responseBody = mDialect.executeQuery(request); 
-    } else if ("update".equals(action)) {
-      responseBody = mDialect.executeUpdate(request);           
-    } else if ("call".equals(action)) {
-      responseBody = mDialect.executeCall(request);
-    } else if ("batch".equals(action)) {
+    if ("batch".equals(action)) {
       responseBody = handleBatch(message, request);
+    } else if (isStatementAction(action)) {
+      responseBody = execute(request);
     } else {
-      message.fail(0, "Invalid action: " + action);
+      fail(message, 0, "Invalid action: " + action);
     }
     
     return responseBody;
   }
+  
+  /**
+   * Validates the request body of the action, returning the error message of an invalid request (or null).
+   * 
+   * @param action
+   * @param requestBody
+   * @return
+   */
+  protected String validate(final String action, final JsonObject requestBody) {
+    String error = null;
+    
+    if (requestBody == null) {
+      error = "Missing request body";
+    } else if ("batch".equals(action) && requestBody.getJsonArray("batch") == null) {
+      error = "Missing request body batch";
+    } else if (!"batch".equals(action) && requestBody.getString("sql") == null) {
+      error = "Missing request body SQL";
+    }
+    
+    return error;
+  }
+  
+  protected boolean isStatementAction(final String action) {
+    return "query".equals(action) || "update".equals(action) || "call".equals(action);
+  }
+  
+  /**
+   * Returns true if the action may write, and so starts the 'read your writes' window of its sender.
+   * 
+   * @param action
+   * @return
+   */
+  protected boolean isWriteAction(final String action) {
+    return "update".equals(action) || "call".equals(action) || "batch".equals(action) || "commit".equals(action);
+  }
+  
+  /**
+   * Returns true if the sender of the message has written within the 'read your writes' window of the replicas, so
+   * its queries must go to the primary (bypassing the query cache and in-flight queries).
+   * 
+   * @param message
+   * @return
+   */
+  protected boolean isReadYourWrites(final Message<?> message) {
+    return mReplicas != null && mReplicas.isReadYourWrites(message.headers().get("sender"));
+  }
+  
+  /**
+   * Executes a single query, update or call request.
+   * 
+   * @param request
+   * @return
+   * @throws SQLException
+   */
+  protected Object execute(final JdbcRequest request) throws SQLException {
+    final String action = request.getAction();
+    final long startTime = System.nanoTime();
+    Object responseBody = null;
+    
+    if (!isStatementAction(action)) {
+      throw new SQLException("Invalid action: " + action);
+    }
+    
+    try {
+      if ("query".equals(action)) {
+        responseBody = mDialect.executeQuery(request); 
+      } else if ("update".equals(action)) {
+        responseBody = mDialect.executeUpdate(request);
+      } else {
+        responseBody = mDialect.executeCall(request);
+      }
+      // A call may write as well as an update (its tables are unknown, so it invalidates every cached query)
+      if (isWriteAction(action) && request.getConnection().getAutoCommit()) {
+        invalidateQueryCache(request.getBody().getString("sql"));
+      }
+    } catch (final SQLException | IllegalArgumentException e) {
+      recordStatement(request, System.nanoTime() - startTime, true);
+      recordSlowQuery(request, System.nanoTime() - startTime, e.getMessage());
+      throw e;
+    }
+    
+    recordExecution(request, System.nanoTime() - startTime);
+    
+    return responseBody;
+  }
 
+  /**
+   * Records the execute and materialize times, and the rows, of the (completed) request. All the time of a request
+   * whose dialect did not time its phases is recorded as its execute time.
+   * 
+   * @param request
+   * @param elapsedNanos
+   */
+  protected void recordExecution(final JdbcRequest request, final long elapsedNanos) {
+    if (request.getExecuteNanos() > 0) {
+      mMetrics.recordExecute(request.getExecuteNanos());
+      mMetrics.recordMaterialize(request.getMaterializeNanos());
+    } else {
+      mMetrics.recordExecute(elapsedNanos);
+    }
+    mMetrics.recordRows(request.getAction(), request.getRowCount());
+    recordStatement(request, elapsedNanos, false);
+    recordSlowQuery(request, elapsedNanos, null);
+  }
+
+  /**
+   * Logs the request (if the slow query log is enabled) when its execute or materialize time exceeds the slow query
+   * threshold, and publishes its record to the 'publishAddress' (if any) of the log.
+   * 
+   * @param request
+   * @param elapsedNanos
+   * @param error the error of a failed request, or null
+   */
+  protected void recordSlowQuery(final JdbcRequest request, final long elapsedNanos, final String error) {
+    final long executeNanos = request.getExecuteNanos() > 0 ? request.getExecuteNanos() : elapsedNanos - request.getMaterializeNanos();
+    
+    if (mSlowQueryLog == null || !mSlowQueryLog.isLogged(executeNanos, request.getMaterializeNanos())) {
+      return;
+    }
+    
+    final JsonObject record = new JsonObject()
+      .put("timestamp", System.currentTimeMillis())
+      .put("action", request.getAction())
+      .put("sql", request.getBody().getString("sql"))
+      .put("params", mSlowQueryLog.getLoggedParams(request.getBody().getJsonArray("params")))
+      .put("rows", request.getRowCount())
+      .put("executeTime", executeNanos / 1000000.0)
+      .put("materializeTime", request.getMaterializeNanos() / 1000000.0)
+      .put("totalTime", elapsedNanos / 1000000.0)
+      .put("pool", getPoolStats())
+      .put("queueDepth", getQueueDepth());
+    if (error != null) {
+      record.put("error", error);
+    }
+    
+    mSlowQueryLog.add(record);
+    if (mSlowQueryAddress != null) {
+      vertx.eventBus().publish(mSlowQueryAddress, record);
+    }
+  }
+
+  /**
+   * Records the execution of the request's SQL in the per-statement statistics (if enabled).
+   * 
+   * @param request
+   * @param elapsedNanos
+   * @param failed
+   */
+  protected void recordStatement(final JdbcRequest request, final long elapsedNanos, final boolean failed) {
+    if (mStatementMetrics != null) {
+      mStatementMetrics.record(request.getBody().getString("sql"), elapsedNanos, request.getRowCount(), failed);
+    }
+  }
+
+  /**
+   * Opens a cursor for the query and streams its rows back in chunks of 'chunkSize' rows. The connection stays
+   * checked out until the last chunk has been sent, the requester closes the stream or the requester fails to pull
+   * the next chunk within 'timeout' milliseconds.
+   * 
+   * @param message
+   * @param requestBody
+   */
+  protected void handleStream(final Message<JsonObject> message, final JsonObject requestBody) {
+    final int chunkSize = requestBody.getInteger("chunkSize", DEFAULT_STREAM_CHUNK_SIZE);
+    final long timeout = requestBody.getLong("timeout", DEFAULT_STREAM_TIMEOUT);
+    Connection connection = null;
+    Boolean originalAutoCommit = null;
+    JdbcStream stream = null;
+    
+    try {
+      connection = getConnection(requestBody, null);
+      // Most drivers only honour the fetch size (rather than materializing the whole ResultSet) inside a transaction
+      if (connection.getAutoCommit()) {
+        originalAutoCommit = Boolean.TRUE;
+        connection.setAutoCommit(false);
+      }
+      final JsonObject cursorBody = requestBody.containsKey("fetchSize") ? requestBody : requestBody.copy().put("fetchSize", chunkSize);
+      final JdbcCursor cursor = mDialect.openCursor(new JdbcRequest("stream", cursorBody, connection));
+      stream = new JdbcStream(this, connection, originalAutoCommit, cursor, chunkSize, timeout);
+    } catch (final SQLException e) {
+      JdbcUtils.closeQuietly(connection, originalAutoCommit);
+      fail(message, e.getErrorCode(), e.getMessage());
+    } catch (final IllegalArgumentException e) {
+      JdbcUtils.closeQuietly(connection, originalAutoCommit);
+      fail(message, 0, e.getMessage());
+    } catch (final RuntimeException e) {
+      // The connection is pinned (with auto-commit off) until the stream is closed, so it must not leak here
+      JdbcUtils.closeQuietly(connection, originalAutoCommit);
+      fail(message, 0, e.toString());
+    }
+    
+    if (stream != null) {
+      stream.next(message);
+    }
+  }
+
+  /**
+   * Starts a transaction on a connection of its own, and replies with the (temporary) address of the transaction. The
+   * transaction is rolled back if it is idle for more than 'timeout' milliseconds.
+   * 
+   * @param message
+   * @param requestBody
+   */
+  protected void handleStartTransaction(final Message<JsonObject> message, final JsonObject requestBody) {
+    final long timeout = requestBody.getLong("timeout", DEFAULT_TRANSACTION_TIMEOUT);
+    final String address = config().getString("address", DEFAULT_ADDRESS) + ".tx." + UUID.randomUUID();
+    Connection connection = null;
+    
+    try {
+      connection = getConnection(requestBody, null);
+      connection.setAutoCommit(false);
+      final JdbcTransaction transaction = new JdbcTransaction(vertx, this, connection, address, timeout);
+      mTransactions.add(transaction);
+      transaction.start();
+      message.reply(new JsonObject().put("address", address));
+    } catch (final SQLException e) {
+      JdbcUtils.closeQuietly(connection, Boolean.TRUE);
+      fail(message, e.getErrorCode(), e.getMessage());
+    } catch (final IllegalArgumentException e) {
+      fail(message, 0, e.getMessage());
+    }
+  }
+  
+  /**
+   * Handles a request to the metrics address: 'stats' replies with a snapshot of the executor's metrics, 
+   * 'topStatements' with the statistics of the (at most 'limit') statements with the highest total time, and 
+   * 'slowQueries' with the (at most 'limit') most recent records of the slow query log. Runs on the event loop.
+   * 
+   * @param message
+   */
+  protected void handleMetrics(final Message<JsonObject> message) {
+    final String action = message.headers().get("action");
+    final JsonObject requestBody = message.body() == null ? new JsonObject() : message.body();
+    
+    if ("stats".equals(action)) {
+      message.reply(getStats());
+    } else if ("topStatements".equals(action)) {
+      final int limit = requestBody.getInteger("limit", DEFAULT_TOP_STATEMENTS);
+      message.reply(mStatementMetrics != null ? mStatementMetrics.getTopStatements(limit) : new JsonArray());
+    } else if ("slowQueries".equals(action)) {
+      final int limit = requestBody.getInteger("limit", SlowQueryLog.DEFAULT_CAPACITY);
+      message.reply(mSlowQueryLog != null ? mSlowQueryLog.getRecords(limit) : new JsonArray());
+    } else {
+      message.fail(0, "Invalid action: " + action);
+    }
+  }
+  
+  /**
+   * Invalidates the cached results of the queries that reference the tables modified by the (committed) update SQL.
+   * 
+   * @param sql
+   */
+  protected void invalidateQueryCache(final String sql) {
+    mWriteGeneration.incrementAndGet();
+    if (mQueryCache != null) {
+      mQueryCache.invalidate(sql);
+    }
+  }
+  
+  /**
+   * Returns the SQL of the updates and calls of the (update, call or batch) request, to be invalidated when its 
+   * transaction commits.
+   * 
+   * @param action
+   * @param requestBody
+   * @return
+   */
+  protected List<String> getUpdatedSql(final String action, final JsonObject requestBody) {
+    final List<String> updatedSql = new ArrayList<>();
+    
+    if ("batch".equals(action)) {
+      for (final Object step : requestBody.getJsonArray("batch")) {
+        if (step instanceof JsonObject && isWriteAction(((JsonObject) step).getString("action"))) {
+          updatedSql.add(((JsonObject) step).getString("sql"));
+        }
+      }
+    } else if (isWriteAction(action)) {
+      updatedSql.add(requestBody.getString("sql"));
+    }
+    
+    return updatedSql;
+  }
+  
+  protected void onTransactionClosed(final JdbcTransaction transaction) {
+    mTransactions.remove(transaction);
+  }
+  
+  protected ExecutorMetrics getMetrics() {
+    return mMetrics;
+  }
+
+  /**
+   * Executes the ordered list of 'batch' sub-requests (query, update or call) on the one connection, optionally 
+   * inside a single 'transaction'. A bind param of the form <code>{ "$ref": "0.generatedKeys.0.id" }</code> is 
+   * replaced with the value at that path of an earlier sub-request's result.
+   * 
+   * @param message
+   * @param jdbcRequest
+   * @return one result per sub-request
+   * @throws SQLException
+   */
   protected Object handleBatch(final Message<JsonObject> message, final JdbcRequest jdbcRequest) throws SQLException {
+    final Connection connection = jdbcRequest.getConnection();
+    final JsonObject requestBody = jdbcRequest.getBody();
+    final JsonArray batch = requestBody.getJsonArray("batch");
     final JsonArray batchResponse = new JsonArray();
-//    final JsonArray batch = jdbcRequest.getBody().getJsonArray("batch");
-//    
-//    for (int i = 0; i < batch.size(); i++) {
-//      final JsonObject request = batch.getJsonObject(i);
-//      final String action = request.getString("action");
-//      handle(message, new JdbcRequest(action, body, jdbcRequest.getConnection()));
-//    }
-//    
+    Boolean originalAutoCommit = null;
+    boolean completed = false;
+    
+    if (requestBody.getBoolean("transaction", false) && connection.getAutoCommit()) {
+      originalAutoCommit = Boolean.TRUE;
+      connection.setAutoCommit(false);
+    }
+    
+    try {
+      final CommitStatus commitStatus = connection.getAutoCommit() ? CommitStatus.OFF : CommitStatus.ON;
+      for (int i = 0; i < batch.size(); i++) {
+        final JsonObject step = batch.getJsonObject(i);
+        final String action = step.getString("action");
+        try {
+          if (!isStatementAction(action)) {
+            throw new SQLException("Invalid action: " + action);
+          } else if (step.getString("sql") == null) {
+            throw new SQLException("Missing request body SQL");
+          }
+          batchResponse.add(execute(new JdbcRequest(action, resolveReferences(step, batchResponse), connection, commitStatus)));
+        } catch (final SQLException e) {
+          throw new SQLException("Batch step " + i + ": " + e.getMessage(), e.getSQLState(), e.getErrorCode(), e);
+        }
+      }
+      
+      if (originalAutoCommit != null) {
+        connection.commit();
+        for (final String sql : getUpdatedSql("batch", requestBody)) {
+          invalidateQueryCache(sql);
+        }
+      }
+      completed = true;
+    } finally {
+      if (originalAutoCommit != null) {
+        try {
+          if (!completed) {
+            connection.rollback();
+          }
+        } finally {
+          connection.setAutoCommit(originalAutoCommit);
+        }
+      }
+    }
+    
     return batchResponse;
   }
+  
+  /**
+   * Returns the step with any <code>{ "$ref": "&lt;step&gt;.&lt;path&gt;" }</code> bind params replaced by the
+   * referenced values of the earlier results. The step itself is returned when it contains no references.
+   * 
+   * @param step
+   * @param results
+   * @return
+   * @throws SQLException
+   */
+  protected JsonObject resolveReferences(final JsonObject step, final JsonArray results) throws SQLException {
+    final JsonArray params = step.getJsonArray("params");
+    final JsonArray resolvedParams = params == null ? null : resolveReferences(params, results);
+    return resolvedParams == params ? step : step.copy().put("params", resolvedParams);
+  }
+  
+  private JsonArray resolveReferences(final JsonArray params, final JsonArray results) throws SQLException {
+    JsonArray resolvedParams = null;
+    
+    for (int i = 0; i < params.size(); i++) {
+      final Object value = params.getValue(i);
+      Object resolvedValue = value;
+      
+      if (value instanceof JsonArray) {
+        resolvedValue = resolveReferences((JsonArray) value, results);
+      } else if (value instanceof JsonObject && ((JsonObject) value).containsKey("$ref")) {
+        resolvedValue = resolveReference(((JsonObject) value).getString("$ref"), results);
+      }
+      
+      if (resolvedParams == null && resolvedValue != value) {
+        resolvedParams = new JsonArray();
+        for (int j = 0; j < i; j++) {
+          resolvedParams.add(params.getValue(j));
+        }
+      }
+      if (resolvedParams != null) {
+        resolvedParams.add(resolvedValue);
+      }
+    }
+    
+    return resolvedParams == null ? params : resolvedParams;
+  }
+  
+  private Object resolveReference(final String reference, final JsonArray results) throws SQLException {
+    Object value = results;
+    
+    for (final String segment : reference.split("\\.")) {
+      if (value instanceof JsonArray) {
+        final JsonArray array = (JsonArray) value;
+        final int index;
+        try {
+          index = Integer.parseInt(segment);
+        } catch (final NumberFormatException e) {
+          throw new SQLException("Invalid reference: " + reference);
+        }
+        value = index < array.size() ? array.getValue(index) : null;
+      } else if (value instanceof JsonObject) {
+        value = ((JsonObject) value).getValue(segment);
+      } else {
+        value = null;
+      }
+      if (value == null) {
+        throw new SQLException("Invalid reference: " + reference);
+      }
+    }
+    
+    return value;
+  }
+
+  // -------------------------------------------------------------------------
+  // Inner Classes
+  // -------------------------------------------------------------------------
+
+  /**
+   * A query being executed in (parallel) parts, on behalf of a scatter or parallel query message.
+   */
+  private static class FanOutQuery {
+
+    private final Message<JsonObject> mMessage;
+    private final List<String> mParts;
+    private final Function<List<Object>, Object> mGather;
+    private final List<Object> mResults;
+    private int mRemaining;
+    private boolean mFailed;
+
+    private FanOutQuery(final Message<JsonObject> message, final List<String> parts, final Function<List<Object>, Object> gather) {
+      mMessage = message;
+      mParts = parts;
+      mGather = gather;
+      mResults = new ArrayList<>(Collections.nCopies(parts.size(), null));
+      mRemaining = parts.size();
+    }
+
+  }
+
+  /**
+   * A query being executed on behalf of (one or more) identical query messages.
+   */
+  private static class InFlightQuery {
+
+    private final long mWriteGeneration;
+    private final List<Message<JsonObject>> mMessages = new ArrayList<>();
+
+    private InFlightQuery(final long writeGeneration, final Message<JsonObject> message) {
+      mWriteGeneration = writeGeneration;
+      mMessages.add(message);
+    }
+
+  }
 
 }
@@ -12,6 +12,12 @@ public class JdbcRequest {
 
   public enum CommitStatus { OFF, ON, ROLLBACK };
   
+  /** 
+   * The encoding of the reply to the request: JSON, or (for a query) an immutable {@link JdbcResultSet} or a Buffer of
+   * JSON text. 
+   */
+  public enum ReplyEncoding { JSON, RESULTSET, BUFFER };
+  
   // -------------------------------------------------------------------------
   // Member Variables
   // -------------------------------------------------------------------------
@@ -20,6 +26,10 @@ public class JdbcRequest {
   private final JsonObject mBody;
   private final Connection mConnection;
   private CommitStatus mCommitStatus;
+  private ReplyEncoding mReplyEncoding = ReplyEncoding.JSON;
+  private long mExecuteNanos;
+  private long mMaterializeNanos;
+  private long mRowCount;
   
   // -------------------------------------------------------------------------
   // Constructors
@@ -59,5 +69,53 @@ public class JdbcRequest {
   public void setCommitStatus(final CommitStatus commitStatus) {
     mCommitStatus = commitStatus;
   }
+
+  public ReplyEncoding getReplyEncoding() {
+    return mReplyEncoding;
+  }
+
+  public JdbcRequest setReplyEncoding(final ReplyEncoding replyEncoding) {
+    mReplyEncoding = replyEncoding;
+    return this;
+  }
+
+  /**
+   * Returns the time (in nanoseconds) the dialect spent executing the statement(s) of the request.
+   * 
+   * @return
+   */
+  public long getExecuteNanos() {
+    return mExecuteNanos;
+  }
+
+  public void addExecuteNanos(final long nanos) {
+    mExecuteNanos += nanos;
+  }
+
+  /**
+   * Returns the time (in nanoseconds) the dialect spent reading the results of the request into its reply.
+   * 
+   * @return
+   */
+  public long getMaterializeNanos() {
+    return mMaterializeNanos;
+  }
+
+  public void addMaterializeNanos(final long nanos) {
+    mMaterializeNanos += nanos;
+  }
+
+  /**
+   * Returns the number of rows read from the result sets of the request.
+   * 
+   * @return
+   */
+  public long getRowCount() {
+    return mRowCount;
+  }
+
+  public void addRowCount(final long rowCount) {
+    mRowCount += rowCount;
+  }
   
 }
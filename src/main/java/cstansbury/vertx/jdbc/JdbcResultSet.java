@@ -0,0 +1,167 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cstansbury.vertx.jdbc;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * An immutable, fully materialized query result, sent as the reply to a query with the 'resultset' reply encoding.
+ * Being immutable, it is handed to local consumers as is (rather than deep-copied like a JsonArray), and it is sent to
+ * remote consumers in the compact binary encoding of the {@link JdbcResultSetCodec}.
+ * <p>
+ * The values are (only) null, Integer, Long, Float, Double, BigDecimal, Boolean, String or byte[]; a byte[] value
+ * must not be modified.
+ *
+ * @author cstansbury
+ */
+public final class JdbcResultSet {
+
+  // -------------------------------------------------------------------------
+  // Member Variables
+  // -------------------------------------------------------------------------
+
+  private final String[] mColumnNames;
+  private final int[] mColumnTypes;
+  private final Object[][] mRows;
+
+  // -------------------------------------------------------------------------
+  // Constructors
+  // -------------------------------------------------------------------------
+
+  /**
+   * Creates the result set, which takes ownership of (and must be the only holder of) the given arrays.
+   *
+   * @param columnNames
+   * @param columnTypes the SQL types (java.sql.Types) of the columns
+   * @param rows the rows, each with a (normalized, see {@link #normalize(Object)}) value for every column
+   */
+  public JdbcResultSet(final String[] columnNames, final int[] columnTypes, final Object[][] rows) {
+    mColumnNames = columnNames;
+    mColumnTypes = columnTypes;
+    mRows = rows;
+  }
+
+  // -------------------------------------------------------------------------
+  // Static Methods
+  // -------------------------------------------------------------------------
+
+  /**
+   * Normalizes a column value to one of the supported types: other numbers are widened to Integer, Long or
+   * BigDecimal, and any other type is converted to its String.
+   *
+   * @param value
+   * @return
+   */
+  public static Object normalize(final Object value) {
+    if (value == null || value instanceof Integer || value instanceof Long || value instanceof Float
+      || value instanceof Double || value instanceof BigDecimal || value instanceof Boolean
+      || value instanceof String || value instanceof byte[]) {
+      return value;
+    } else if (value instanceof Short || value instanceof Byte) {
+      return ((Number) value).intValue();
+    } else if (value instanceof BigInteger) {
+      return new BigDecimal((BigInteger) value);
+    } else {
+      return value.toString();
+    }
+  }
+
+  // -------------------------------------------------------------------------
+  // Public Protocol
+  // -------------------------------------------------------------------------
+
+  /**
+   * Returns the rows as a (new) JsonArray of row objects, the same as the default JSON reply (but with any
+   * BigDecimal values as Strings).
+   *
+   * @return
+   */
+  public JsonArray toJsonArray() {
+    final JsonArray rows = new JsonArray();
+
+    for (final Object[] values : mRows) {
+      final JsonObject row = new JsonObject();
+      for (int i = 0; i < values.length; i++) {
+        row.put(mColumnNames[i], toJsonValue(values[i]));
+      }
+      rows.add(row);
+    }
+
+    return rows;
+  }
+
+  /**
+   * Returns the (estimated) heap size of the result set, in bytes.
+   *
+   * @return
+   */
+  public long estimateSize() {
+    long size = 64 + 24L * mColumnNames.length;
+
+    for (final Object[] values : mRows) {
+      size += 16 + 8L * values.length;
+      for (final Object value : values) {
+        if (value instanceof String) {
+          size += 40 + 2L * ((String) value).length();
+        } else if (value instanceof byte[]) {
+          size += 16 + ((byte[]) value).length;
+        } else if (value != null) {
+          size += 16;
+        }
+      }
+    }
+
+    return size;
+  }
+
+  // -------------------------------------------------------------------------
+  // Private Protocol
+  // -------------------------------------------------------------------------
+
+  private Object toJsonValue(final Object value) {
+    return value instanceof BigDecimal ? value.toString() : value;
+  }
+
+  // -------------------------------------------------------------------------
+  // Member Accessors
+  // -------------------------------------------------------------------------
+
+  public int getColumnCount() {
+    return mColumnNames.length;
+  }
+
+  public String getColumnName(final int column) {
+    return mColumnNames[column];
+  }
+
+  public int getColumnType(final int column) {
+    return mColumnTypes[column];
+  }
+
+  public int getRowCount() {
+    return mRows.length;
+  }
+
+  public Object getValue(final int row, final int column) {
+    return mRows[row][column];
+  }
+
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cstansbury.vertx.jdbc;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.eventbus.MessageCodec;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The event bus codec of {@link JdbcResultSet}s. Local delivery hands over the (immutable) result set itself; on the
+ * wire, a result set is encoded as:
+ * <pre>
+ *   columnCount:int, { name:string, type:int } * columnCount,
+ *   rowCount:int, { { tag:byte, value } * columnCount } * rowCount
+ * </pre>
+ * where a string (or byte[]) is a length-prefixed (UTF-8) byte sequence, and the tag of each value gives its type.
+ * <p>
+ * The codec must be registered on every node that receives result sets, with {@link #register(EventBus)}.
+ *
+ * @author cstansbury
+ */
+public class JdbcResultSetCodec implements MessageCodec<JdbcResultSet, JdbcResultSet> {
+
+  // -------------------------------------------------------------------------
+  // Constants
+  // -------------------------------------------------------------------------
+
+  public static final String NAME = "jdbc-resultset";
+
+  private static final byte TAG_NULL = 0;
+  private static final byte TAG_INT = 1;
+  private static final byte TAG_LONG = 2;
+  private static final byte TAG_FLOAT = 3;
+  private static final byte TAG_DOUBLE = 4;
+  private static final byte TAG_DECIMAL = 5;
+  private static final byte TAG_TRUE = 6;
+  private static final byte TAG_FALSE = 7;
+  private static final byte TAG_STRING = 8;
+  private static final byte TAG_BYTES = 9;
+
+  // -------------------------------------------------------------------------
+  // Static Methods
+  // -------------------------------------------------------------------------
+
+  /**
+   * Registers the codec as the default codec of JdbcResultSets on the event bus, unless it is already registered.
+   *
+   * @param eventBus
+   */
+  public static void register(final EventBus eventBus) {
+    try {
+      eventBus.registerDefaultCodec(JdbcResultSet.class, new JdbcResultSetCodec());
+    } catch (final IllegalStateException e) {
+      // Already registered (e.g. by another instance of the executor)
+    }
+  }
+
+  // -------------------------------------------------------------------------
+  // Overridden MessageCodec Protocol
+  // -------------------------------------------------------------------------
+
+  @Override
+  public void encodeToWire(final Buffer buffer, final JdbcResultSet resultSet) {
+    final int columnCount = resultSet.getColumnCount();
+    final int rowCount = resultSet.getRowCount();
+
+    buffer.appendInt(columnCount);
+    for (int i = 0; i < columnCount; i++) {
+      appendBytes(buffer, resultSet.getColumnName(i).getBytes(StandardCharsets.UTF_8));
+      buffer.appendInt(resultSet.getColumnType(i));
+    }
+
+    buffer.appendInt(rowCount);
+    for (int row = 0; row < rowCount; row++) {
+      for (int column = 0; column < columnCount; column++) {
+        appendValue(buffer, resultSet.getValue(row, column));
+      }
+    }
+  }
+
+  @Override
+  public JdbcResultSet decodeFromWire(final int position, final Buffer buffer) {
+    int pos = position;
+    final int columnCount = buffer.getInt(pos);
+    final String[] columnNames = new String[columnCount];
+    final int[] columnTypes = new int[columnCount];
+    pos += 4;
+
+    for (int i = 0; i < columnCount; i++) {
+      final int length = buffer.getInt(pos);
+      columnNames[i] = buffer.getString(pos + 4, pos + 4 + length, "UTF-8");
+      pos += 4 + length;
+      columnTypes[i] = buffer.getInt(pos);
+      pos += 4;
+    }
+
+    final int rowCount = buffer.getInt(pos);
+    final Object[][] rows = new Object[rowCount][];
+    pos += 4;
+
+    for (int row = 0; row < rowCount; row++) {
+      final Object[] values = rows[row] = new Object[columnCount];
+      for (int column = 0; column < columnCount; column++) {
+        final byte tag = buffer.getByte(pos++);
+        switch (tag) {
+        case TAG_NULL:
+          break;
+        case TAG_INT:
+          values[column] = buffer.getInt(pos);
+          pos += 4;
+          break;
+        case TAG_LONG:
+          values[column] = buffer.getLong(pos);
+          pos += 8;
+          break;
+        case TAG_FLOAT:
+          values[column] = buffer.getFloat(pos);
+          pos += 4;
+          break;
+        case TAG_DOUBLE:
+          values[column] = buffer.getDouble(pos);
+          pos += 8;
+          break;
+        case TAG_TRUE:
+          values[column] = Boolean.TRUE;
+          break;
+        case TAG_FALSE:
+          values[column] = Boolean.FALSE;
+          break;
+        case TAG_DECIMAL:
+        case TAG_STRING:
+        case TAG_BYTES:
+          final int length = buffer.getInt(pos);
+          if (tag == TAG_BYTES) {
+            values[column] = buffer.getBytes(pos + 4, pos + 4 + length);
+          } else {
+            final String value = buffer.getString(pos + 4, pos + 4 + length, "UTF-8");
+            values[column] = tag == TAG_DECIMAL ? new BigDecimal(value) : value;
+          }
+          pos += 4 + length;
+          break;
+        default:
+          throw new IllegalStateException("Invalid value tag: " + tag);
+        }
+      }
+    }
+
+    return new JdbcResultSet(columnNames, columnTypes, rows);
+  }
+
+  @Override
+  public JdbcResultSet transform(final JdbcResultSet resultSet) {
+    return resultSet;
+  }
+
+  @Override
+  public String name() {
+    return NAME;
+  }
+
+  @Override
+  public byte systemCodecID() {
+    return -1;
+  }
+
+  // -------------------------------------------------------------------------
+  // Private Protocol
+  // -------------------------------------------------------------------------
+
+  private void appendValue(final Buffer buffer, final Object value) {
+    if (value == null) {
+      buffer.appendByte(TAG_NULL);
+    } else if (value instanceof Integer) {
+      buffer.appendByte(TAG_INT).appendInt((Integer) value);
+    } else if (value instanceof Long) {
+      buffer.appendByte(TAG_LONG).appendLong((Long) value);
+    } else if (value instanceof Float) {
+      buffer.appendByte(TAG_FLOAT).appendFloat((Float) value);
+    } else if (value instanceof Double) {
+      buffer.appendByte(TAG_DOUBLE).appendDouble((Double) value);
+    } else if (value instanceof Boolean) {
+      buffer.appendByte((Boolean) value ? TAG_TRUE : TAG_FALSE);
+    } else if (value instanceof BigDecimal) {
+      appendBytes(buffer.appendByte(TAG_DECIMAL), ((BigDecimal) value).toString().getBytes(StandardCharsets.UTF_8));
+    } else if (value instanceof byte[]) {
+      appendBytes(buffer.appendByte(TAG_BYTES), (byte[]) value);
+    } else {
+      appendBytes(buffer.appendByte(TAG_STRING), value.toString().getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  private void appendBytes(final Buffer buffer, final byte[] bytes) {
+    buffer.appendInt(bytes.length).appendBytes(bytes);
+  }
+
+}
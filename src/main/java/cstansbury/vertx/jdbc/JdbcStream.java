@@ -0,0 +1,134 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cstansbury.vertx.jdbc;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Streams the rows of a cursor back to the requester in chunks. Each chunk is sent as a reply that itself expects a
+ * reply; the requester replying to a chunk pulls the next chunk. If the requester does not reply within the timeout
+ * (or asks for the stream to be closed) the cursor is closed and its connection returned to the pool. The cursor is
+ * only read (and closed) on the executor's threads, never on the event loop that delivers the replies.
+ *
+ * @author cstansbury
+ */
+public class JdbcStream {
+
+  // -------------------------------------------------------------------------
+  // Member Variables
+  // -------------------------------------------------------------------------
+
+  private final JdbcExecutorVerticle mExecutor;
+  private final Connection mConnection;
+  private final Boolean mOriginalAutoCommit;
+  private final JdbcCursor mCursor;
+  private final int mChunkSize;
+  private final DeliveryOptions mChunkOptions;
+  private boolean mClosed;
+
+  // -------------------------------------------------------------------------
+  // Constructors
+  // -------------------------------------------------------------------------
+
+  /**
+   *
+   * @param executor the executor that runs the (blocking) reads of the cursor
+   * @param connection the connection, owned by (and closed with) the stream
+   * @param originalAutoCommit the auto-commit mode to restore on the connection when the stream is closed
+   * @param cursor
+   * @param chunkSize
+   * @param timeout
+   */
+  public JdbcStream(final JdbcExecutorVerticle executor, final Connection connection, final Boolean originalAutoCommit, final JdbcCursor cursor, final int chunkSize, final long timeout) {
+    mExecutor = executor;
+    mConnection = connection;
+    mOriginalAutoCommit = originalAutoCommit;
+    mCursor = cursor;
+    mChunkSize = chunkSize;
+    mChunkOptions = new DeliveryOptions().setSendTimeout(timeout);
+  }
+
+  // -------------------------------------------------------------------------
+  // Public Protocol
+  // -------------------------------------------------------------------------
+
+  /**
+   * Replies to the message with the next chunk of rows.
+   *
+   * @param message
+   */
+  public synchronized void next(final Message<?> message) {
+    try {
+      final JsonArray rows = mCursor.next(mChunkSize);
+      final boolean more = !mCursor.isExhausted();
+      mExecutor.getMetrics().recordRows("stream", rows.size());
+      final JsonObject chunk = new JsonObject().put("rows", rows).put("more", more);
+
+      if (more) {
+        message.reply(chunk, mChunkOptions, (final AsyncResult<Message<Object>> reply) -> {
+          if (reply.failed()) {
+            mExecutor.runBlocking(this::close);
+          } else if (isCloseRequest(reply.result())) {
+            mExecutor.runBlocking(() -> {
+              close();
+              reply.result().reply(new JsonObject().put("rows", new JsonArray()).put("more", false));
+            });
+          } else {
+            mExecutor.submit(reply.result(), () -> next(reply.result()), () -> mExecutor.runBlocking(this::close));
+          }
+        });
+      } else {
+        close();
+        message.reply(chunk);
+      }
+    } catch (final SQLException e) {
+      close();
+      mExecutor.fail(message, "stream", e.getErrorCode(), e.getMessage());
+    } catch (final RuntimeException e) {
+      close();
+      mExecutor.fail(message, "stream", 0, e.toString());
+    }
+  }
+
+  /**
+   * Closes the cursor and returns the connection to the pool.
+   */
+  public synchronized void close() {
+    if (!mClosed) {
+      mClosed = true;
+      mCursor.close();
+      JdbcUtils.closeQuietly(mConnection, mOriginalAutoCommit);
+    }
+  }
+
+  // -------------------------------------------------------------------------
+  // Private Protocol
+  // -------------------------------------------------------------------------
+
+  private boolean isCloseRequest(final Message<Object> message) {
+    final Object body = message.body();
+    return body instanceof JsonObject && ((JsonObject) body).getBoolean("close", false);
+  }
+
+}
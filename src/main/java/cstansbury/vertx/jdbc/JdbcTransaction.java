@@ -0,0 +1,233 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cstansbury.vertx.jdbc;
+
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.json.JsonObject;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import cstansbury.vertx.jdbc.JdbcRequest.CommitStatus;
+
+/**
+ * A transaction pinned to a single pooled connection, and exposed on its own (temporary) event bus address. The
+ * address accepts the normal actions until it is sent a 'commit' or 'rollback'. If no message is heard for the
+ * timeout, the transaction is rolled back and its connection returned to the pool. The actions of the transaction
+ * run on the executor's threads one at a time, in the order they were received: each is queued until the previous
+ * one has completed, and the idle timer is suspended while any are queued or running.
+ *
+ * @author cstansbury
+ */
+public class JdbcTransaction implements Handler<Message<JsonObject>> {
+
+  // -------------------------------------------------------------------------
+  // Member Variables
+  // -------------------------------------------------------------------------
+
+  private final Vertx mVertx;
+  private final JdbcExecutorVerticle mExecutor;
+  private final Connection mConnection;
+  private final String mAddress;
+  private final long mTimeout;
+  private MessageConsumer<JsonObject> mConsumer;
+  private long mTimerId = -1;
+  private final List<String> mUpdatedSql = new ArrayList<>();
+  private volatile boolean mClosed;
+
+  /** The actions received while another is running, in order. Only accessed on the context of the consumer. */
+  private final Deque<Message<JsonObject>> mQueue = new ArrayDeque<>();
+  private boolean mRunning;
+  private Context mContext;
+
+  // -------------------------------------------------------------------------
+  // Constructors
+  // -------------------------------------------------------------------------
+
+  /**
+   *
+   * @param vertx
+   * @param executor the executor that handles the actions of the transaction
+   * @param connection the connection, already in manual commit mode, owned by (and closed with) the transaction
+   * @param address
+   * @param timeout
+   */
+  public JdbcTransaction(final Vertx vertx, final JdbcExecutorVerticle executor, final Connection connection, final String address, final long timeout) {
+    mVertx = vertx;
+    mExecutor = executor;
+    mConnection = connection;
+    mAddress = address;
+    mTimeout = timeout;
+  }
+
+  // -------------------------------------------------------------------------
+  // Public Protocol
+  // -------------------------------------------------------------------------
+
+  /**
+   * Starts listening on the transaction's address, and starts the idle timer.
+   */
+  public synchronized void start() {
+    mConsumer = mVertx.eventBus().consumer(mAddress, this);
+    resetTimer();
+  }
+
+  /**
+   * Rolls back the transaction (if it is still open) and returns its connection to the pool.
+   */
+  public synchronized void close() {
+    if (!mClosed) {
+      mClosed = true;
+      if (mTimerId != -1) {
+        mVertx.cancelTimer(mTimerId);
+      }
+      if (mConsumer != null) {
+        mConsumer.unregister();
+      }
+      JdbcUtils.closeQuietly(mConnection, Boolean.TRUE);
+      mExecutor.onTransactionClosed(this);
+    }
+  }
+
+  // -------------------------------------------------------------------------
+  // Overridden Handler Protocol
+  // -------------------------------------------------------------------------
+
+  @Override
+  public void handle(final Message<JsonObject> message) {
+    mExecutor.getMetrics().recordRequest(message.headers().get("action"));
+    synchronized (this) {
+      if (mClosed) {
+        mExecutor.fail(message, 0, "Transaction is closed");
+        return;
+      }
+
+      // The idle timer must not fire while the action is queued or running
+      mVertx.cancelTimer(mTimerId);
+      mTimerId = -1;
+    }
+
+    mContext = mVertx.getOrCreateContext();
+    mQueue.add(message);
+    if (!mRunning) {
+      submitNext();
+    }
+  }
+
+  // -------------------------------------------------------------------------
+  // Private Protocol
+  // -------------------------------------------------------------------------
+
+  /**
+   * Submits the next queued action to the executor. Runs on the context of the consumer.
+   */
+  private void submitNext() {
+    final Message<JsonObject> message = mQueue.poll();
+    mRunning = true;
+    mExecutor.submit(message, () -> execute(message), () -> mContext.runOnContext(v -> onCompleted()));
+  }
+
+  private void execute(final Message<JsonObject> message) {
+    final JsonObject requestBody = message.body() == null ? new JsonObject() : message.body();
+    final String action = message.headers().get("action") != null ? message.headers().get("action") : requestBody.getString("action");
+
+    try {
+      if (mClosed) {
+        mExecutor.fail(message, action, 0, "Transaction is closed");
+      } else if ("commit".equals(action)) {
+        mConnection.commit();
+        close();
+        for (final String sql : mUpdatedSql) {
+          mExecutor.invalidateQueryCache(sql);
+        }
+        mExecutor.reply(message, new JsonObject().put("status", "committed"));
+      } else if ("rollback".equals(action)) {
+        mConnection.rollback();
+        close();
+        mExecutor.reply(message, new JsonObject().put("status", "rolledBack"));
+      } else {
+        final String error = mExecutor.validate(action, requestBody);
+        if (error != null) {
+          mExecutor.fail(message, action, 0, error);
+        } else {
+          final Object responseBody = mExecutor.handle(message, new JdbcRequest(action, requestBody, mConnection, CommitStatus.ON).setReplyEncoding(mExecutor.getReplyEncoding(message)));
+          if (responseBody != null) {
+            mUpdatedSql.addAll(mExecutor.getUpdatedSql(action, requestBody));
+            mExecutor.reply(message, responseBody);
+          }
+        }
+      }
+    } catch (final SQLException e) {
+      mExecutor.fail(message, action, e.getErrorCode(), e.getMessage());
+    } catch (final IllegalArgumentException e) {
+      mExecutor.fail(message, action, 0, e.getMessage());
+    } catch (final RuntimeException e) {
+      mExecutor.fail(message, action, 0, e.toString());
+    } finally {
+      mContext.runOnContext(v -> onCompleted());
+    }
+  }
+
+  /**
+   * Submits the next queued action once the running one has completed, failing the queued actions if it closed the
+   * transaction, or else restarts the idle timer. Runs on the context of the consumer.
+   */
+  private void onCompleted() {
+    mRunning = false;
+    if (mClosed) {
+      Message<JsonObject> message;
+      while ((message = mQueue.poll()) != null) {
+        mExecutor.fail(message, 0, "Transaction is closed");
+      }
+    } else if (!mQueue.isEmpty()) {
+      submitNext();
+    } else {
+      synchronized (this) {
+        if (!mClosed) {
+          resetTimer();
+        }
+      }
+    }
+  }
+
+  private void resetTimer() {
+    mTimerId = mVertx.setTimer(mTimeout, timerId -> mExecutor.runBlocking(() -> {
+      synchronized (this) {
+        if (mTimerId == timerId) {
+          close();
+        }
+      }
+    }));
+  }
+
+  // -------------------------------------------------------------------------
+  // Member Accessors
+  // -------------------------------------------------------------------------
+
+  public String getAddress() {
+    return mAddress;
+  }
+
+}
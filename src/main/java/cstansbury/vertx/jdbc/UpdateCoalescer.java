@@ -0,0 +1,176 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cstansbury.vertx.jdbc;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Coalesces concurrent single-row 'update' messages with identical SQL into groups, which the executor runs as one
+ * JDBC batch on one connection. A group is flushed when its window (measured from its first update) elapses, or when
+ * it reaches its maximum number of rows; so each update trades (at most) the window of latency for the throughput of
+ * the batch. The coalescer is only ever touched on the verticle's event loop.
+ *
+ * @author cstansbury
+ */
+public class UpdateCoalescer {
+
+  // -------------------------------------------------------------------------
+  // Constants
+  // -------------------------------------------------------------------------
+
+  public static final long DEFAULT_WINDOW = 2;
+
+  public static final int DEFAULT_MAX_ROWS = 500;
+
+  // -------------------------------------------------------------------------
+  // Member Variables
+  // -------------------------------------------------------------------------
+
+  private final Vertx mVertx;
+  private final JdbcExecutorVerticle mExecutor;
+  private final long mWindow;
+  private final int mMaxRows;
+  private final Map<String, Group> mGroups = new HashMap<>();
+
+  // -------------------------------------------------------------------------
+  // Constructors
+  // -------------------------------------------------------------------------
+
+  /**
+   *
+   * @param vertx
+   * @param executor the executor that runs the coalesced updates
+   * @param window the maximum time (in milliseconds) an update waits for others to join its group
+   * @param maxRows the maximum number of updates in a group
+   */
+  public UpdateCoalescer(final Vertx vertx, final JdbcExecutorVerticle executor, final long window, final int maxRows) {
+    mVertx = vertx;
+    mExecutor = executor;
+    mWindow = Math.max(1, window);
+    mMaxRows = Math.max(1, maxRows);
+  }
+
+  // -------------------------------------------------------------------------
+  // Public Protocol
+  // -------------------------------------------------------------------------
+
+  /**
+   * Adds the update to the group of its SQL, if it can be coalesced.
+   *
+   * @param message
+   * @return true if the update was added (and will be replied to when its group is executed), or false if it cannot
+   *   be coalesced and should be executed on its own
+   */
+  public boolean offer(final Message<JsonObject> message) {
+    if (!isCoalescable(message.body())) {
+      return false;
+    }
+
+    final String sql = message.body().getString("sql");
+    Group group = mGroups.get(sql);
+
+    if (group == null) {
+      final Group newGroup = group = new Group(sql);
+      group.mTimerId = mVertx.setTimer(mWindow, timerId -> flush(newGroup));
+      mGroups.put(sql, group);
+    }
+
+    group.mMessages.add(message);
+    if (group.mMessages.size() >= mMaxRows) {
+      mVertx.cancelTimer(group.mTimerId);
+      flush(group);
+    }
+
+    return true;
+  }
+
+  /**
+   * Fails all of the updates that are still waiting for their group to be flushed.
+   */
+  public void close() {
+    for (final Group group : mGroups.values()) {
+      mVertx.cancelTimer(group.mTimerId);
+      for (final Message<JsonObject> message : group.mMessages) {
+        mExecutor.fail(message, 0, "Executor is stopping");
+      }
+    }
+    mGroups.clear();
+  }
+
+  // -------------------------------------------------------------------------
+  // Protected Protocol
+  // -------------------------------------------------------------------------
+
+  /**
+   * Returns true if the update is a plain, single-row update: it does not ask for its generated keys, is not itself a
+   * batch and has no options (other than its SQL and params) that could differ from the other updates of its group.
+   *
+   * @param requestBody
+   * @return
+   */
+  protected boolean isCoalescable(final JsonObject requestBody) {
+    for (final String fieldName : requestBody.fieldNames()) {
+      if (!"sql".equals(fieldName) && !"params".equals(fieldName)) {
+        return false;
+      }
+    }
+
+    final JsonArray params = requestBody.getJsonArray("params");
+    return params == null || params.size() == 0 || !(params.getValue(0) instanceof JsonArray);
+  }
+
+  // -------------------------------------------------------------------------
+  // Private Protocol
+  // -------------------------------------------------------------------------
+
+  private void flush(final Group group) {
+    if (mGroups.get(group.mSql) == group) {
+      mGroups.remove(group.mSql);
+      final List<Message<JsonObject>> messages = group.mMessages;
+      mExecutor.submit(() -> mExecutor.handleCoalescedUpdates(group.mSql, messages), (failureCode, error) -> {
+        for (final Message<JsonObject> message : messages) {
+          mExecutor.fail(message, failureCode, error);
+        }
+      });
+    }
+  }
+
+  // -------------------------------------------------------------------------
+  // Inner Classes
+  // -------------------------------------------------------------------------
+
+  private static class Group {
+
+    private final String mSql;
+    private final List<Message<JsonObject>> mMessages = new ArrayList<>();
+    private long mTimerId;
+
+    private Group(final String sql) {
+      mSql = sql;
+    }
+
+  }
+
+}
@@ -0,0 +1,405 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cstansbury.vertx.jdbc.cache;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import cstansbury.vertx.jdbc.JdbcResultSet;
+
+/**
+ * A memory-bounded LRU cache of query results, keyed by the SQL and bind params of the query.
+ * <p>
+ * Each entry lives for the TTL of its statement, and is invalidated early when an update touches any of the tables
+ * named in its SQL. The tables are found by a (deliberately conservative) scan of the SQL for the names following
+ * FROM, JOIN, INTO, UPDATE and TABLE; an update whose tables cannot be found invalidates the whole cache.
+ * <p>
+ * To avoid caching a result that was read before (but completed after) a conflicting update, a result is only
+ * cached if none of its tables have been invalidated since the query started (see {@link #getGeneration()}).
+ *
+ * @author cstansbury
+ */
+public class QueryResultCache {
+
+  // -------------------------------------------------------------------------
+  // Constants
+  // -------------------------------------------------------------------------
+
+  public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+  private static final String IDENTIFIER = "[\\w$.\"`\\[\\]]+";
+
+  private static final String ALIAS = "(?:\\s+(?:as\\s+)?(?!(?:where|join|inner|left|right|full|cross|natural|outer|on|using|"
+    + "group|order|having|limit|offset|fetch|for|union|except|intersect|minus|set|values|select|default|with|window)\\b)[\\w$]+)?";
+
+  private static final Pattern TABLES_PATTERN = Pattern.compile(
+    "\\b(?:from|join|into|update|table)\\s+(" + IDENTIFIER + ALIAS + "(?:\\s*,\\s*" + IDENTIFIER + ALIAS + ")*)",
+    Pattern.CASE_INSENSITIVE);
+
+  private static final Set<String> ALL_TABLES = Collections.emptySet();
+
+  // -------------------------------------------------------------------------
+  // Member Variables
+  // -------------------------------------------------------------------------
+
+  private final long mMaxBytes;
+
+  private final long mDefaultTtl;
+
+  private final Map<String, Long> mStatementTtls;
+
+  private final LinkedHashMap<String, Entry> mEntries = new LinkedHashMap<>(256, 0.75f, true);
+
+  private final ConcurrentMap<String, Long> mTableInvalidations = new ConcurrentHashMap<>();
+
+  private final AtomicLong mGeneration = new AtomicLong();
+
+  private volatile long mAllInvalidation;
+
+  private long mBytes;
+
+  private final LongAdder mHits = new LongAdder();
+
+  private final LongAdder mMisses = new LongAdder();
+
+  private final LongAdder mEvictions = new LongAdder();
+
+  private final LongAdder mInvalidations = new LongAdder();
+
+  // -------------------------------------------------------------------------
+  // Constructors
+  // -------------------------------------------------------------------------
+
+  /**
+   *
+   * @param maxBytes the (estimated) maximum size of all the cached results
+   * @param defaultTtl the TTL (in milliseconds) of statements without a TTL of their own; 0 to only cache statements
+   *   with a TTL of their own
+   * @param statementTtls the TTLs (in milliseconds) of individual statements, keyed by their SQL
+   */
+  public QueryResultCache(final long maxBytes, final long defaultTtl, final Map<String, Long> statementTtls) {
+    mMaxBytes = maxBytes;
+    mDefaultTtl = defaultTtl;
+    mStatementTtls = statementTtls;
+  }
+
+  // -------------------------------------------------------------------------
+  // Static Methods
+  // -------------------------------------------------------------------------
+
+  /**
+   * Returns the cache key of the query request: its SQL, bind params (and their types) and the options that shape its
+   * result.
+   *
+   * @param requestBody
+   * @return
+   */
+  public static String getKey(final JsonObject requestBody) {
+    // The params are not cast, so that invalid params fail when the query is executed, not here
+    final Object params = requestBody.getValue("params");
+    final Object paramTypes = requestBody.getValue("paramTypes");
+    final StringBuilder key = new StringBuilder(requestBody.getString("sql"));
+
+    key.append('\u0000').append(params == null ? "[]" : params instanceof JsonArray ? ((JsonArray) params).encode() : Json.encode(params));
+    key.append('\u0000').append(paramTypes == null ? "" : paramTypes instanceof JsonArray ? ((JsonArray) paramTypes).encode() : Json.encode(paramTypes));
+    key.append('\u0000').append(requestBody.getString("temporalFormat", ""));
+    key.append('\u0000').append(requestBody.getString("format", ""));
+
+    return key.toString();
+  }
+
+  /**
+   * Returns the (lower case, unqualified) names of the tables referenced by the SQL, or an empty set if none could
+   * be found.
+   *
+   * @param sql
+   * @return
+   */
+  public static Set<String> getTables(final String sql) {
+    final Matcher matcher = TABLES_PATTERN.matcher(sql);
+    Set<String> tables = ALL_TABLES;
+
+    while (matcher.find()) {
+      for (final String reference : matcher.group(1).split(",")) {
+        final String table = getTableName(reference.trim().split("\\s+")[0]);
+        if (!table.isEmpty()) {
+          if (tables == ALL_TABLES) {
+            tables = new HashSet<>();
+          }
+          tables.add(table);
+        }
+      }
+    }
+
+    return tables;
+  }
+
+  private static String getTableName(final String identifier) {
+    final String unquoted = identifier.replaceAll("[\"`\\[\\]]", "");
+    return unquoted.substring(unquoted.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+  }
+
+  // -------------------------------------------------------------------------
+  // Public Protocol
+  // -------------------------------------------------------------------------
+
+  /**
+   * Returns the TTL (in milliseconds) of the query request: its own 'cacheTtl', else the configured TTL of its SQL,
+   * else the default TTL. A TTL of 0 (or a request with 'noCache') is not cached.
+   *
+   * @param requestBody
+   * @return
+   */
+  public long getTtl(final JsonObject requestBody) {
+    if (requestBody.getBoolean("noCache", false)) {
+      return 0;
+    }
+
+    final Long requestTtl = requestBody.getLong("cacheTtl");
+    if (requestTtl != null) {
+      return requestTtl;
+    }
+
+    final Long statementTtl = mStatementTtls.get(requestBody.getString("sql"));
+    return statementTtl != null ? statementTtl : mDefaultTtl;
+  }
+
+  /**
+   * Returns the current generation of the cache, which must be read before a query is started and passed back to
+   * {@link #put(String, String, Object, long, long)} with its result.
+   *
+   * @return
+   */
+  public long getGeneration() {
+    return mGeneration.get();
+  }
+
+  /**
+   * Returns the cached (unexpired) result for the key, or null.
+   *
+   * @param key
+   * @return
+   */
+  public synchronized Object get(final String key) {
+    final Entry entry = mEntries.get(key);
+
+    if (entry != null && entry.mExpiresAt - System.nanoTime() > 0) {
+      mHits.increment();
+      return entry.mResult;
+    }
+
+    if (entry != null) {
+      remove(key, entry);
+    }
+    mMisses.increment();
+    return null;
+  }
+
+  /**
+   * Caches the result of the query, unless any of its tables have been invalidated since the given generation.
+   *
+   * @param key
+   * @param sql
+   * @param result
+   * @param ttl the TTL (in milliseconds) of the result
+   * @param generation the generation of the cache when the query was started
+   */
+  public void put(final String key, final String sql, final Object result, final long ttl, final long generation) {
+    final Set<String> tables = getTables(sql);
+    final long size = estimateSize(key) + estimateSize(result);
+
+    if (ttl <= 0 || size > mMaxBytes) {
+      return;
+    }
+
+    synchronized (this) {
+      if (isInvalidatedSince(tables, generation)) {
+        return;
+      }
+
+      final Entry previous = mEntries.put(key, new Entry(tables, result, size, System.nanoTime() + ttl * 1000000L));
+      if (previous != null) {
+        mBytes -= previous.mSize;
+      }
+      mBytes += size;
+
+      for (final Iterator<Entry> iterator = mEntries.values().iterator(); mBytes > mMaxBytes && iterator.hasNext(); ) {
+        mBytes -= iterator.next().mSize;
+        iterator.remove();
+        mEvictions.increment();
+      }
+    }
+  }
+
+  /**
+   * Invalidates the cached results of all the queries that reference any of the tables modified by the (update) SQL.
+   *
+   * @param sql
+   */
+  public void invalidate(final String sql) {
+    final Set<String> tables = getTables(sql);
+
+    synchronized (this) {
+      final long generation = mGeneration.incrementAndGet();
+
+      if (tables == ALL_TABLES) {
+        mAllInvalidation = generation;
+        mInvalidations.add(mEntries.size());
+        mEntries.clear();
+        mBytes = 0;
+        return;
+      }
+
+      for (final String table : tables) {
+        mTableInvalidations.put(table, generation);
+      }
+
+      for (final Iterator<Entry> iterator = mEntries.values().iterator(); iterator.hasNext(); ) {
+        final Entry entry = iterator.next();
+        if (entry.mTables == ALL_TABLES || !Collections.disjoint(entry.mTables, tables)) {
+          mBytes -= entry.mSize;
+          iterator.remove();
+          mInvalidations.increment();
+        }
+      }
+    }
+  }
+
+  /**
+   * Removes all the cached results.
+   */
+  public synchronized void clear() {
+    mEntries.clear();
+    mBytes = 0;
+  }
+
+  /**
+   * Returns a snapshot of the cache's metrics.
+   *
+   * @return
+   */
+  public synchronized JsonObject getStats() {
+    final long hits = mHits.sum();
+    final long misses = mMisses.sum();
+
+    return new JsonObject()
+      .put("entries", mEntries.size())
+      .put("bytes", mBytes)
+      .put("maxBytes", mMaxBytes)
+      .put("hits", hits)
+      .put("misses", misses)
+      .put("hitRate", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses))
+      .put("evictions", mEvictions.sum())
+      .put("invalidations", mInvalidations.sum());
+  }
+
+  // -------------------------------------------------------------------------
+  // Private Protocol
+  // -------------------------------------------------------------------------
+
+  private void remove(final String key, final Entry entry) {
+    mEntries.remove(key);
+    mBytes -= entry.mSize;
+  }
+
+  private boolean isInvalidatedSince(final Set<String> tables, final long generation) {
+    if (mAllInvalidation > generation) {
+      return true;
+    }
+
+    if (tables == ALL_TABLES) {
+      // A query whose tables are unknown is conflicted by any invalidation
+      return mGeneration.get() > generation;
+    }
+
+    for (final String table : tables) {
+      final Long invalidation = mTableInvalidations.get(table);
+      if (invalidation != null && invalidation > generation) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Estimates the heap size (in bytes) of a JSON value.
+   *
+   * @param value
+   * @return
+   */
+  private static long estimateSize(final Object value) {
+    long size = 16;
+
+    if (value instanceof Buffer) {
+      size += 24 + ((Buffer) value).length();
+    } else if (value instanceof JdbcResultSet) {
+      size += ((JdbcResultSet) value).estimateSize();
+    } else if (value instanceof String) {
+      size += 24 + 2L * ((String) value).length();
+    } else if (value instanceof JsonObject) {
+      size += 64;
+      for (final Map.Entry<String, Object> field : (JsonObject) value) {
+        size += 32 + estimateSize(field.getKey()) + estimateSize(field.getValue());
+      }
+    } else if (value instanceof JsonArray) {
+      size += 40;
+      for (final Object element : (JsonArray) value) {
+        size += 8 + estimateSize(element);
+      }
+    }
+
+    return size;
+  }
+
+  // -------------------------------------------------------------------------
+  // Inner Classes
+  // -------------------------------------------------------------------------
+
+  private static class Entry {
+
+    private final Set<String> mTables;
+    private final Object mResult;
+    private final long mSize;
+    private final long mExpiresAt;
+
+    private Entry(final Set<String> tables, final Object result, final long size, final long expiresAt) {
+      mTables = tables;
+      mResult = result;
+      mSize = size;
+      mExpiresAt = expiresAt;
+    }
+
+  }
+
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cstansbury.vertx.jdbc.cache;
+
+import io.vertx.core.json.JsonObject;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import cstansbury.vertx.jdbc.JdbcUtils;
+
+/**
+ * A bounded LRU cache of prepared and callable statements, kept separately for each physical connection.
+ * <p>
+ * Statements are prepared against the physical connection (unwrapped from the pool proxy) so that they survive the
+ * pooled connection being returned to the pool. A statement is checked out of the cache while in use and checked
+ * back in when released, so the same key may safely be in use more than once on a connection.
+ *
+ * @author cstansbury
+ */
+public class StatementCache {
+
+  // -------------------------------------------------------------------------
+  // Constants
+  // -------------------------------------------------------------------------
+
+  public static final int DEFAULT_MAX_SIZE = 256;
+
+  // -------------------------------------------------------------------------
+  // Member Variables
+  // -------------------------------------------------------------------------
+
+  private final int mMaxSize;
+
+  private final ConcurrentMap<Connection, ConnectionStatements> mConnectionStatements = new ConcurrentHashMap<>();
+
+  private final LongAdder mHits = new LongAdder();
+
+  private final LongAdder mMisses = new LongAdder();
+
+  private final LongAdder mEvictions = new LongAdder();
+
+  // -------------------------------------------------------------------------
+  // Constructors
+  // -------------------------------------------------------------------------
+
+  public StatementCache(final int maxSize) {
+    mMaxSize = maxSize;
+  }
+
+  // -------------------------------------------------------------------------
+  // Public Protocol
+  // -------------------------------------------------------------------------
+
+  /**
+   * Checks out a cached statement for the given key, preparing a new one when none is available.
+   *
+   * @param connection
+   * @param key
+   * @return
+   * @throws SQLException
+   */
+  public PreparedStatement prepareStatement(final Connection connection, final StatementKey key) throws SQLException {
+    final Connection physicalConnection = unwrap(connection);
+    final ConnectionStatements statements = getConnectionStatements(physicalConnection);
+    PreparedStatement statement = statements.checkOut(key);
+
+    if (statement != null) {
+      mHits.increment();
+    } else {
+      mMisses.increment();
+      statement = key.prepare(physicalConnection);
+      statements.track(key, statement);
+    }
+
+    return statement;
+  }
+
+  /**
+   * Checks a statement back into the cache. Statements that are not reusable (e.g. after a failure) are closed.
+   *
+   * @param connection
+   * @param statement
+   * @param reusable
+   */
+  public void release(final Connection connection, final PreparedStatement statement, final boolean reusable) {
+    final ConnectionStatements statements = mConnectionStatements.get(unwrap(connection));
+
+    if (statements == null) {
+      JdbcUtils.closeQuietly(statement);
+    } else {
+      statements.checkIn(statement, reusable);
+    }
+  }
+
+  /**
+   * Closes all the idle statements held by this cache.
+   */
+  public void clear() {
+    for (final Iterator<ConnectionStatements> iterator = mConnectionStatements.values().iterator(); iterator.hasNext(); ) {
+      iterator.next().clear();
+      iterator.remove();
+    }
+  }
+
+  // -------------------------------------------------------------------------
+  // Private Protocol
+  // -------------------------------------------------------------------------
+
+  private Connection unwrap(final Connection connection) {
+    try {
+      return connection.unwrap(Connection.class);
+    } catch (final SQLException e) {
+      return connection;
+    }
+  }
+
+  private ConnectionStatements getConnectionStatements(final Connection physicalConnection) {
+    ConnectionStatements statements = mConnectionStatements.get(physicalConnection);
+
+    if (statements == null) {
+      purgeClosedConnections();
+      statements = new ConnectionStatements();
+      final ConnectionStatements existing = mConnectionStatements.putIfAbsent(physicalConnection, statements);
+      if (existing != null) {
+        statements = existing;
+      }
+    }
+
+    return statements;
+  }
+
+  /**
+   * Returns a snapshot of the cache's metrics.
+   *
+   * @return
+   */
+  public JsonObject getStats() {
+    final long hits = mHits.sum();
+    final long misses = mMisses.sum();
+
+    return new JsonObject()
+      .put("connections", mConnectionStatements.size())
+      .put("maxSize", mMaxSize)
+      .put("hits", hits)
+      .put("misses", misses)
+      .put("hitRate", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses))
+      .put("evictions", mEvictions.sum());
+  }
+
+  /**
+   * Drops the statements of any physical connections that the pool has since retired.
+   */
+  private void purgeClosedConnections() {
+    for (final Iterator<Map.Entry<Connection, ConnectionStatements>> iterator = mConnectionStatements.entrySet().iterator(); iterator.hasNext(); ) {
+      final Map.Entry<Connection, ConnectionStatements> entry = iterator.next();
+      boolean closed;
+      try {
+        closed = entry.getKey().isClosed();
+      } catch (final SQLException e) {
+        closed = true;
+      }
+      if (closed) {
+        iterator.remove();
+      }
+    }
+  }
+
+  // -------------------------------------------------------------------------
+  // Member Accessors
+  // -------------------------------------------------------------------------
+
+  public int getMaxSize() {
+    return mMaxSize;
+  }
+
+  public long getHits() {
+    return mHits.sum();
+  }
+
+  public long getMisses() {
+    return mMisses.sum();
+  }
+
+  public long getEvictions() {
+    return mEvictions.sum();
+  }
+
+  // -------------------------------------------------------------------------
+  // Inner Classes
+  // -------------------------------------------------------------------------
+
+  /**
+   * The statements of a single physical connection. A physical connection is only ever used by one thread at a time
+   * (whichever thread has it checked out of the pool), so the locking here is uncontended.
+   */
+  private class ConnectionStatements {
+
+    private final Map<PreparedStatement, StatementKey> mCheckedOut = new IdentityHashMap<>();
+
+    private final LinkedHashMap<StatementKey, PreparedStatement> mIdle = new LinkedHashMap<StatementKey, PreparedStatement>() {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<StatementKey, PreparedStatement> eldest) {
+        final boolean evict = size() > mMaxSize;
+        if (evict) {
+          mEvictions.increment();
+          JdbcUtils.closeQuietly(eldest.getValue());
+        }
+        return evict;
+      }
+    };
+
+    synchronized PreparedStatement checkOut(final StatementKey key) {
+      final PreparedStatement statement = mIdle.remove(key);
+      if (statement != null) {
+        mCheckedOut.put(statement, key);
+      }
+      return statement;
+    }
+
+    synchronized void track(final StatementKey key, final PreparedStatement statement) {
+      mCheckedOut.put(statement, key);
+    }
+
+    synchronized void checkIn(final PreparedStatement statement, final boolean reusable) {
+      final StatementKey key = mCheckedOut.remove(statement);
+      boolean cached = false;
+
+      if (key != null && reusable) {
+        try {
+          if (!statement.isClosed()) {
+            statement.clearParameters();
+            final PreparedStatement previous = mIdle.put(key, statement);
+            if (previous != null) {
+              JdbcUtils.closeQuietly(previous);
+            }
+            cached = true;
+          }
+        } catch (final SQLException ignored) { }
+      }
+
+      if (!cached) {
+        JdbcUtils.closeQuietly(statement);
+      }
+    }
+
+    synchronized void clear() {
+      for (final PreparedStatement statement : mIdle.values()) {
+        JdbcUtils.closeQuietly(statement);
+      }
+      mIdle.clear();
+    }
+
+  }
+
+}
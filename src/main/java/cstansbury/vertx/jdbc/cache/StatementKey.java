@@ -0,0 +1,150 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cstansbury.vertx.jdbc.cache;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+/**
+ * Identifies a prepared (or callable) statement by its SQL and the way in which it was prepared, i.e. whether
+ * generated keys are returned and, if so, for which columns.
+ *
+ * @author cstansbury
+ */
+public final class StatementKey {
+
+  // -------------------------------------------------------------------------
+  // Enums
+  // -------------------------------------------------------------------------
+
+  public enum Kind { PREPARED, CALLABLE };
+
+  // -------------------------------------------------------------------------
+  // Member Variables
+  // -------------------------------------------------------------------------
+
+  private final String mSql;
+  private final Kind mKind;
+  private final boolean mGeneratedKeys;
+  private final int[] mColumnIndexes;
+  private final int mHashCode;
+
+  // -------------------------------------------------------------------------
+  // Constructors
+  // -------------------------------------------------------------------------
+
+  private StatementKey(final String sql, final Kind kind, final boolean generatedKeys, final int[] columnIndexes) {
+    mSql = sql;
+    mKind = kind;
+    mGeneratedKeys = generatedKeys;
+    mColumnIndexes = columnIndexes;
+    mHashCode = 31 * (31 * (31 * sql.hashCode() + kind.hashCode()) + Boolean.hashCode(generatedKeys)) + Arrays.hashCode(columnIndexes);
+  }
+
+  // -------------------------------------------------------------------------
+  // Static Methods
+  // -------------------------------------------------------------------------
+
+  public static StatementKey forStatement(final String sql) {
+    return new StatementKey(sql, Kind.PREPARED, false, null);
+  }
+
+  public static StatementKey forCall(final String sql) {
+    return new StatementKey(sql, Kind.CALLABLE, false, null);
+  }
+
+  public static StatementKey forGeneratedKeys(final String sql) {
+    return new StatementKey(sql, Kind.PREPARED, true, null);
+  }
+
+  public static StatementKey forGeneratedKeys(final String sql, final int[] columnIndexes) {
+    return new StatementKey(sql, Kind.PREPARED, true, columnIndexes);
+  }
+
+  // -------------------------------------------------------------------------
+  // Public Protocol
+  // -------------------------------------------------------------------------
+
+  /**
+   * Prepares a new statement for this key on the given connection.
+   *
+   * @param connection
+   * @return
+   * @throws SQLException
+   */
+  public PreparedStatement prepare(final Connection connection) throws SQLException {
+    PreparedStatement statement = null;
+
+    if (mKind == Kind.CALLABLE) {
+      statement = connection.prepareCall(mSql);
+    } else if (mColumnIndexes != null) {
+      statement = connection.prepareStatement(mSql, mColumnIndexes);
+    } else if (mGeneratedKeys) {
+      statement = connection.prepareStatement(mSql, Statement.RETURN_GENERATED_KEYS);
+    } else {
+      statement = connection.prepareStatement(mSql);
+    }
+
+    return statement;
+  }
+
+  // -------------------------------------------------------------------------
+  // Member Accessors
+  // -------------------------------------------------------------------------
+
+  public String getSql() {
+    return mSql;
+  }
+
+  public Kind getKind() {
+    return mKind;
+  }
+
+  public boolean isGeneratedKeys() {
+    return mGeneratedKeys;
+  }
+
+  // -------------------------------------------------------------------------
+  // Overridden Object Protocol
+  // -------------------------------------------------------------------------
+
+  @Override
+  public boolean equals(final Object other) {
+    if (this == other) {
+      return true;
+    } else if (!(other instanceof StatementKey)) {
+      return false;
+    }
+    final StatementKey key = (StatementKey) other;
+    return mHashCode == key.mHashCode && mKind == key.mKind && mGeneratedKeys == key.mGeneratedKeys
+      && mSql.equals(key.mSql) && Arrays.equals(mColumnIndexes, key.mColumnIndexes);
+  }
+
+  @Override
+  public int hashCode() {
+    return mHashCode;
+  }
+
+  @Override
+  public String toString() {
+    return mKind + ":" + mSql;
+  }
+
+}
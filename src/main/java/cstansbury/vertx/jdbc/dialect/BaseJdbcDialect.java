@@ -16,24 +16,34 @@
 
 package cstansbury.vertx.jdbc.dialect;
 
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 
 import java.sql.CallableStatement;
 import java.sql.Connection;
+import java.sql.JDBCType;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Types;
-import java.text.SimpleDateFormat;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
+import cstansbury.vertx.jdbc.JdbcCursor;
 import cstansbury.vertx.jdbc.JdbcDialect;
 import cstansbury.vertx.jdbc.JdbcRequest;
+import cstansbury.vertx.jdbc.JdbcRequest.ReplyEncoding;
+import cstansbury.vertx.jdbc.JdbcResultSet;
+import cstansbury.vertx.jdbc.JdbcUtils;
+import cstansbury.vertx.jdbc.cache.StatementCache;
+import cstansbury.vertx.jdbc.cache.StatementKey;
 
 /**
  * 
@@ -47,6 +57,12 @@ public class BaseJdbcDialect implements JdbcDialect {
 
   protected static final JsonArray EMPTY_JSON_ARRAY = new JsonArray();
 
+  public static final int DEFAULT_BATCH_SIZE = 1000;
+
+  public static final int DEFAULT_FETCH_SIZE = 100;
+
+  public static final int DEFAULT_BIND_PLAN_CACHE_SIZE = 1000;
+
   // -------------------------------------------------------------------------
   // Member Variables
   // -------------------------------------------------------------------------
@@ -55,8 +71,36 @@ public class BaseJdbcDialect implements JdbcDialect {
   
   private String mDateFormat = "yyyy-MM-dd";
   
+  private String mTimeFormat = "HH:mm:ss";
+  
   private String mTimestampFormat = "yyyy-MM-dd HH:mm:ss";
   
+  private DateTimeFormatter mDateFormatter = compileFormat(mDateFormat);
+  
+  private DateTimeFormatter mTimeFormatter = compileFormat(mTimeFormat);
+  
+  private DateTimeFormatter mTimestampFormatter = compileFormat(mTimestampFormat);
+  
+  private TemporalFormat mTemporalFormat = TemporalFormat.STRING;
+  
+  private StatementCache mStatementCache;
+  
+  private int mBatchSize = DEFAULT_BATCH_SIZE;
+  
+  private int mFetchSize = DEFAULT_FETCH_SIZE;
+  
+  private int mBindPlanCacheSize = DEFAULT_BIND_PLAN_CACHE_SIZE;
+  
+  /** The bind plans of the (most recently used) SQL strings, in access order. Guarded by itself. */
+  private final Map<String, BindPlan> mBindPlans = new LinkedHashMap<String, BindPlan>(16, 0.75f, true) {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(final Map.Entry<String, BindPlan> eldest) {
+      return size() > mBindPlanCacheSize;
+    }
+  };
+  
   // -------------------------------------------------------------------------
   // Call Protocol
   // -------------------------------------------------------------------------
@@ -71,19 +115,25 @@ public class BaseJdbcDialect implements JdbcDialect {
   @Override
   public Object executeCall(final JdbcRequest request) throws SQLException {
     final Connection connection = request.getConnection();
-    final JsonObject requestBody = request.getBody();
+    final JsonObject requestBody = getRequestBody(request);
+    final CallableStatement statement = prepareCallStatement(connection, requestBody);
+    boolean reusable = false;
     Object responseBody = null;
     
-    try (final CallableStatement statement = prepareCallStatement(connection, requestBody)) {
+    try {
       final JsonArray paramsInfo = requestBody.getJsonArray("paramsInfo", EMPTY_JSON_ARRAY);
       final List<JsonArray> allParams = getAllBindParams(requestBody, statement);
+      final BindPlan bindPlan = getBindPlan(requestBody, statement);
+      final TemporalFormat temporalFormat = getTemporalFormat(requestBody);
+      final boolean columnar = isColumnar(requestBody);
+      final ColumnPlan outParametersPlan = getOutParametersPlan(paramsInfo, temporalFormat);
       final JsonArray responseRows = new JsonArray();
       
       registerOutParameters(statement, paramsInfo);
       
       for (final JsonArray bindParams : allParams) {
         final JsonObject responseRow = new JsonObject();
-        boolean hasResults = applyCallBindParams(statement, bindParams, paramsInfo).execute();
+        boolean hasResults = applyCallBindParams(statement, bindParams, paramsInfo, bindPlan).execute();
         
         if (!hasResults) {
           responseRow.put("rowCount", statement.getUpdateCount());
@@ -95,7 +145,7 @@ public class BaseJdbcDialect implements JdbcDialect {
           
           while (hasResults) {
             try (final ResultSet resultSet = statement.getResultSet()) {
-              results.add(parseResultSetArray(resultSet));
+              results.add(parseResultSet(resultSet, temporalFormat, columnar));
               hasResults = statement.getMoreResults();
             }
           }
@@ -103,24 +153,49 @@ public class BaseJdbcDialect implements JdbcDialect {
           responseRow.put("results", flattenResponseRows(results));
         }
         
-        responseRows.add(parseOutParameters(statement, paramsInfo, responseRow));
+        responseRows.add(outParametersPlan.readObject(statement, responseRow));
       }
       
       responseBody = flattenResponseRows(responseRows);
+      reusable = true;
+    } finally {
+      releaseStatement(connection, statement, reusable);
     }
     
     return responseBody;
   }
 
-  private JsonObject parseOutParameters(final CallableStatement statement, final JsonArray paramsInfo, final JsonObject responseRow) throws SQLException {
+  /**
+   * Builds the plan for reading the (non-IN) out parameters described by the paramsInfo. The plan is built once per
+   * call and reused for every set of bind params.
+   * 
+   * @param paramsInfo
+   * @return
+   */
+  protected ColumnPlan getOutParametersPlan(final JsonArray paramsInfo, final TemporalFormat temporalFormat) {
+    final List<Integer> outParams = new ArrayList<>(paramsInfo.size());
+    
     for (int i = 0; i < paramsInfo.size(); i++) {
-      final JsonObject paramInfo = paramsInfo.getJsonObject(i);
-      if (!"IN".equals(paramInfo.getString("mode"))) {
-        responseRow.put(paramInfo.getString("name"), statement.getObject(i + 1));
+      if (!"IN".equals(paramsInfo.getJsonObject(i).getString("mode"))) {
+        outParams.add(i);
       }
     }
     
-    return responseRow;
+    final int outParamsCount = outParams.size();
+    final String[] names = new String[outParamsCount];
+    final int[] indexes = new int[outParamsCount];
+    final int[] types = new int[outParamsCount];
+    final ColumnReader[] readers = new ColumnReader[outParamsCount];
+    
+    for (int i = 0; i < outParamsCount; i++) {
+      final JsonObject paramInfo = paramsInfo.getJsonObject(outParams.get(i));
+      names[i] = paramInfo.getString("name");
+      indexes[i] = outParams.get(i) + 1;
+      types[i] = paramInfo.getInteger("type", Types.OTHER);
+      readers[i] = getColumnReader(types[i], temporalFormat);
+    }
+    
+    return new ColumnPlan(names, indexes, types, readers);
   }
 
   /**
@@ -131,7 +206,7 @@ public class BaseJdbcDialect implements JdbcDialect {
    * @throws SQLException
    */
   protected CallableStatement prepareCallStatement(final Connection connection, final JsonObject requestBody) throws SQLException {
-    return connection.prepareCall(requestBody.getString("sql"));
+    return (CallableStatement) prepareStatement(connection, StatementKey.forCall(requestBody.getString("sql")));
   }
   
   /**
@@ -157,13 +232,13 @@ public class BaseJdbcDialect implements JdbcDialect {
    * @return
    * @throws SQLException 
    */
-  private PreparedStatement applyCallBindParams(final CallableStatement statement, final JsonArray params, final JsonArray paramsInfo) throws SQLException {
+  private PreparedStatement applyCallBindParams(final CallableStatement statement, final JsonArray params, final JsonArray paramsInfo, final BindPlan bindPlan) throws SQLException {
     final int paramsCount = Math.max(params.size(), paramsInfo.size());
     int paramIndex = 0;
     for (int i = 0; i < paramsCount; i++) {
       final String paramMode = getParamType(paramsInfo, i, "IN");
       if (!"OUT".equals(paramMode)) {
-        applyBindParam(statement, i + 1, params.getValue(paramIndex++));
+        bindPlan.bind(statement, i + 1, params.getValue(paramIndex++));
       }
     }
     return statement;
@@ -187,25 +262,129 @@ public class BaseJdbcDialect implements JdbcDialect {
   @Override
   public Object executeQuery(final JdbcRequest request) throws SQLException {
     final Connection connection = request.getConnection();
-    final JsonObject requestBody = request.getBody();
+    final JsonObject requestBody = getRequestBody(request);
+    final PreparedStatement statement = prepareQueryStatement(connection, requestBody);
+    boolean reusable = false;
     Object responseBody = null;
     
-    try (final PreparedStatement statement = connection.prepareStatement(requestBody.getString("sql"))) {
+    try {
       final List<JsonArray> allBindParams = getAllBindParams(requestBody, statement);
-      final JsonArray responseRows = new JsonArray();
+      final BindPlan bindPlan = getBindPlan(requestBody, statement);
+      final TemporalFormat temporalFormat = getTemporalFormat(requestBody);
+      final long startTime = System.nanoTime();
+      final long startExecuteNanos = request.getExecuteNanos();
       
-      for (final JsonArray bindParams : allBindParams) {
-        try (final ResultSet resultSet = applyBindParams(statement, bindParams).executeQuery()) {
-          responseRows.add(parseResultSetArray(resultSet));
+      if (request.getReplyEncoding() == ReplyEncoding.RESULTSET) {
+        if (allBindParams.size() > 1) {
+          throw new SQLException("The resultset reply encoding does not support multiple sets of bind params");
+        }
+        try (final ResultSet resultSet = executeQuery(request, applyBindParams(statement, allBindParams.get(0), bindPlan))) {
+          final JdbcResultSet jdbcResultSet = parseResultSetImmutable(resultSet, temporalFormat);
+          request.addRowCount(jdbcResultSet.getRowCount());
+          responseBody = jdbcResultSet;
+        }
+      } else if (request.getReplyEncoding() == ReplyEncoding.BUFFER) {
+        final boolean columnar = isColumnar(requestBody);
+        final Buffer buffer = Buffer.buffer();
+        final JsonBufferWriter writer = new JsonBufferWriter(buffer);
+        
+        // As for the JSON reply, the results of multiple sets of bind params are sent as an array
+        if (allBindParams.size() > 1) {
+          buffer.appendByte((byte) '[');
+        }
+        for (int i = 0; i < allBindParams.size(); i++) {
+          if (i > 0) {
+            buffer.appendByte((byte) ',');
+          }
+          try (final ResultSet resultSet = executeQuery(request, applyBindParams(statement, allBindParams.get(i), bindPlan))) {
+            request.addRowCount(writeResultSet(resultSet, temporalFormat, columnar, writer));
+          }
+        }
+        if (allBindParams.size() > 1) {
+          buffer.appendByte((byte) ']');
+        }
+        
+        responseBody = buffer;
+      } else {
+        final boolean columnar = isColumnar(requestBody);
+        final JsonArray responseRows = new JsonArray();
+        
+        for (final JsonArray bindParams : allBindParams) {
+          try (final ResultSet resultSet = executeQuery(request, applyBindParams(statement, bindParams, bindPlan))) {
+            final Object result = parseResultSet(resultSet, temporalFormat, columnar);
+            request.addRowCount(getRowCount(result));
+            responseRows.add(result);
+          }
         }
+        
+        responseBody = flattenResponseRows(responseRows);
       }
       
-      responseBody = flattenResponseRows(responseRows);
+      // Whatever time was not spent executing the statement was spent materializing its results
+      request.addMaterializeNanos(System.nanoTime() - startTime - (request.getExecuteNanos() - startExecuteNanos));
+      reusable = true;
+    } finally {
+      releaseStatement(connection, statement, reusable);
     }
     
     return responseBody;
   }
 
+  /**
+   * Executes the query statement, adding the time it takes to the request's execute time.
+   * 
+   * @param request
+   * @param statement
+   * @return
+   * @throws SQLException
+   */
+  protected ResultSet executeQuery(final JdbcRequest request, final PreparedStatement statement) throws SQLException {
+    final long startTime = System.nanoTime();
+    
+    try {
+      return statement.executeQuery();
+    } finally {
+      request.addExecuteNanos(System.nanoTime() - startTime);
+    }
+  }
+
+  protected PreparedStatement prepareQueryStatement(final Connection connection, final JsonObject requestBody) throws SQLException {
+    return prepareStatement(connection, StatementKey.forStatement(requestBody.getString("sql")));
+  }
+
+  // -------------------------------------------------------------------------
+  // Cursor Protocol
+  // -------------------------------------------------------------------------
+
+  /**
+   * Executes the query and returns a cursor over its ResultSet, fetching 'fetchSize' rows at a time from the 
+   * database. Only a single set of bind params is supported.
+   */
+  @Override
+  public JdbcCursor openCursor(final JdbcRequest request) throws SQLException {
+    final Connection connection = request.getConnection();
+    final JsonObject requestBody = getRequestBody(request);
+    final PreparedStatement statement = prepareQueryStatement(connection, requestBody);
+    JdbcCursor cursor = null;
+    
+    try {
+      final List<JsonArray> allBindParams = getAllBindParams(requestBody, statement);
+      if (allBindParams.size() > 1) {
+        throw new SQLException("A cursor does not support multiple sets of bind params");
+      }
+      
+      statement.setFetchSize(requestBody.getInteger("fetchSize", mFetchSize));
+      final ResultSet resultSet = applyBindParams(statement, allBindParams.get(0), getBindPlan(requestBody, statement)).executeQuery();
+      cursor = new ResultSetCursor(connection, statement, resultSet, getColumnPlan(resultSet, getTemporalFormat(requestBody)));
+    } finally {
+      if (cursor == null) {
+        releaseStatement(connection, statement, false);
+      }
+    }
+    
+    return cursor;
+  }
+
   // -------------------------------------------------------------------------
   // Update Protocol
   // -------------------------------------------------------------------------
@@ -213,36 +392,50 @@ public class BaseJdbcDialect implements JdbcDialect {
   @Override
   public Object executeUpdate(final JdbcRequest request) throws SQLException {
     final Connection connection = request.getConnection();
-    final JsonObject requestBody = request.getBody();
+    final JsonObject requestBody = getRequestBody(request);
+    final PreparedStatement statement = prepareUpdateStatement(connection, requestBody);
     Boolean originalAutoCommit = null;
     Object responseBody = null;
     
-    try (final PreparedStatement statement = prepareUpdateStatement(connection, requestBody)) {
+    try {
       final List<JsonArray> allBindParams = getAllBindParams(requestBody, statement);
-      final JsonArray responseRows = new JsonArray();
+      final BindPlan bindPlan = getBindPlan(requestBody, statement);
+      final boolean returnGeneratedKeys = isGeneratedKeysRequested(requestBody);
+      final TemporalFormat temporalFormat = getTemporalFormat(requestBody);
+      final boolean columnar = isColumnar(requestBody);
       
-      if (allBindParams.size() > 1) {
-        originalAutoCommit = connection.getAutoCommit();
+      if (allBindParams.size() > 1 && connection.getAutoCommit()) {
+        originalAutoCommit = Boolean.TRUE;
         connection.setAutoCommit(false);
       }
       
-      for (final JsonArray bindParams : allBindParams) {
-        final JsonObject updateResult = new JsonObject();
-        final int rowCount = applyBindParams(statement, bindParams).executeUpdate();
-
-        updateResult.put("rowCount", rowCount);
-        try (final ResultSet resultSet = statement.getGeneratedKeys()) {
-          final JsonArray generatedKeys = parseResultSetArray(resultSet);
-          if (generatedKeys.size() > 0) {
-            updateResult.put("generatedKeys", generatedKeys);
+      if (requestBody.getBoolean("batch", false)) {
+        final int batchSize = requestBody.getInteger("batchSize", mBatchSize);
+        responseBody = executeBatch(statement, allBindParams, bindPlan, batchSize, returnGeneratedKeys ? temporalFormat : null, columnar);
+      } else {
+        final JsonArray responseRows = new JsonArray();
+        
+        for (final JsonArray bindParams : allBindParams) {
+          final JsonObject updateResult = new JsonObject();
+          final int rowCount = applyBindParams(statement, bindParams, bindPlan).executeUpdate();
+  
+          updateResult.put("rowCount", rowCount);
+          if (returnGeneratedKeys) {
+            try (final ResultSet resultSet = statement.getGeneratedKeys()) {
+              final Object generatedKeys = parseResultSet(resultSet, temporalFormat, columnar);
+              if (getRowCount(generatedKeys) > 0) {
+                updateResult.put("generatedKeys", generatedKeys);
+              }
+            }
           }
+          
+          responseRows.add(updateResult);
         }
         
-        responseRows.add(updateResult);
+        responseBody = flattenResponseRows(responseRows);
       }
-      
-      responseBody = flattenResponseRows(responseRows);
     } finally {
+      releaseStatement(connection, statement, responseBody != null);
       if (originalAutoCommit != null) {
         try {
           if (responseBody != null) {
@@ -263,23 +456,111 @@ public class BaseJdbcDialect implements JdbcDialect {
     final String sql = requestBody.getString("sql");
     final Boolean generatedKeys = requestBody.getBoolean("generatedKeys");
     final JsonArray generatedKeyIndices = requestBody.getJsonArray("generatedKeyIndices");
-    PreparedStatement statement = null;
+    StatementKey key = null;
     
-    // TODO lookup in statement cache?
-
     if (Boolean.TRUE.equals(generatedKeys)) {
-      statement = connection.prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS);
+      key = StatementKey.forGeneratedKeys(sql);
     } else if (generatedKeyIndices != null) {
       final int[] columnIndexes = new int[generatedKeyIndices.size()];
       for (int i = 0; i < columnIndexes.length; i++) {
         columnIndexes[i] = generatedKeyIndices.getInteger(i);
       }
-      statement = connection.prepareStatement(sql, columnIndexes);
+      key = StatementKey.forGeneratedKeys(sql, columnIndexes);
     } else {
-      statement = connection.prepareStatement(sql);
+      key = StatementKey.forStatement(sql);
     }
     
-    return statement;
+    return prepareStatement(connection, key);
+  }
+
+  /**
+   * Executes all of the bind params as JDBC batches of (at most) batchSize rows. The response contains the per-row 
+   * 'rowCount' array and, only when requested, the 'generatedKeys' of all the rows.
+   * 
+   * @param statement
+   * @param allBindParams
+   * @param bindPlan
+   * @param batchSize
+   * @param generatedKeysFormat the temporal format of the generated keys, or null if they are not to be returned
+   * @param columnar true to return the generated keys in the columnar format
+   * @return
+   * @throws SQLException
+   */
+  protected JsonObject executeBatch(final PreparedStatement statement, final List<JsonArray> allBindParams, final BindPlan bindPlan, final int batchSize, final TemporalFormat generatedKeysFormat, final boolean columnar) throws SQLException {
+    final JsonArray rowCounts = new JsonArray();
+    final JsonObject batchResult = new JsonObject();
+    Object generatedKeys = null;
+    int pendingRows = 0;
+    
+    for (final JsonArray bindParams : allBindParams) {
+      applyBindParams(statement, bindParams, bindPlan).addBatch();
+      if (++pendingRows >= batchSize) {
+        generatedKeys = appendRows(generatedKeys, flushBatch(statement, rowCounts, generatedKeysFormat, columnar));
+        pendingRows = 0;
+      }
+    }
+    
+    if (pendingRows > 0) {
+      generatedKeys = appendRows(generatedKeys, flushBatch(statement, rowCounts, generatedKeysFormat, columnar));
+    }
+    
+    batchResult.put("rowCount", rowCounts);
+    if (generatedKeysFormat != null) {
+      batchResult.put("generatedKeys", generatedKeys != null ? generatedKeys : new JsonArray());
+    }
+    
+    return batchResult;
+  }
+
+  private Object flushBatch(final PreparedStatement statement, final JsonArray rowCounts, final TemporalFormat generatedKeysFormat, final boolean columnar) throws SQLException {
+    for (final int rowCount : statement.executeBatch()) {
+      rowCounts.add(rowCount);
+    }
+    
+    if (generatedKeysFormat == null) {
+      return null;
+    }
+    
+    try (final ResultSet resultSet = statement.getGeneratedKeys()) {
+      return parseResultSet(resultSet, generatedKeysFormat, columnar);
+    }
+  }
+
+  protected boolean isGeneratedKeysRequested(final JsonObject requestBody) {
+    return requestBody.getBoolean("generatedKeys", false) || requestBody.getJsonArray("generatedKeyIndices") != null;
+  }
+
+  // -------------------------------------------------------------------------
+  // Protected Statement Protocol
+  // -------------------------------------------------------------------------
+
+  /**
+   * Prepares the statement identified by the given key, reusing a cached statement for the connection when a
+   * statement cache has been configured.
+   * 
+   * @param connection
+   * @param key
+   * @return
+   * @throws SQLException
+   */
+  protected PreparedStatement prepareStatement(final Connection connection, final StatementKey key) throws SQLException {
+    return mStatementCache == null ? key.prepare(connection) : mStatementCache.prepareStatement(connection, key);
+  }
+
+  /**
+   * Releases a statement obtained from {@link #prepareStatement(Connection, StatementKey)}, returning it to the
+   * statement cache when it is still reusable, or closing it otherwise.
+   * 
+   * @param connection
+   * @param statement
+   * @param reusable
+   */
+  protected void releaseStatement(final Connection connection, final PreparedStatement statement, final boolean reusable) {
+    if (mStatementCache == null) {
+      JdbcUtils.closeQuietly(statement);
+    } else {
+      mStatementCache.release(connection, statement, reusable);
+    }
   }
 
   // -------------------------------------------------------------------------
@@ -299,6 +580,17 @@ public class BaseJdbcDialect implements JdbcDialect {
   // Protected Bind Param Protocol
   // -------------------------------------------------------------------------
 
+  /**
+   * Returns the body of the request to execute: the request's own body, with its IN-list placeholders (if any)
+   * expanded (see {@link InListExpander}).
+   * 
+   * @param request
+   * @return
+   */
+  protected JsonObject getRequestBody(final JdbcRequest request) {
+    return InListExpander.expand(request.getBody());
+  }
+
   protected PreparedStatement applyBindParams(final PreparedStatement statement, final JsonArray bindParams) throws SQLException {
     for (int i = 0; i < bindParams.size(); i++) {
       applyBindParam(statement, i + 1, bindParams.getValue(i));
@@ -306,6 +598,13 @@ public class BaseJdbcDialect implements JdbcDialect {
     return statement;
   }
 
+  protected PreparedStatement applyBindParams(final PreparedStatement statement, final JsonArray bindParams, final BindPlan bindPlan) throws SQLException {
+    for (int i = 0; i < bindParams.size(); i++) {
+      bindPlan.bind(statement, i + 1, bindParams.getValue(i));
+    }
+    return statement;
+  }
+
   protected void applyBindParam(final PreparedStatement statement, final int parameterIndex, final Object value) throws SQLException {
     if (value != null) {
       statement.setObject(parameterIndex, value);
@@ -316,6 +615,41 @@ public class BaseJdbcDialect implements JdbcDialect {
     }
   }
   
+  /**
+   * Returns the bind plan of the statement: built from the request's 'paramTypes' when given, otherwise from the
+   * statement's parameter metadata (when the driver supports it), which is looked up once per SQL string while its
+   * plan stays among the 'bindPlanCacheSize' most recently used.
+   * 
+   * @param requestBody
+   * @param statement
+   * @return
+   */
+  protected BindPlan getBindPlan(final JsonObject requestBody, final PreparedStatement statement) {
+    final JsonArray paramTypes = requestBody.getJsonArray("paramTypes");
+    BindPlan bindPlan = null;
+    
+    if (paramTypes != null) {
+      bindPlan = BindPlan.fromParamTypes(paramTypes);
+    } else if (!mSupportsParameterMetaData) {
+      bindPlan = BindPlan.UNTYPED;
+    } else {
+      final String sql = requestBody.getString("sql");
+      synchronized (mBindPlans) {
+        bindPlan = mBindPlans.get(sql);
+      }
+      if (bindPlan == null) {
+        bindPlan = BindPlan.fromMetaData(statement);
+        if (mBindPlanCacheSize > 0) {
+          synchronized (mBindPlans) {
+            mBindPlans.put(sql, bindPlan);
+          }
+        }
+      }
+    }
+    
+    return bindPlan;
+  }
+  
   protected List<JsonArray> getAllBindParams(final JsonObject requestBody, final PreparedStatement preparedStatement) {
     final JsonArray requestParams = getBindParams(requestBody, preparedStatement);
     final int requestParamsSize = requestParams.size();
@@ -371,56 +705,365 @@ public class BaseJdbcDialect implements JdbcDialect {
   // Protected ResultSet Protocol
   // -------------------------------------------------------------------------
 
+  /**
+   * Parses the ResultSet in the requested format: either an array of row objects, or (when columnar) a single
+   * <code>{ columns: [...], types: [...], rows: [[...], ...] }</code> object, which names each column only once.
+   * 
+   * @param resultSet
+   * @param temporalFormat
+   * @param columnar
+   * @return
+   * @throws SQLException
+   */
+  protected Object parseResultSet(final ResultSet resultSet, final TemporalFormat temporalFormat, final boolean columnar) throws SQLException {
+    return columnar ? parseResultSetColumnar(resultSet, temporalFormat) : parseResultSetArray(resultSet, temporalFormat);
+  }
+
+  /**
+   * Writes the ResultSet, in the requested format, straight into the writer's Buffer as JSON.
+   * 
+   * @param resultSet
+   * @param temporalFormat
+   * @param columnar
+   * @param writer
+   * @return the number of rows written
+   * @throws SQLException
+   */
+  protected int writeResultSet(final ResultSet resultSet, final TemporalFormat temporalFormat, final boolean columnar, final JsonBufferWriter writer) throws SQLException {
+    final ColumnPlan columnPlan = getColumnPlan(resultSet, temporalFormat);
+    
+    if (columnar) {
+      final Object[] typeNames = new Object[columnPlan.size()];
+      for (int i = 0; i < typeNames.length; i++) {
+        typeNames[i] = getTypeName(columnPlan.getType(i));
+      }
+      return writer.writeColumnar(resultSet, columnPlan, typeNames);
+    } else {
+      return writer.writeRows(resultSet, columnPlan);
+    }
+  }
+
+  /**
+   * Parses the ResultSet into an immutable JdbcResultSet, without building any intermediate JSON.
+   * 
+   * @param resultSet
+   * @param temporalFormat
+   * @return
+   * @throws SQLException
+   */
+  protected JdbcResultSet parseResultSetImmutable(final ResultSet resultSet, final TemporalFormat temporalFormat) throws SQLException {
+    final ColumnPlan columnPlan = getColumnPlan(resultSet, temporalFormat);
+    final List<Object[]> rows = new ArrayList<>();
+    
+    while (resultSet.next()) {
+      rows.add(columnPlan.readValues(resultSet));
+    }
+    
+    return new JdbcResultSet(columnPlan.getNames(), columnPlan.getTypes(), rows.toArray(new Object[rows.size()][]));
+  }
+
+  protected JsonObject parseResultSetColumnar(final ResultSet resultSet, final TemporalFormat temporalFormat) throws SQLException {
+    final ColumnPlan columnPlan = getColumnPlan(resultSet, temporalFormat);
+    final JsonArray columns = new JsonArray();
+    final JsonArray types = new JsonArray();
+    final JsonArray rows = new JsonArray();
+    
+    for (int i = 0; i < columnPlan.size(); i++) {
+      columns.add(columnPlan.getName(i));
+      types.add(getTypeName(columnPlan.getType(i)));
+    }
+    
+    while (resultSet.next()) {
+      rows.add(columnPlan.readArray(resultSet));
+    }
+    
+    return new JsonObject().put("columns", columns).put("types", types).put("rows", rows);
+  }
+
+  /**
+   * Appends the rows of the second (array or columnar) result to the first, returning the combined result.
+   * 
+   * @param results the result to append to, or null
+   * @param moreResults
+   * @return
+   */
+  protected Object appendRows(final Object results, final Object moreResults) {
+    if (results == null) {
+      return moreResults;
+    } else if (results instanceof JsonObject) {
+      ((JsonObject) results).getJsonArray("rows").addAll(((JsonObject) moreResults).getJsonArray("rows"));
+    } else {
+      ((JsonArray) results).addAll((JsonArray) moreResults);
+    }
+    return results;
+  }
+
+  /**
+   * Returns the number of rows in the (array or columnar) result.
+   * 
+   * @param results
+   * @return
+   */
+  protected int getRowCount(final Object results) {
+    return results instanceof JsonObject ? ((JsonObject) results).getJsonArray("rows").size() : ((JsonArray) results).size();
+  }
+
+  /**
+   * Returns the JDBCType name of the SQL type (or, for a vendor specific type, the type itself).
+   * 
+   * @param sqlType
+   * @return
+   */
+  protected Object getTypeName(final int sqlType) {
+    try {
+      return JDBCType.valueOf(sqlType).getName();
+    } catch (final IllegalArgumentException e) {
+      return sqlType;
+    }
+  }
+
   protected JsonArray parseResultSetArray(final ResultSet resultSet) throws SQLException {
+    return parseResultSetArray(resultSet, mTemporalFormat);
+  }
+
+  protected JsonArray parseResultSetArray(final ResultSet resultSet, final TemporalFormat temporalFormat) throws SQLException {
+    final ColumnPlan columnPlan = getColumnPlan(resultSet, temporalFormat);
     final JsonArray jsonArray = new JsonArray();
     
     while (resultSet.next()) {
-      jsonArray.add(parseResultSetObject(resultSet));
+      jsonArray.add(columnPlan.readObject(resultSet));
     }
 
     return jsonArray;
   }
 
   public JsonObject parseResultSetObject(final ResultSet resultSet) throws SQLException {
+    return getColumnPlan(resultSet, mTemporalFormat).readObject(resultSet);
+  }
+
+  /**
+   * Builds the column plan of the ResultSet, so that its metadata only needs to be consulted once (rather than for
+   * every row).
+   * 
+   * @param resultSet
+   * @param temporalFormat
+   * @return
+   * @throws SQLException
+   */
+  protected ColumnPlan getColumnPlan(final ResultSet resultSet, final TemporalFormat temporalFormat) throws SQLException {
     final ResultSetMetaData metaData = resultSet.getMetaData();
     final int columnCount = metaData.getColumnCount();
-    final JsonObject resultRow = new JsonObject();
+    final String[] names = new String[columnCount];
+    final int[] indexes = new int[columnCount];
+    final int[] types = new int[columnCount];
+    final ColumnReader[] readers = new ColumnReader[columnCount];
     
     for (int i = 0; i < columnCount; i++) {
-      final int columnIndex = i + 1;
-      final String columnName = metaData.getColumnName(columnIndex).toLowerCase();
-      switch (metaData.getColumnType(columnIndex)) {
-      case Types.DATE:
-        final Date date = resultSet.getDate(columnIndex);
-        resultRow.put(columnName, date == null ? null : new SimpleDateFormat(mDateFormat).format(date));
-        break;
-      case Types.TIMESTAMP:
-      case Types.TIMESTAMP_WITH_TIMEZONE:
-        final Date timestamp = resultSet.getTimestamp(columnIndex);
-        resultRow.put(columnName, timestamp == null ? null : new SimpleDateFormat(mTimestampFormat).format(timestamp));
-        break;
-      default:
-        resultRow.put(columnName, resultSet.getObject(columnIndex));
-      }
+      indexes[i] = i + 1;
+      names[i] = metaData.getColumnName(indexes[i]).toLowerCase().intern();
+      types[i] = metaData.getColumnType(indexes[i]);
+      readers[i] = getColumnReader(types[i], temporalFormat);
     }
     
-    return resultRow;
+    return new ColumnPlan(names, indexes, types, readers);
+  }
+
+  /**
+   * Returns the reader for columns of the given SQL type.
+   * 
+   * @param sqlType
+   * @param temporalFormat
+   * @return
+   */
+  protected ColumnReader getColumnReader(final int sqlType, final TemporalFormat temporalFormat) {
+    switch (sqlType) {
+    case Types.TINYINT:
+    case Types.SMALLINT:
+    case Types.INTEGER:
+      return StandardColumnReader.INT;
+    case Types.BIGINT:
+      return StandardColumnReader.LONG;
+    case Types.REAL:
+      return StandardColumnReader.FLOAT;
+    case Types.FLOAT:
+    case Types.DOUBLE:
+      return StandardColumnReader.DOUBLE;
+    case Types.BIT:
+    case Types.BOOLEAN:
+      return StandardColumnReader.BOOLEAN;
+    case Types.CHAR:
+    case Types.VARCHAR:
+    case Types.LONGVARCHAR:
+    case Types.NCHAR:
+    case Types.NVARCHAR:
+    case Types.LONGNVARCHAR:
+    case Types.CLOB:
+    case Types.NCLOB:
+      return StandardColumnReader.STRING;
+    case Types.DATE:
+      return new TemporalColumnReader(TemporalColumnReader.Kind.DATE, temporalFormat, mDateFormatter);
+    case Types.TIME:
+    case Types.TIME_WITH_TIMEZONE:
+      return new TemporalColumnReader(TemporalColumnReader.Kind.TIME, temporalFormat, mTimeFormatter);
+    case Types.TIMESTAMP:
+    case Types.TIMESTAMP_WITH_TIMEZONE:
+      return new TemporalColumnReader(TemporalColumnReader.Kind.TIMESTAMP, temporalFormat, mTimestampFormatter);
+    default:
+      return StandardColumnReader.OBJECT;
+    }
+  }
+
+  /**
+   * Returns the temporal format requested by the 'temporalFormat' of the request, or the dialect's default.
+   * 
+   * @param requestBody
+   * @return
+   */
+  protected TemporalFormat getTemporalFormat(final JsonObject requestBody) {
+    return TemporalFormat.forName(requestBody.getString("temporalFormat"), mTemporalFormat);
+  }
+
+  /**
+   * Returns true if the request asks for its results in the columnar format (<code>format: "columnar"</code>).
+   * 
+   * @param requestBody
+   * @return
+   */
+  protected boolean isColumnar(final JsonObject requestBody) {
+    return "columnar".equals(requestBody.getString("format"));
+  }
+
+  /**
+   * Compiles a (date, time or timestamp) pattern into a thread-safe formatter in the default time zone.
+   * 
+   * @param pattern
+   * @return
+   */
+  protected static DateTimeFormatter compileFormat(final String pattern) {
+    return DateTimeFormatter.ofPattern(pattern).withZone(ZoneId.systemDefault());
   }
 
   // -------------------------------------------------------------------------
   // Member Accessors
   // -------------------------------------------------------------------------
 
+  public String getDateFormat() {
+    return mDateFormat;
+  }
+  
+  public String getTimeFormat() {
+    return mTimeFormat;
+  }
+  
+  public String getTimestampFormat() {
+    return mTimestampFormat;
+  }
+  
+  public TemporalFormat getTemporalFormat() {
+    return mTemporalFormat;
+  }
+  
   public void setDateFormat(final String dateFormat) {
+    mDateFormatter = compileFormat(dateFormat);
     mDateFormat = dateFormat;
   }
   
+  public void setTimeFormat(final String timeFormat) {
+    mTimeFormatter = compileFormat(timeFormat);
+    mTimeFormat = timeFormat;
+  }
+  
   public void setTimestampFormat(final String timestampFormat) {
+    mTimestampFormatter = compileFormat(timestampFormat);
     mTimestampFormat = timestampFormat;
   }
   
+  public void setTemporalFormat(final TemporalFormat temporalFormat) {
+    mTemporalFormat = temporalFormat;
+  }
+  
   public void setSupportsParameterMetaData(final boolean supportsParameterMetaData) {
     mSupportsParameterMetaData = supportsParameterMetaData;
   }
   
+  public void setBatchSize(final int batchSize) {
+    mBatchSize = batchSize;
+  }
+  
+  public void setFetchSize(final int fetchSize) {
+    mFetchSize = fetchSize;
+  }
+  
+  public void setBindPlanCacheSize(final int bindPlanCacheSize) {
+    mBindPlanCacheSize = bindPlanCacheSize;
+  }
+  
+  public StatementCache getStatementCache() {
+    return mStatementCache;
+  }
+  
+  public void setStatementCache(final StatementCache statementCache) {
+    mStatementCache = statementCache;
+  }
+  
+  // -------------------------------------------------------------------------
+  // Inner Classes
+  // -------------------------------------------------------------------------
+
+  /**
+   * A cursor over an open ResultSet, which converts rows using the ResultSet's column plan.
+   */
+  protected class ResultSetCursor implements JdbcCursor {
+    
+    private final Connection mConnection;
+    private final PreparedStatement mStatement;
+    private final ResultSet mResultSet;
+    private final ColumnPlan mColumnPlan;
+    private boolean mExhausted;
+    private boolean mClosed;
+    
+    public ResultSetCursor(final Connection connection, final PreparedStatement statement, final ResultSet resultSet, final ColumnPlan columnPlan) {
+      mConnection = connection;
+      mStatement = statement;
+      mResultSet = resultSet;
+      mColumnPlan = columnPlan;
+    }
+
+    @Override
+    public JsonArray next(final int maxRows) throws SQLException {
+      final JsonArray rows = new JsonArray();
+      
+      while (!mExhausted && rows.size() < maxRows) {
+        if (mResultSet.next()) {
+          rows.add(mColumnPlan.readObject(mResultSet));
+        } else {
+          mExhausted = true;
+        }
+      }
+      
+      return rows;
+    }
+
+    @Override
+    public boolean isExhausted() {
+      return mExhausted;
+    }
+
+    @Override
+    public void close() {
+      if (!mClosed) {
+        boolean reusable = true;
+        mClosed = true;
+        JdbcUtils.closeQuietly(mResultSet);
+        try {
+          mStatement.setFetchSize(0);
+        } catch (final SQLException e) {
+          reusable = false;
+        }
+        releaseStatement(mConnection, mStatement, reusable);
+      }
+    }
+    
+  }
+  
 }
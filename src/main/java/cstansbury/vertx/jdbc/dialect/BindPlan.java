@@ -0,0 +1,219 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cstansbury.vertx.jdbc.dialect;
+
+import io.vertx.core.json.JsonArray;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.JDBCType;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * The SQL types of the parameters of a statement, used to bind each parameter with a typed setter (setInt, setLong,
+ * setString, setNull etc.) rather than leaving the driver to infer a type from whatever Java type the JSON decoder
+ * produced. A plan is built once per SQL string (from the parameter metadata) or per request (from its 'paramTypes').
+ *
+ * @author cstansbury
+ */
+public class BindPlan {
+
+  // -------------------------------------------------------------------------
+  // Constants
+  // -------------------------------------------------------------------------
+
+  /** The type of a parameter whose SQL type is not known. */
+  public static final int UNKNOWN_TYPE = Integer.MIN_VALUE;
+
+  /** The plan of a statement whose parameter types are not known. */
+  public static final BindPlan UNTYPED = new BindPlan(new int[0]);
+
+  // -------------------------------------------------------------------------
+  // Member Variables
+  // -------------------------------------------------------------------------
+
+  private final int[] mTypes;
+
+  // -------------------------------------------------------------------------
+  // Constructors
+  // -------------------------------------------------------------------------
+
+  public BindPlan(final int[] types) {
+    mTypes = types;
+  }
+
+  // -------------------------------------------------------------------------
+  // Static Methods
+  // -------------------------------------------------------------------------
+
+  /**
+   * Builds the plan from the parameter metadata of the statement, or returns the untyped plan if the driver cannot
+   * supply it.
+   *
+   * @param statement
+   * @return
+   */
+  public static BindPlan fromMetaData(final PreparedStatement statement) {
+    try {
+      final ParameterMetaData metaData = statement.getParameterMetaData();
+      final int[] types = new int[metaData.getParameterCount()];
+      for (int i = 0; i < types.length; i++) {
+        types[i] = metaData.getParameterType(i + 1);
+      }
+      return new BindPlan(types);
+    } catch (final SQLException e) {
+      return UNTYPED;
+    }
+  }
+
+  /**
+   * Builds the plan from a list of SQL types, given either as java.sql.Types values or as JDBCType names (e.g.
+   * "INTEGER"). A null entry leaves the type of that parameter unknown.
+   *
+   * @param paramTypes
+   * @return
+   */
+  public static BindPlan fromParamTypes(final JsonArray paramTypes) {
+    final int[] types = new int[paramTypes.size()];
+
+    for (int i = 0; i < types.length; i++) {
+      final Object type = paramTypes.getValue(i);
+      if (type == null) {
+        types[i] = UNKNOWN_TYPE;
+      } else if (type instanceof Number) {
+        types[i] = ((Number) type).intValue();
+      } else {
+        try {
+          types[i] = JDBCType.valueOf(type.toString().toUpperCase()).getVendorTypeNumber();
+        } catch (final IllegalArgumentException e) {
+          throw new IllegalArgumentException("Invalid param type: " + type);
+        }
+      }
+    }
+
+    return new BindPlan(types);
+  }
+
+  // -------------------------------------------------------------------------
+  // Public Protocol
+  // -------------------------------------------------------------------------
+
+  /**
+   * Binds the value to the (1-based) parameter with the setter for the parameter's type, when the value fits that
+   * type exactly. Any other value is left to the driver to convert (or reject), so that it is never silently narrowed.
+   *
+   * @param statement
+   * @param parameterIndex
+   * @param value
+   * @throws SQLException
+   */
+  public void bind(final PreparedStatement statement, final int parameterIndex, final Object value) throws SQLException {
+    final int sqlType = getType(parameterIndex);
+
+    if (value == null) {
+      statement.setNull(parameterIndex, sqlType == UNKNOWN_TYPE ? Types.VARCHAR : sqlType);
+      return;
+    }
+
+    switch (sqlType) {
+    case Types.TINYINT:
+    case Types.SMALLINT:
+    case Types.INTEGER:
+      if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+        statement.setInt(parameterIndex, ((Number) value).intValue());
+        return;
+      }
+      break;
+    case Types.BIGINT:
+      if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte
+        || (value instanceof BigInteger && ((BigInteger) value).bitLength() < Long.SIZE)) {
+        statement.setLong(parameterIndex, ((Number) value).longValue());
+        return;
+      }
+      break;
+    case Types.REAL:
+      if (value instanceof Float) {
+        statement.setFloat(parameterIndex, (Float) value);
+        return;
+      }
+      break;
+    case Types.FLOAT:
+    case Types.DOUBLE:
+      if (value instanceof Double || value instanceof Float || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+        statement.setDouble(parameterIndex, ((Number) value).doubleValue());
+        return;
+      }
+      break;
+    case Types.DECIMAL:
+    case Types.NUMERIC:
+      if (value instanceof BigDecimal) {
+        statement.setBigDecimal(parameterIndex, (BigDecimal) value);
+        return;
+      } else if (value instanceof Number) {
+        statement.setBigDecimal(parameterIndex, new BigDecimal(value.toString()));
+        return;
+      }
+      break;
+    case Types.BIT:
+    case Types.BOOLEAN:
+      if (value instanceof Boolean) {
+        statement.setBoolean(parameterIndex, (Boolean) value);
+        return;
+      }
+      break;
+    case Types.CHAR:
+    case Types.VARCHAR:
+    case Types.LONGVARCHAR:
+    case Types.NCHAR:
+    case Types.NVARCHAR:
+    case Types.LONGNVARCHAR:
+      if (value instanceof String) {
+        statement.setString(parameterIndex, (String) value);
+        return;
+      }
+      break;
+    }
+
+    if (sqlType == UNKNOWN_TYPE) {
+      statement.setObject(parameterIndex, value);
+    } else {
+      statement.setObject(parameterIndex, value, sqlType);
+    }
+  }
+
+  // -------------------------------------------------------------------------
+  // Member Accessors
+  // -------------------------------------------------------------------------
+
+  public int size() {
+    return mTypes.length;
+  }
+
+  /**
+   * Returns the SQL type of the (1-based) parameter, or {@link #UNKNOWN_TYPE}.
+   *
+   * @param parameterIndex
+   * @return
+   */
+  public int getType(final int parameterIndex) {
+    return parameterIndex <= mTypes.length ? mTypes[parameterIndex - 1] : UNKNOWN_TYPE;
+  }
+
+}
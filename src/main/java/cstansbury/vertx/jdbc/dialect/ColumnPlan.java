@@ -0,0 +1,168 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cstansbury.vertx.jdbc.dialect;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.sql.CallableStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import cstansbury.vertx.jdbc.JdbcResultSet;
+
+/**
+ * The precomputed plan for converting the columns of a ResultSet (or the out parameters of a CallableStatement) into
+ * JSON: the (interned, lower case) names, the SQL types and a typed reader for each column. A plan is built once (e.g.
+ * per ResultSet) and then reused for every row.
+ *
+ * @author cstansbury
+ */
+public class ColumnPlan {
+
+  // -------------------------------------------------------------------------
+  // Member Variables
+  // -------------------------------------------------------------------------
+
+  private final String[] mNames;
+  private final int[] mIndexes;
+  private final int[] mTypes;
+  private final ColumnReader[] mReaders;
+
+  // -------------------------------------------------------------------------
+  // Constructors
+  // -------------------------------------------------------------------------
+
+  /**
+   *
+   * @param names the column names
+   * @param indexes the (1-based) column or parameter indexes
+   * @param types the SQL types (java.sql.Types) of the columns
+   * @param readers the readers of the columns
+   */
+  public ColumnPlan(final String[] names, final int[] indexes, final int[] types, final ColumnReader[] readers) {
+    mNames = names;
+    mIndexes = indexes;
+    mTypes = types;
+    mReaders = readers;
+  }
+
+  // -------------------------------------------------------------------------
+  // Public Protocol
+  // -------------------------------------------------------------------------
+
+  /**
+   * Reads the current row of the ResultSet into a new JsonObject.
+   *
+   * @param resultSet
+   * @return
+   * @throws SQLException
+   */
+  public JsonObject readObject(final ResultSet resultSet) throws SQLException {
+    final JsonObject row = new JsonObject();
+
+    for (int i = 0; i < mReaders.length; i++) {
+      row.put(mNames[i], mReaders[i].read(resultSet, mIndexes[i]));
+    }
+
+    return row;
+  }
+
+  /**
+   * Reads the current row of the ResultSet into a new JsonArray of its column values (in column order).
+   *
+   * @param resultSet
+   * @return
+   * @throws SQLException
+   */
+  public JsonArray readArray(final ResultSet resultSet) throws SQLException {
+    final JsonArray row = new JsonArray();
+
+    for (int i = 0; i < mReaders.length; i++) {
+      row.add(mReaders[i].read(resultSet, mIndexes[i]));
+    }
+
+    return row;
+  }
+
+  /**
+   * Reads the current row of the ResultSet into a new array of its (normalized) column values, for a
+   * {@link JdbcResultSet}.
+   *
+   * @param resultSet
+   * @return
+   * @throws SQLException
+   */
+  public Object[] readValues(final ResultSet resultSet) throws SQLException {
+    final Object[] row = new Object[mReaders.length];
+
+    for (int i = 0; i < mReaders.length; i++) {
+      row[i] = JdbcResultSet.normalize(mReaders[i].read(resultSet, mIndexes[i]));
+    }
+
+    return row;
+  }
+
+  /**
+   * Reads the out parameters of the CallableStatement into the given JsonObject.
+   *
+   * @param statement
+   * @param row
+   * @return
+   * @throws SQLException
+   */
+  public JsonObject readObject(final CallableStatement statement, final JsonObject row) throws SQLException {
+    for (int i = 0; i < mReaders.length; i++) {
+      row.put(mNames[i], mReaders[i].read(statement, mIndexes[i]));
+    }
+
+    return row;
+  }
+
+  // -------------------------------------------------------------------------
+  // Member Accessors
+  // -------------------------------------------------------------------------
+
+  public int size() {
+    return mReaders.length;
+  }
+
+  public String getName(final int column) {
+    return mNames[column];
+  }
+
+  public int getIndex(final int column) {
+    return mIndexes[column];
+  }
+
+  public int getType(final int column) {
+    return mTypes[column];
+  }
+
+  public ColumnReader getReader(final int column) {
+    return mReaders[column];
+  }
+
+  public String[] getNames() {
+    return mNames.clone();
+  }
+
+  public int[] getTypes() {
+    return mTypes.clone();
+  }
+
+}
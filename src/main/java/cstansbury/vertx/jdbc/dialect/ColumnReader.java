@@ -0,0 +1,35 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cstansbury.vertx.jdbc.dialect;
+
+import java.sql.CallableStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Reads a single (typed) column value from a ResultSet, or out parameter value from a CallableStatement, as a value
+ * that can be put straight into a JsonObject / JsonArray.
+ * 
+ * @author cstansbury
+ */
+public interface ColumnReader {
+
+  Object read(ResultSet resultSet, int columnIndex) throws SQLException;
+
+  Object read(CallableStatement statement, int parameterIndex) throws SQLException;
+
+}
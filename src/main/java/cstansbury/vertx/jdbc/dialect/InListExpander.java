@@ -0,0 +1,297 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cstansbury.vertx.jdbc.dialect;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Expands the IN-list placeholders (<code>?[]</code>) of a request's SQL, each bound to an array param, into as many
+ * plain placeholders as the array has values. To keep the number of distinct statements (in the statement cache and
+ * the database's plan cache) small, the lists are padded (by repeating their last value) to the next of a few fixed
+ * bucket sizes (1, 4, 16, 64 and 256, then multiples of 256). An empty list is bound as a single null, which matches
+ * no rows in an IN list; as it would also match no rows in a NOT IN list (rather than every row), an empty list of a
+ * NOT IN placeholder is rejected.
+ * <p>
+ * For example, <code>select * from user where id in (?[]) and active = ?</code> with the params
+ * <code>[[1, 2, 3], true]</code> is executed as <code>select * from user where id in (?, ?, ?, ?) and active = ?</code>
+ * with the params <code>[1, 2, 3, 3, true]</code>.
+ * <p>
+ * With multiple sets of params, the lists of a placeholder are padded to the bucket of its longest list, so that
+ * every set is executed by the same statement.
+ *
+ * @author cstansbury
+ */
+public final class InListExpander {
+
+  // -------------------------------------------------------------------------
+  // Constants
+  // -------------------------------------------------------------------------
+
+  /** The placeholder of an IN-list. */
+  public static final String MARKER = "?[]";
+
+  private static final int[] BUCKETS = { 1, 4, 16, 64, 256 };
+
+  /** Matches the end of the SQL before a NOT IN placeholder. */
+  private static final Pattern NOT_IN_PATTERN = Pattern.compile("\\bnot\\s+in\\s*\\(\\s*$", Pattern.CASE_INSENSITIVE);
+
+  // -------------------------------------------------------------------------
+  // Constructors
+  // -------------------------------------------------------------------------
+
+  private InListExpander() {
+  }
+
+  // -------------------------------------------------------------------------
+  // Static Methods
+  // -------------------------------------------------------------------------
+
+  /**
+   * Returns the request body with its IN-list placeholders expanded, or the request body itself if its SQL has none.
+   *
+   * @param requestBody
+   * @return
+   * @throws IllegalArgumentException if the param of an IN-list placeholder is not an array, or a set of params does
+   *    not match the placeholders, or the list of a NOT IN placeholder is empty
+   */
+  public static JsonObject expand(final JsonObject requestBody) {
+    final String sql = requestBody.getString("sql");
+
+    if (sql == null || sql.indexOf(MARKER) < 0) {
+      return requestBody;
+    }
+
+    final List<Integer> offsets = new ArrayList<>();
+    final List<Boolean> lists = new ArrayList<>();
+    parsePlaceholders(sql, offsets, lists);
+    if (!lists.contains(Boolean.TRUE)) {
+      return requestBody;
+    }
+
+    final JsonArray params = requestBody.getJsonArray("params", new JsonArray());
+    final boolean multiSet = isMultiSet(params, lists);
+    final List<JsonArray> paramSets = new ArrayList<>();
+    if (multiSet) {
+      for (final Object paramSet : params) {
+        paramSets.add((JsonArray) paramSet);
+      }
+    } else {
+      paramSets.add(params);
+    }
+
+    final int[] sizes = getListSizes(paramSets, lists, getNotInLists(sql, offsets, lists));
+    final JsonArray expandedParams = new JsonArray();
+    for (final JsonArray paramSet : paramSets) {
+      final JsonArray expandedSet = expandParams(paramSet, lists, sizes);
+      if (multiSet) {
+        expandedParams.add(expandedSet);
+      } else {
+        expandedParams.addAll(expandedSet);
+      }
+    }
+
+    final JsonObject expandedBody = new JsonObject(new LinkedHashMap<>(requestBody.getMap()))
+      .put("sql", expandSql(sql, offsets, lists, sizes))
+      .put("params", expandedParams);
+    final JsonArray paramTypes = requestBody.getJsonArray("paramTypes");
+    if (paramTypes != null) {
+      expandedBody.put("paramTypes", expandTypes(paramTypes, lists, sizes));
+    }
+
+    return expandedBody;
+  }
+
+  /**
+   * Returns the bucket size of a list of the given size.
+   *
+   * @param size
+   * @return
+   */
+  public static int getBucket(final int size) {
+    for (final int bucket : BUCKETS) {
+      if (size <= bucket) {
+        return bucket;
+      }
+    }
+
+    final int largest = BUCKETS[BUCKETS.length - 1];
+    return (size + largest - 1) / largest * largest;
+  }
+
+  // -------------------------------------------------------------------------
+  // Private Static Methods
+  // -------------------------------------------------------------------------
+
+  /**
+   * Finds the offset of each placeholder of the SQL (outside of its literals, quoted identifiers and comments), and
+   * whether it is an IN-list placeholder.
+   */
+  private static void parsePlaceholders(final String sql, final List<Integer> offsets, final List<Boolean> lists) {
+    final int length = sql.length();
+    int i = 0;
+
+    while (i < length) {
+      final char c = sql.charAt(i);
+
+      if (c == '\'' || c == '"') {
+        final int end = sql.indexOf(c, i + 1);
+        i = end < 0 ? length : end + 1;
+      } else if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+        final int end = sql.indexOf('\n', i + 2);
+        i = end < 0 ? length : end + 1;
+      } else if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+        final int end = sql.indexOf("*/", i + 2);
+        i = end < 0 ? length : end + 2;
+      } else if (c == '?') {
+        final boolean list = sql.startsWith(MARKER, i);
+        offsets.add(i);
+        lists.add(list);
+        i += list ? MARKER.length() : 1;
+      } else {
+        i++;
+      }
+    }
+  }
+
+  /**
+   * Returns true if the params are multiple sets of params: a list of lists, each with a param per placeholder and an
+   * array param for each IN-list placeholder (rather than a single set whose first param is an IN-list).
+   */
+  private static boolean isMultiSet(final JsonArray params, final List<Boolean> lists) {
+    if (params.isEmpty()) {
+      return false;
+    }
+
+    for (final Object paramSet : params) {
+      if (!(paramSet instanceof JsonArray) || ((JsonArray) paramSet).size() != lists.size()) {
+        return false;
+      }
+      for (int i = 0; i < lists.size(); i++) {
+        if (lists.get(i) && !(((JsonArray) paramSet).getValue(i) instanceof JsonArray)) {
+          return false;
+        }
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Returns whether each placeholder is the IN-list placeholder of a NOT IN.
+   */
+  private static boolean[] getNotInLists(final String sql, final List<Integer> offsets, final List<Boolean> lists) {
+    final boolean[] notInLists = new boolean[lists.size()];
+
+    for (int i = 0; i < lists.size(); i++) {
+      notInLists[i] = lists.get(i) && NOT_IN_PATTERN.matcher(sql).region(0, offsets.get(i)).find();
+    }
+
+    return notInLists;
+  }
+
+  /**
+   * Returns the (bucket) size of each IN-list placeholder: that of its longest list across the sets of params.
+   */
+  private static int[] getListSizes(final List<JsonArray> paramSets, final List<Boolean> lists, final boolean[] notInLists) {
+    final int[] sizes = new int[lists.size()];
+
+    for (final JsonArray paramSet : paramSets) {
+      if (paramSet.size() != lists.size()) {
+        throw new IllegalArgumentException("Expected " + lists.size() + " params, but got " + paramSet.size());
+      }
+      for (int i = 0; i < lists.size(); i++) {
+        if (lists.get(i)) {
+          if (!(paramSet.getValue(i) instanceof JsonArray)) {
+            throw new IllegalArgumentException("The param of IN-list placeholder " + (i + 1) + " must be an array");
+          }
+          if (notInLists[i] && paramSet.getJsonArray(i).isEmpty()) {
+            throw new IllegalArgumentException("The list of NOT IN placeholder " + (i + 1) + " must not be empty");
+          }
+          sizes[i] = Math.max(sizes[i], paramSet.getJsonArray(i).size());
+        }
+      }
+    }
+
+    for (int i = 0; i < sizes.length; i++) {
+      sizes[i] = lists.get(i) ? getBucket(sizes[i]) : 1;
+    }
+
+    return sizes;
+  }
+
+  private static String expandSql(final String sql, final List<Integer> offsets, final List<Boolean> lists, final int[] sizes) {
+    final StringBuilder expandedSql = new StringBuilder(sql.length() + 16);
+    int start = 0;
+
+    for (int i = 0; i < offsets.size(); i++) {
+      if (lists.get(i)) {
+        expandedSql.append(sql, start, offsets.get(i)).append('?');
+        for (int j = 1; j < sizes[i]; j++) {
+          expandedSql.append(", ?");
+        }
+        start = offsets.get(i) + MARKER.length();
+      }
+    }
+
+    return expandedSql.append(sql, start, sql.length()).toString();
+  }
+
+  private static JsonArray expandParams(final JsonArray paramSet, final List<Boolean> lists, final int[] sizes) {
+    final JsonArray expandedSet = new JsonArray();
+
+    for (int i = 0; i < lists.size(); i++) {
+      if (lists.get(i)) {
+        final JsonArray list = paramSet.getJsonArray(i);
+        final Object padding = list.isEmpty() ? null : list.getValue(list.size() - 1);
+        expandedSet.addAll(list);
+        for (int j = list.size(); j < sizes[i]; j++) {
+          addValue(expandedSet, padding);
+        }
+      } else {
+        addValue(expandedSet, paramSet.getValue(i));
+      }
+    }
+
+    return expandedSet;
+  }
+
+  private static JsonArray expandTypes(final JsonArray paramTypes, final List<Boolean> lists, final int[] sizes) {
+    final JsonArray expandedTypes = new JsonArray();
+
+    for (int i = 0; i < paramTypes.size(); i++) {
+      for (int j = 0; j < (i < sizes.length ? sizes[i] : 1); j++) {
+        addValue(expandedTypes, paramTypes.getValue(i));
+      }
+    }
+
+    return expandedTypes;
+  }
+
+  private static void addValue(final JsonArray array, final Object value) {
+    if (value == null) {
+      array.addNull();
+    } else {
+      array.add(value);
+    }
+  }
+
+}
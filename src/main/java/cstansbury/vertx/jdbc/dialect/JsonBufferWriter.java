@@ -0,0 +1,233 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cstansbury.vertx.jdbc.dialect;
+
+import io.vertx.core.buffer.Buffer;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Base64;
+
+/**
+ * Writes the rows of a ResultSet straight into a Buffer as (UTF-8) JSON text, without building a JsonArray of
+ * JsonObjects first. The output is the same JSON as the encoding of the default reply: numbers, booleans and strings
+ * as themselves, and binary values as Base64 strings.
+ *
+ * @author cstansbury
+ */
+public class JsonBufferWriter {
+
+  // -------------------------------------------------------------------------
+  // Constants
+  // -------------------------------------------------------------------------
+
+  private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] FALSE = "false".getBytes(StandardCharsets.US_ASCII);
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  // -------------------------------------------------------------------------
+  // Member Variables
+  // -------------------------------------------------------------------------
+
+  private final Buffer mBuffer;
+
+  // -------------------------------------------------------------------------
+  // Constructors
+  // -------------------------------------------------------------------------
+
+  public JsonBufferWriter(final Buffer buffer) {
+    mBuffer = buffer;
+  }
+
+  // -------------------------------------------------------------------------
+  // Public Protocol
+  // -------------------------------------------------------------------------
+
+  /**
+   * Writes the (remaining) rows of the ResultSet as an array of row objects.
+   *
+   * @param resultSet
+   * @param columnPlan
+   * @return the number of rows written
+   * @throws SQLException
+   */
+  public int writeRows(final ResultSet resultSet, final ColumnPlan columnPlan) throws SQLException {
+    final byte[][] fieldNames = new byte[columnPlan.size()][];
+    int rowCount = 0;
+
+    // The names are encoded once, rather than for every row
+    for (int i = 0; i < fieldNames.length; i++) {
+      final Buffer fieldName = Buffer.buffer();
+      new JsonBufferWriter(fieldName).writeString(columnPlan.getName(i));
+      fieldNames[i] = fieldName.appendByte((byte) ':').getBytes();
+    }
+
+    mBuffer.appendByte((byte) '[');
+    while (resultSet.next()) {
+      if (rowCount++ > 0) {
+        mBuffer.appendByte((byte) ',');
+      }
+      mBuffer.appendByte((byte) '{');
+      for (int i = 0; i < fieldNames.length; i++) {
+        if (i > 0) {
+          mBuffer.appendByte((byte) ',');
+        }
+        mBuffer.appendBytes(fieldNames[i]);
+        writeValue(columnPlan.getReader(i).read(resultSet, columnPlan.getIndex(i)));
+      }
+      mBuffer.appendByte((byte) '}');
+    }
+    mBuffer.appendByte((byte) ']');
+
+    return rowCount;
+  }
+
+  /**
+   * Writes the (remaining) rows of the ResultSet in the columnar format.
+   *
+   * @param resultSet
+   * @param columnPlan
+   * @param typeNames the names of the column types
+   * @return the number of rows written
+   * @throws SQLException
+   */
+  public int writeColumnar(final ResultSet resultSet, final ColumnPlan columnPlan, final Object[] typeNames) throws SQLException {
+    final int columnCount = columnPlan.size();
+    int rowCount = 0;
+
+    mBuffer.appendString("{\"columns\":[");
+    for (int i = 0; i < columnCount; i++) {
+      if (i > 0) {
+        mBuffer.appendByte((byte) ',');
+      }
+      writeString(columnPlan.getName(i));
+    }
+    mBuffer.appendString("],\"types\":[");
+    for (int i = 0; i < columnCount; i++) {
+      if (i > 0) {
+        mBuffer.appendByte((byte) ',');
+      }
+      writeValue(typeNames[i]);
+    }
+    mBuffer.appendString("],\"rows\":[");
+    while (resultSet.next()) {
+      if (rowCount++ > 0) {
+        mBuffer.appendByte((byte) ',');
+      }
+      mBuffer.appendByte((byte) '[');
+      for (int i = 0; i < columnCount; i++) {
+        if (i > 0) {
+          mBuffer.appendByte((byte) ',');
+        }
+        writeValue(columnPlan.getReader(i).read(resultSet, columnPlan.getIndex(i)));
+      }
+      mBuffer.appendByte((byte) ']');
+    }
+    mBuffer.appendString("]}");
+
+    return rowCount;
+  }
+
+  /**
+   * Writes a single JSON value.
+   *
+   * @param value
+   */
+  public void writeValue(final Object value) {
+    if (value == null) {
+      mBuffer.appendBytes(NULL);
+    } else if (value instanceof Boolean) {
+      mBuffer.appendBytes((Boolean) value ? TRUE : FALSE);
+    } else if (value instanceof Double || value instanceof Float) {
+      final double number = ((Number) value).doubleValue();
+      if (Double.isNaN(number) || Double.isInfinite(number)) {
+        mBuffer.appendBytes(NULL);
+      } else {
+        mBuffer.appendString(value.toString());
+      }
+    } else if (value instanceof Number) {
+      mBuffer.appendString(value.toString());
+    } else if (value instanceof byte[]) {
+      writeString(Base64.getEncoder().encodeToString((byte[]) value));
+    } else {
+      writeString(value.toString());
+    }
+  }
+
+  /**
+   * Writes a quoted (and, where needed, escaped) JSON string.
+   *
+   * @param value
+   */
+  public void writeString(final String value) {
+    mBuffer.appendByte((byte) '"');
+
+    int start = 0;
+    for (int i = 0; i < value.length(); i++) {
+      final char c = value.charAt(i);
+      if (c < 0x20 || c == '"' || c == '\\') {
+        if (i > start) {
+          mBuffer.appendString(value.substring(start, i));
+        }
+        writeEscaped(c);
+        start = i + 1;
+      }
+    }
+    if (start == 0) {
+      mBuffer.appendString(value);
+    } else if (start < value.length()) {
+      mBuffer.appendString(value.substring(start));
+    }
+
+    mBuffer.appendByte((byte) '"');
+  }
+
+  // -------------------------------------------------------------------------
+  // Private Protocol
+  // -------------------------------------------------------------------------
+
+  private void writeEscaped(final char c) {
+    switch (c) {
+    case '"':
+      mBuffer.appendString("\\\"");
+      break;
+    case '\\':
+      mBuffer.appendString("\\\\");
+      break;
+    case '\n':
+      mBuffer.appendString("\\n");
+      break;
+    case '\r':
+      mBuffer.appendString("\\r");
+      break;
+    case '\t':
+      mBuffer.appendString("\\t");
+      break;
+    case '\b':
+      mBuffer.appendString("\\b");
+      break;
+    case '\f':
+      mBuffer.appendString("\\f");
+      break;
+    default:
+      mBuffer.appendString("\\u00").appendByte((byte) HEX[c >> 4]).appendByte((byte) HEX[c & 0xF]);
+    }
+  }
+
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cstansbury.vertx.jdbc.dialect;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import cstansbury.vertx.jdbc.JdbcRequest;
+import cstansbury.vertx.jdbc.cache.StatementKey;
+
+/**
+ * A dialect that executes an update of multiple sets of params whose SQL is a single-row
+ * <code>INSERT INTO ... VALUES (...)</code> as multi-row inserts, <code>INSERT INTO ... VALUES (...), (...), ...</code>,
+ * of (at most) 'rowsPerStatement' rows each, in one transaction. This is much faster than a JDBC batch on databases
+ * whose drivers execute each row of a batch as a round trip of its own.
+ * <p>
+ * The rows of a statement are also limited so that it has no more than 'maxParams' params. Each row's 'rowCount' is
+ * 1 when a statement inserted all of its rows, or {@link Statement#SUCCESS_NO_INFO} otherwise. Updates that request
+ * their generated keys, and any other SQL, are executed as by {@link BaseJdbcDialect}.
+ *
+ * @author cstansbury
+ */
+public class MultiRowInsertDialect extends BaseJdbcDialect {
+
+  // -------------------------------------------------------------------------
+  // Constants
+  // -------------------------------------------------------------------------
+
+  public static final int DEFAULT_ROWS_PER_STATEMENT = 100;
+
+  public static final int DEFAULT_MAX_PARAMS = 2000;
+
+  private static final Pattern INSERT_PATTERN = Pattern.compile("^\\s*insert\\s+into\\s.+?\\svalues\\s*(\\(.*\\))\\s*;?\\s*$", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+  // -------------------------------------------------------------------------
+  // Member Variables
+  // -------------------------------------------------------------------------
+
+  private int mRowsPerStatement = DEFAULT_ROWS_PER_STATEMENT;
+
+  private int mMaxParams = DEFAULT_MAX_PARAMS;
+
+  // -------------------------------------------------------------------------
+  // Overridden BaseJdbcDialect Protocol
+  // -------------------------------------------------------------------------
+
+  @Override
+  public Object executeUpdate(final JdbcRequest request) throws SQLException {
+    final JsonObject requestBody = getRequestBody(request);
+    final Connection connection = request.getConnection();
+    final MultiRowInsert insert = isGeneratedKeysRequested(requestBody) ? null : MultiRowInsert.parse(requestBody.getString("sql"));
+
+    if (insert == null) {
+      return super.executeUpdate(request);
+    }
+
+    // The single-row statement is only prepared for its sets of params and bind plan
+    final PreparedStatement statement = prepareUpdateStatement(connection, requestBody);
+    final List<JsonArray> allBindParams;
+    final BindPlan bindPlan;
+    boolean reusable = false;
+    try {
+      allBindParams = getAllBindParams(requestBody, statement);
+      bindPlan = getBindPlan(requestBody, statement);
+      reusable = true;
+    } finally {
+      releaseStatement(connection, statement, reusable);
+    }
+
+    if (allBindParams.size() < 2) {
+      return super.executeUpdate(request);
+    }
+
+    final JsonArray rowCounts = executeInserts(connection, insert, allBindParams, bindPlan);
+
+    if (requestBody.getBoolean("batch", false)) {
+      return new JsonObject().put("rowCount", rowCounts);
+    }
+
+    final JsonArray responseRows = new JsonArray();
+    for (int i = 0; i < rowCounts.size(); i++) {
+      responseRows.add(new JsonObject().put("rowCount", rowCounts.getInteger(i)));
+    }
+    return flattenResponseRows(responseRows);
+  }
+
+  // -------------------------------------------------------------------------
+  // Protected Protocol
+  // -------------------------------------------------------------------------
+
+  /**
+   * Executes the rows of params as multi-row inserts, in one transaction, returning the 'rowCount' of each row.
+   *
+   * @param connection
+   * @param insert
+   * @param allBindParams
+   * @param bindPlan the bind plan of a single row
+   * @return
+   * @throws SQLException
+   */
+  protected JsonArray executeInserts(final Connection connection, final MultiRowInsert insert, final List<JsonArray> allBindParams, final BindPlan bindPlan) throws SQLException {
+    final int rowsPerStatement = Math.max(1, Math.min(mRowsPerStatement, mMaxParams / Math.max(1, insert.mParamCount)));
+    final BindPlan chunkPlan = getChunkPlan(bindPlan, insert.mParamCount, rowsPerStatement);
+    final JsonArray rowCounts = new JsonArray();
+    Boolean originalAutoCommit = null;
+    boolean completed = false;
+
+    if (connection.getAutoCommit()) {
+      originalAutoCommit = Boolean.TRUE;
+      connection.setAutoCommit(false);
+    }
+
+    try {
+      for (int from = 0; from < allBindParams.size(); from += rowsPerStatement) {
+        final int rows = Math.min(rowsPerStatement, allBindParams.size() - from);
+        final JsonArray chunkParams = new JsonArray();
+        for (int row = from; row < from + rows; row++) {
+          final JsonArray bindParams = allBindParams.get(row);
+          if (bindParams.size() != insert.mParamCount) {
+            throw new SQLException("Row " + row + ": expected " + insert.mParamCount + " params, but got " + bindParams.size());
+          }
+          chunkParams.addAll(bindParams);
+        }
+
+        final PreparedStatement statement = prepareStatement(connection, StatementKey.forStatement(insert.getSql(rows)));
+        boolean reusable = false;
+        try {
+          final int rowCount = applyBindParams(statement, chunkParams, chunkPlan).executeUpdate();
+          for (int row = 0; row < rows; row++) {
+            rowCounts.add(rowCount == rows ? 1 : Statement.SUCCESS_NO_INFO);
+          }
+          reusable = true;
+        } finally {
+          releaseStatement(connection, statement, reusable);
+        }
+      }
+
+      if (originalAutoCommit != null) {
+        connection.commit();
+      }
+      completed = true;
+    } finally {
+      if (originalAutoCommit != null) {
+        try {
+          if (!completed) {
+            connection.rollback();
+          }
+        } finally {
+          connection.setAutoCommit(originalAutoCommit);
+        }
+      }
+    }
+
+    return rowCounts;
+  }
+
+  /**
+   * Returns the bind plan of a statement of (at most) the given rows: the single-row plan, repeated for each row.
+   */
+  private BindPlan getChunkPlan(final BindPlan bindPlan, final int paramCount, final int rows) {
+    if (bindPlan.size() == 0) {
+      return bindPlan;
+    }
+
+    final int[] types = new int[paramCount * rows];
+    for (int i = 0; i < types.length; i++) {
+      types[i] = bindPlan.getType(i % paramCount + 1);
+    }
+    return new BindPlan(types);
+  }
+
+  // -------------------------------------------------------------------------
+  // Member Accessors
+  // -------------------------------------------------------------------------
+
+  public int getRowsPerStatement() {
+    return mRowsPerStatement;
+  }
+
+  public void setRowsPerStatement(final int rowsPerStatement) {
+    mRowsPerStatement = rowsPerStatement;
+  }
+
+  public int getMaxParams() {
+    return mMaxParams;
+  }
+
+  public void setMaxParams(final int maxParams) {
+    mMaxParams = maxParams;
+  }
+
+  // -------------------------------------------------------------------------
+  // Inner Classes
+  // -------------------------------------------------------------------------
+
+  /**
+   * A single-row INSERT, split into the SQL before its VALUES row and the row itself.
+   */
+  protected static class MultiRowInsert {
+
+    private final String mPrefix;
+    private final String mRow;
+    private final int mParamCount;
+
+    private MultiRowInsert(final String prefix, final String row, final int paramCount) {
+      mPrefix = prefix;
+      mRow = row;
+      mParamCount = paramCount;
+    }
+
+    /**
+     * Parses the SQL of a single-row INSERT whose params are all in its VALUES row, or returns null if the SQL is
+     * anything else (such as an INSERT of multiple rows, or with a SELECT or a RETURNING clause).
+     *
+     * @param sql
+     * @return
+     */
+    public static MultiRowInsert parse(final String sql) {
+      final Matcher matcher = sql != null ? INSERT_PATTERN.matcher(sql) : null;
+
+      if (matcher == null || !matcher.matches()) {
+        return null;
+      }
+
+      final String prefix = sql.substring(0, matcher.start(1));
+      final String row = matcher.group(1);
+      final int paramCount = countParams(row);
+      // The quotes of the row must be balanced (checked first) for it to be scanned for its parentheses
+      if (paramCount < 0 || countParams(prefix) != 0 || !isSingleRow(row)) {
+        return null;
+      }
+
+      return new MultiRowInsert(prefix, row, paramCount);
+    }
+
+    /**
+     * Returns the SQL of the insert of the given number of rows.
+     *
+     * @param rows
+     * @return
+     */
+    public String getSql(final int rows) {
+      final StringBuilder sql = new StringBuilder(mPrefix.length() + rows * (mRow.length() + 2));
+
+      sql.append(mPrefix).append(mRow);
+      for (int i = 1; i < rows; i++) {
+        sql.append(", ").append(mRow);
+      }
+
+      return sql.toString();
+    }
+
+    /**
+     * Returns the number of placeholders of the SQL (outside of its quotes), or -1 if its quotes are unbalanced.
+     */
+    private static int countParams(final String sql) {
+      int count = 0;
+
+      for (int i = 0; i < sql.length(); i++) {
+        final char c = sql.charAt(i);
+        if (c == '\'' || c == '"') {
+          final int end = sql.indexOf(c, i + 1);
+          if (end < 0) {
+            return -1;
+          }
+          i = end;
+        } else if (c == '?') {
+          count++;
+        }
+      }
+
+      return count;
+    }
+
+    /**
+     * Returns true if the parenthesized row is a single row: its opening parenthesis is only closed at its end.
+     */
+    private static boolean isSingleRow(final String row) {
+      int depth = 0;
+
+      for (int i = 0; i < row.length(); i++) {
+        final char c = row.charAt(i);
+        if (c == '\'' || c == '"') {
+          i = row.indexOf(c, i + 1);
+        } else if (c == '(') {
+          depth++;
+        } else if (c == ')' && --depth == 0 && i < row.length() - 1) {
+          return false;
+        }
+      }
+
+      return depth == 0;
+    }
+
+  }
+
+}
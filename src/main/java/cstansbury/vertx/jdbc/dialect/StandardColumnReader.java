@@ -0,0 +1,125 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cstansbury.vertx.jdbc.dialect;
+
+import java.sql.CallableStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * The column readers for the non-temporal JDBC types. Wherever possible the primitive getters (plus wasNull) are used 
+ * rather than getObject, so the driver does not have to infer (and box) a Java type for every cell.
+ * 
+ * @author cstansbury
+ */
+public enum StandardColumnReader implements ColumnReader {
+
+  INT {
+    @Override
+    public Object read(final ResultSet resultSet, final int columnIndex) throws SQLException {
+      final int value = resultSet.getInt(columnIndex);
+      return resultSet.wasNull() ? null : value;
+    }
+
+    @Override
+    public Object read(final CallableStatement statement, final int parameterIndex) throws SQLException {
+      final int value = statement.getInt(parameterIndex);
+      return statement.wasNull() ? null : value;
+    }
+  },
+
+  LONG {
+    @Override
+    public Object read(final ResultSet resultSet, final int columnIndex) throws SQLException {
+      final long value = resultSet.getLong(columnIndex);
+      return resultSet.wasNull() ? null : value;
+    }
+
+    @Override
+    public Object read(final CallableStatement statement, final int parameterIndex) throws SQLException {
+      final long value = statement.getLong(parameterIndex);
+      return statement.wasNull() ? null : value;
+    }
+  },
+
+  FLOAT {
+    @Override
+    public Object read(final ResultSet resultSet, final int columnIndex) throws SQLException {
+      final float value = resultSet.getFloat(columnIndex);
+      return resultSet.wasNull() ? null : value;
+    }
+
+    @Override
+    public Object read(final CallableStatement statement, final int parameterIndex) throws SQLException {
+      final float value = statement.getFloat(parameterIndex);
+      return statement.wasNull() ? null : value;
+    }
+  },
+
+  DOUBLE {
+    @Override
+    public Object read(final ResultSet resultSet, final int columnIndex) throws SQLException {
+      final double value = resultSet.getDouble(columnIndex);
+      return resultSet.wasNull() ? null : value;
+    }
+
+    @Override
+    public Object read(final CallableStatement statement, final int parameterIndex) throws SQLException {
+      final double value = statement.getDouble(parameterIndex);
+      return statement.wasNull() ? null : value;
+    }
+  },
+
+  BOOLEAN {
+    @Override
+    public Object read(final ResultSet resultSet, final int columnIndex) throws SQLException {
+      final boolean value = resultSet.getBoolean(columnIndex);
+      return resultSet.wasNull() ? null : value;
+    }
+
+    @Override
+    public Object read(final CallableStatement statement, final int parameterIndex) throws SQLException {
+      final boolean value = statement.getBoolean(parameterIndex);
+      return statement.wasNull() ? null : value;
+    }
+  },
+
+  STRING {
+    @Override
+    public Object read(final ResultSet resultSet, final int columnIndex) throws SQLException {
+      return resultSet.getString(columnIndex);
+    }
+
+    @Override
+    public Object read(final CallableStatement statement, final int parameterIndex) throws SQLException {
+      return statement.getString(parameterIndex);
+    }
+  },
+
+  OBJECT {
+    @Override
+    public Object read(final ResultSet resultSet, final int columnIndex) throws SQLException {
+      return resultSet.getObject(columnIndex);
+    }
+
+    @Override
+    public Object read(final CallableStatement statement, final int parameterIndex) throws SQLException {
+      return statement.getObject(parameterIndex);
+    }
+  };
+
+}
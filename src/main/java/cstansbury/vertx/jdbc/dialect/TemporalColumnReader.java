@@ -0,0 +1,128 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cstansbury.vertx.jdbc.dialect;
+
+import java.sql.CallableStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+
+/**
+ * Reads DATE, TIME and TIMESTAMP columns and encodes them in one of the {@link TemporalFormat}s. The (string) 
+ * formatter is compiled once and is thread-safe, so no formatter is created per value.
+ * 
+ * @author cstansbury
+ */
+public class TemporalColumnReader implements ColumnReader {
+
+  // -------------------------------------------------------------------------
+  // Enums
+  // -------------------------------------------------------------------------
+
+  public enum Kind { DATE, TIME, TIMESTAMP };
+
+  // -------------------------------------------------------------------------
+  // Member Variables
+  // -------------------------------------------------------------------------
+
+  private final Kind mKind;
+  private final TemporalFormat mFormat;
+  private final DateTimeFormatter mFormatter;
+
+  // -------------------------------------------------------------------------
+  // Constructors
+  // -------------------------------------------------------------------------
+
+  /**
+   * 
+   * @param kind
+   * @param format
+   * @param formatter the formatter used for the {@link TemporalFormat#STRING} format (must have a zone)
+   */
+  public TemporalColumnReader(final Kind kind, final TemporalFormat format, final DateTimeFormatter formatter) {
+    mKind = kind;
+    mFormat = format;
+    mFormatter = formatter;
+  }
+
+  // -------------------------------------------------------------------------
+  // Overridden ColumnReader Protocol
+  // -------------------------------------------------------------------------
+
+  @Override
+  public Object read(final ResultSet resultSet, final int columnIndex) throws SQLException {
+    switch (mKind) {
+    case DATE:
+      return encode(resultSet.getDate(columnIndex));
+    case TIME:
+      return encode(resultSet.getTime(columnIndex));
+    default:
+      return encode(resultSet.getTimestamp(columnIndex));
+    }
+  }
+
+  @Override
+  public Object read(final CallableStatement statement, final int parameterIndex) throws SQLException {
+    switch (mKind) {
+    case DATE:
+      return encode(statement.getDate(parameterIndex));
+    case TIME:
+      return encode(statement.getTime(parameterIndex));
+    default:
+      return encode(statement.getTimestamp(parameterIndex));
+    }
+  }
+
+  // -------------------------------------------------------------------------
+  // Public Protocol
+  // -------------------------------------------------------------------------
+
+  public Object encode(final Date value) {
+    if (value == null) {
+      return null;
+    }
+
+    switch (mFormat) {
+    case EPOCH_MILLIS:
+      return value.getTime();
+    case ISO_8601:
+      return encodeIso8601(value);
+    default:
+      return mFormatter.format(Instant.ofEpochMilli(value.getTime()));
+    }
+  }
+
+  // -------------------------------------------------------------------------
+  // Private Protocol
+  // -------------------------------------------------------------------------
+
+  private String encodeIso8601(final Date value) {
+    switch (mKind) {
+    case DATE:
+      return DateTimeFormatter.ISO_LOCAL_DATE.format(((java.sql.Date) value).toLocalDate());
+    case TIME:
+      return DateTimeFormatter.ISO_LOCAL_TIME.format(((Time) value).toLocalTime());
+    default:
+      return DateTimeFormatter.ISO_INSTANT.format(((Timestamp) value).toInstant());
+    }
+  }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cstansbury.vertx.jdbc.dialect;
+
+/**
+ * The wire formats in which DATE, TIME and TIMESTAMP values can be sent.
+ * 
+ * @author cstansbury
+ */
+public enum TemporalFormat {
+
+  /** Formatted with the dialect's date, time and timestamp formats. */
+  STRING("string"),
+
+  /** Milliseconds since the epoch. */
+  EPOCH_MILLIS("millis"),
+
+  /** ISO-8601: instants for timestamps, local dates and times for dates and times. */
+  ISO_8601("iso8601");
+
+  // -------------------------------------------------------------------------
+  // Member Variables
+  // -------------------------------------------------------------------------
+
+  private final String mName;
+
+  // -------------------------------------------------------------------------
+  // Constructors
+  // -------------------------------------------------------------------------
+
+  private TemporalFormat(final String name) {
+    mName = name;
+  }
+
+  // -------------------------------------------------------------------------
+  // Static Methods
+  // -------------------------------------------------------------------------
+
+  /**
+   * Returns the format with the given (config / request) name, or the default format if no name is given.
+   * 
+   * @param name
+   * @param defaultFormat
+   * @return
+   */
+  public static TemporalFormat forName(final String name, final TemporalFormat defaultFormat) {
+    if (name == null) {
+      return defaultFormat;
+    }
+    for (final TemporalFormat format : values()) {
+      if (format.mName.equals(name)) {
+        return format;
+      }
+    }
+    throw new IllegalArgumentException("Invalid temporal format: " + name);
+  }
+
+  // -------------------------------------------------------------------------
+  // Member Accessors
+  // -------------------------------------------------------------------------
+
+  public String getName() {
+    return mName;
+  }
+
+}
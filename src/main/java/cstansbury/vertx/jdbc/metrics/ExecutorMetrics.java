@@ -0,0 +1,173 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cstansbury.vertx.jdbc.metrics;
+
+import io.vertx.core.json.JsonObject;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The metrics of an executor: the requests, errors, rows and reply bytes of each action, and the latency histograms of
+ * each phase of a request (queue wait, connection checkout, execute and materialize).
+ * <p>
+ * Recording is lock-free and allocation-free: the metrics of every action are created up front (an unknown action is
+ * recorded as 'other'), and are only ever updated through LongAdders and atomic arrays.
+ *
+ * @author cstansbury
+ */
+public class ExecutorMetrics {
+
+  // -------------------------------------------------------------------------
+  // Constants
+  // -------------------------------------------------------------------------
+
+  public static final String[] ACTIONS = { "query", "update", "call", "batch", "stream", "startTransaction", "commit", "rollback" };
+
+  private static final String OTHER_ACTION = "other";
+
+  // -------------------------------------------------------------------------
+  // Member Variables
+  // -------------------------------------------------------------------------
+
+  private final long mStartTime = System.nanoTime();
+
+  private final Map<String, ActionMetrics> mActions;
+
+  private final ActionMetrics mOtherAction = new ActionMetrics();
+
+  private final LatencyHistogram mQueueWait = new LatencyHistogram();
+
+  private final LatencyHistogram mCheckout = new LatencyHistogram();
+
+  private final LatencyHistogram mExecute = new LatencyHistogram();
+
+  private final LatencyHistogram mMaterialize = new LatencyHistogram();
+
+  // -------------------------------------------------------------------------
+  // Constructors
+  // -------------------------------------------------------------------------
+
+  public ExecutorMetrics() {
+    final Map<String, ActionMetrics> actions = new LinkedHashMap<>();
+    for (final String action : ACTIONS) {
+      actions.put(action, new ActionMetrics());
+    }
+    mActions = Collections.unmodifiableMap(actions);
+  }
+
+  // -------------------------------------------------------------------------
+  // Public Protocol
+  // -------------------------------------------------------------------------
+
+  public void recordRequest(final String action) {
+    getActionMetrics(action).mRequests.increment();
+  }
+
+  public void recordError(final String action) {
+    getActionMetrics(action).mErrors.increment();
+  }
+
+  public void recordRows(final String action, final long rows) {
+    if (rows > 0) {
+      getActionMetrics(action).mRows.add(rows);
+    }
+  }
+
+  public void recordReplyBytes(final String action, final long bytes) {
+    getActionMetrics(action).mReplyBytes.add(bytes);
+  }
+
+  public void recordQueueWait(final long nanos) {
+    mQueueWait.record(nanos);
+  }
+
+  public void recordCheckout(final long nanos) {
+    mCheckout.record(nanos);
+  }
+
+  public void recordExecute(final long nanos) {
+    mExecute.record(nanos);
+  }
+
+  public void recordMaterialize(final long nanos) {
+    mMaterialize.record(nanos);
+  }
+
+  /**
+   * Returns a snapshot of the metrics. The rates are averaged over the lifetime of the executor; sample the counts to
+   * get the rates over an interval.
+   *
+   * @return
+   */
+  public JsonObject toJson() {
+    final double uptimeSeconds = (System.nanoTime() - mStartTime) / 1000000000.0;
+    final JsonObject actions = new JsonObject();
+
+    for (final Map.Entry<String, ActionMetrics> action : mActions.entrySet()) {
+      actions.put(action.getKey(), action.getValue().toJson(uptimeSeconds));
+    }
+    actions.put(OTHER_ACTION, mOtherAction.toJson(uptimeSeconds));
+
+    return new JsonObject()
+      .put("uptime", (long) (uptimeSeconds * 1000))
+      .put("actions", actions)
+      .put("latency", new JsonObject()
+        .put("queueWait", mQueueWait.toJson())
+        .put("checkout", mCheckout.toJson())
+        .put("execute", mExecute.toJson())
+        .put("materialize", mMaterialize.toJson()));
+  }
+
+  // -------------------------------------------------------------------------
+  // Private Protocol
+  // -------------------------------------------------------------------------
+
+  private ActionMetrics getActionMetrics(final String action) {
+    final ActionMetrics actionMetrics = action == null ? null : mActions.get(action);
+    return actionMetrics != null ? actionMetrics : mOtherAction;
+  }
+
+  // -------------------------------------------------------------------------
+  // Inner Classes
+  // -------------------------------------------------------------------------
+
+  private static class ActionMetrics {
+
+    private final LongAdder mRequests = new LongAdder();
+    private final LongAdder mErrors = new LongAdder();
+    private final LongAdder mRows = new LongAdder();
+    private final LongAdder mReplyBytes = new LongAdder();
+
+    private JsonObject toJson(final double uptimeSeconds) {
+      final long requests = mRequests.sum();
+      final long errors = mErrors.sum();
+
+      return new JsonObject()
+        .put("requests", requests)
+        .put("errors", errors)
+        .put("requestRate", uptimeSeconds > 0 ? requests / uptimeSeconds : 0.0)
+        .put("errorRate", uptimeSeconds > 0 ? errors / uptimeSeconds : 0.0)
+        .put("rows", mRows.sum())
+        .put("replyBytes", mReplyBytes.sum());
+    }
+
+  }
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cstansbury.vertx.jdbc.metrics;
+
+import io.vertx.core.json.JsonObject;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free (and allocation-free) histogram of durations, in power-of-two nanosecond buckets. Bucket i counts the
+ * durations of (at least) 2^(i-1) and (less than) 2^i nanoseconds, so a percentile is accurate to within a factor of
+ * two, which is plenty to tell a 1ms statement from a 100ms one.
+ *
+ * @author cstansbury
+ */
+public class LatencyHistogram {
+
+  // -------------------------------------------------------------------------
+  // Constants
+  // -------------------------------------------------------------------------
+
+  private static final int BUCKETS = 64;
+
+  private static final double NANOS_PER_MILLI = 1000000.0;
+
+  // -------------------------------------------------------------------------
+  // Member Variables
+  // -------------------------------------------------------------------------
+
+  private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKETS);
+
+  private final LongAdder mCount = new LongAdder();
+
+  private final LongAdder mTotal = new LongAdder();
+
+  private final AtomicLong mMax = new AtomicLong();
+
+  // -------------------------------------------------------------------------
+  // Public Protocol
+  // -------------------------------------------------------------------------
+
+  /**
+   * Records a duration.
+   *
+   * @param nanos
+   */
+  public void record(final long nanos) {
+    final long duration = Math.max(0, nanos);
+
+    mBuckets.incrementAndGet(Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(duration)));
+    mCount.increment();
+    mTotal.add(duration);
+    mMax.accumulateAndGet(duration, Math::max);
+  }
+
+  public long getCount() {
+    return mCount.sum();
+  }
+
+  /**
+   * Returns the (upper bound of the bucket of the) percentile, in nanoseconds.
+   *
+   * @param percentile between 0 and 100
+   * @return
+   */
+  public long getPercentile(final double percentile) {
+    final long[] counts = new long[BUCKETS];
+    long count = 0;
+
+    for (int i = 0; i < BUCKETS; i++) {
+      counts[i] = mBuckets.get(i);
+      count += counts[i];
+    }
+
+    final long rank = (long) Math.ceil(count * percentile / 100.0);
+    long seen = 0;
+
+    for (int i = 0; i < BUCKETS && count > 0; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return Math.min(i == 0 ? 0 : (1L << i) - 1, mMax.get());
+      }
+    }
+
+    return 0;
+  }
+
+  /**
+   * Returns a snapshot of the histogram, with its durations in milliseconds.
+   *
+   * @return
+   */
+  public JsonObject toJson() {
+    final long count = mCount.sum();
+
+    return new JsonObject()
+      .put("count", count)
+      .put("mean", count == 0 ? 0.0 : mTotal.sum() / NANOS_PER_MILLI / count)
+      .put("p50", getPercentile(50) / NANOS_PER_MILLI)
+      .put("p90", getPercentile(90) / NANOS_PER_MILLI)
+      .put("p99", getPercentile(99) / NANOS_PER_MILLI)
+      .put("max", mMax.get() / NANOS_PER_MILLI);
+  }
+
+}
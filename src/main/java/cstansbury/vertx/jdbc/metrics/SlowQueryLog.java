@@ -0,0 +1,149 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cstansbury.vertx.jdbc.metrics;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bounded ring buffer of the records of slow statements: those whose execute or materialize time exceeds the
+ * threshold. Only a (random) sample of the slow statements is logged when the sample rate is below 1, so that a flood
+ * of slow statements costs little more than the statements themselves.
+ *
+ * @author cstansbury
+ */
+public class SlowQueryLog {
+
+  // -------------------------------------------------------------------------
+  // Constants
+  // -------------------------------------------------------------------------
+
+  public static final long DEFAULT_THRESHOLD = 1000;
+
+  public static final int DEFAULT_CAPACITY = 100;
+
+  private static final String REDACTED = "?";
+
+  // -------------------------------------------------------------------------
+  // Member Variables
+  // -------------------------------------------------------------------------
+
+  private final long mThresholdNanos;
+
+  private final double mSampleRate;
+
+  private final boolean mRedactParams;
+
+  private final JsonObject[] mRecords;
+
+  private long mCount;
+
+  // -------------------------------------------------------------------------
+  // Constructors
+  // -------------------------------------------------------------------------
+
+  /**
+   *
+   * @param threshold the threshold (in milliseconds) of the execute or materialize time of a slow statement
+   * @param sampleRate the fraction (between 0 and 1) of the slow statements that are logged
+   * @param capacity the number of (most recent) records kept
+   * @param redactParams true to log the bind params with their values replaced by '?'
+   */
+  public SlowQueryLog(final long threshold, final double sampleRate, final int capacity, final boolean redactParams) {
+    mThresholdNanos = TimeUnit.MILLISECONDS.toNanos(threshold);
+    mSampleRate = sampleRate;
+    mRedactParams = redactParams;
+    mRecords = new JsonObject[Math.max(1, capacity)];
+  }
+
+  // -------------------------------------------------------------------------
+  // Public Protocol
+  // -------------------------------------------------------------------------
+
+  /**
+   * Returns true if a statement with the given times is slow, and is (randomly) sampled to be logged.
+   *
+   * @param executeNanos
+   * @param materializeNanos
+   * @return
+   */
+  public boolean isLogged(final long executeNanos, final long materializeNanos) {
+    return (executeNanos > mThresholdNanos || materializeNanos > mThresholdNanos)
+      && (mSampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < mSampleRate);
+  }
+
+  /**
+   * Returns the bind params as they are logged: as they are, or with their values redacted.
+   *
+   * @param params
+   * @return
+   */
+  public JsonArray getLoggedParams(final JsonArray params) {
+    if (params == null || !mRedactParams) {
+      return params;
+    }
+
+    final JsonArray redactedParams = new JsonArray();
+    for (final Object param : params) {
+      if (param instanceof JsonArray) {
+        redactedParams.add(getLoggedParams((JsonArray) param));
+      } else {
+        redactedParams.add(REDACTED);
+      }
+    }
+
+    return redactedParams;
+  }
+
+  /**
+   * Adds the record, replacing the oldest record if the log is full.
+   *
+   * @param record
+   */
+  public synchronized void add(final JsonObject record) {
+    mRecords[(int) (mCount++ % mRecords.length)] = record;
+  }
+
+  /**
+   * Returns (copies of) the (at most) limit most recent records, newest first.
+   *
+   * @param limit
+   * @return
+   */
+  public synchronized JsonArray getRecords(final int limit) {
+    final JsonArray records = new JsonArray();
+
+    for (long i = mCount - 1; i >= 0 && i >= mCount - mRecords.length && records.size() < limit; i--) {
+      records.add(mRecords[(int) (i % mRecords.length)].copy());
+    }
+
+    return records;
+  }
+
+  /**
+   * Removes all the records.
+   */
+  public synchronized void clear() {
+    Arrays.fill(mRecords, null);
+    mCount = 0;
+  }
+
+}
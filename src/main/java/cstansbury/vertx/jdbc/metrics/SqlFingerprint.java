@@ -0,0 +1,155 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cstansbury.vertx.jdbc.metrics;
+
+/**
+ * Normalizes SQL into a fingerprint that is the same for every execution of the same statement: string and numeric
+ * literals are replaced by '?', comments are removed, whitespace is collapsed to single spaces, keywords and (unquoted)
+ * identifiers are lower-cased, and a list of (only) placeholders, such as an IN-list, is collapsed to a single '?...'
+ * whatever its size.
+ * <p>
+ * For example, <code>select * from user where id in (1, 2, 3) and name = 'bob'</code> and
+ * <code>SELECT * FROM user WHERE id IN (?, ?) AND name = ?</code> both become
+ * <code>select * from user where id in (?...) and name = ?</code>.
+ *
+ * @author cstansbury
+ */
+public final class SqlFingerprint {
+
+  // -------------------------------------------------------------------------
+  // Constructors
+  // -------------------------------------------------------------------------
+
+  private SqlFingerprint() {
+  }
+
+  // -------------------------------------------------------------------------
+  // Static Methods
+  // -------------------------------------------------------------------------
+
+  /**
+   * Returns the fingerprint of the SQL.
+   *
+   * @param sql
+   * @return
+   */
+  public static String fingerprint(final String sql) {
+    final StringBuilder fingerprint = new StringBuilder(sql.length());
+    final int length = sql.length();
+    boolean space = false;
+    int i = 0;
+
+    while (i < length) {
+      final char c = sql.charAt(i);
+
+      if (Character.isWhitespace(c)) {
+        space = true;
+        i++;
+        continue;
+      } else if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+        while (i < length && sql.charAt(i) != '\n') {
+          i++;
+        }
+        space = true;
+        continue;
+      } else if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+        final int end = sql.indexOf("*/", i + 2);
+        i = end < 0 ? length : end + 2;
+        space = true;
+        continue;
+      }
+
+      if (space && fingerprint.length() > 0) {
+        fingerprint.append(' ');
+      }
+      space = false;
+
+      if (c == '\'') {
+        // A string literal, with '' as an escaped quote
+        i++;
+        while (i < length) {
+          if (sql.charAt(i) == '\'') {
+            if (i + 1 < length && sql.charAt(i + 1) == '\'') {
+              i += 2;
+              continue;
+            }
+            break;
+          }
+          i++;
+        }
+        i++;
+        fingerprint.append('?');
+      } else if (c == '"' || c == '`') {
+        final int end = sql.indexOf(c, i + 1);
+        final int next = end < 0 ? length : end + 1;
+        fingerprint.append(sql, i, next);
+        i = next;
+      } else if (Character.isDigit(c) && !isIdentifierEnd(fingerprint)) {
+        while (i < length && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+          i++;
+        }
+        fingerprint.append('?');
+      } else if (c == '?') {
+        i++;
+        fingerprint.append('?');
+      } else if (c == ')') {
+        i++;
+        collapseList(fingerprint);
+        fingerprint.append(')');
+      } else {
+        fingerprint.append(Character.toLowerCase(c));
+        i++;
+      }
+    }
+
+    return fingerprint.toString();
+  }
+
+  // -------------------------------------------------------------------------
+  // Private Protocol
+  // -------------------------------------------------------------------------
+
+  private static boolean isIdentifierEnd(final StringBuilder fingerprint) {
+    if (fingerprint.length() == 0) {
+      return false;
+    }
+
+    final char last = fingerprint.charAt(fingerprint.length() - 1);
+    return Character.isLetterOrDigit(last) || last == '_' || last == '$';
+  }
+
+  /**
+   * Collapses a list of (only) placeholders, between the last '(' and the end of the fingerprint, to '(?...'.
+   */
+  private static void collapseList(final StringBuilder fingerprint) {
+    final int open = fingerprint.lastIndexOf("(");
+    if (open < 0 || open == fingerprint.length() - 1) {
+      return;
+    }
+
+    for (int i = open + 1; i < fingerprint.length(); i++) {
+      final char c = fingerprint.charAt(i);
+      if (c != '?' && c != ',' && c != ' ' && c != '.') {
+        return;
+      }
+    }
+
+    fingerprint.setLength(open + 1);
+    fingerprint.append("?...");
+  }
+
+}
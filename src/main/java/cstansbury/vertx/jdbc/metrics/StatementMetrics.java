@@ -0,0 +1,218 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cstansbury.vertx.jdbc.metrics;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The statistics of each statement, keyed by its {@link SqlFingerprint}: its calls, errors and rows, and the total,
+ * min, max and (histogram) percentiles of its times.
+ * <p>
+ * The table is bounded: when it is full, the tenth of its statements with the fewest calls are evicted (in one pass)
+ * to make room for new ones, so that a workload of more distinct statements than the table holds pays for a pass only
+ * once per so many new statements, rather than for every one.
+ * The fingerprints of (at most) as many distinct SQL strings are cached, so the SQL of a statement executed with bind
+ * params is only fingerprinted once.
+ *
+ * @author cstansbury
+ */
+public class StatementMetrics {
+
+  // -------------------------------------------------------------------------
+  // Constants
+  // -------------------------------------------------------------------------
+
+  public static final int DEFAULT_MAX_STATEMENTS = 1000;
+
+  private static final double NANOS_PER_MILLI = 1000000.0;
+
+  /** The fraction of the statements evicted when the table is full. */
+  private static final double EVICTION_FRACTION = 0.1;
+
+  // -------------------------------------------------------------------------
+  // Member Variables
+  // -------------------------------------------------------------------------
+
+  private final int mMaxStatements;
+
+  private final ConcurrentMap<String, Entry> mEntries = new ConcurrentHashMap<>();
+
+  private final ConcurrentMap<String, String> mFingerprints = new ConcurrentHashMap<>();
+
+  // -------------------------------------------------------------------------
+  // Constructors
+  // -------------------------------------------------------------------------
+
+  /**
+   *
+   * @param maxStatements the maximum number of statements tracked
+   */
+  public StatementMetrics(final int maxStatements) {
+    mMaxStatements = maxStatements;
+  }
+
+  // -------------------------------------------------------------------------
+  // Public Protocol
+  // -------------------------------------------------------------------------
+
+  /**
+   * Records an execution of the SQL.
+   *
+   * @param sql
+   * @param nanos the time of the execution
+   * @param rows the rows returned by the execution
+   * @param failed true if the execution failed
+   */
+  public void record(final String sql, final long nanos, final long rows, final boolean failed) {
+    final Entry entry = getEntry(getFingerprint(sql));
+
+    entry.mCalls.increment();
+    entry.mTotal.add(nanos);
+    entry.mMin.accumulateAndGet(nanos, Math::min);
+    entry.mMax.accumulateAndGet(nanos, Math::max);
+    entry.mHistogram.record(nanos);
+    if (rows > 0) {
+      entry.mRows.add(rows);
+    }
+    if (failed) {
+      entry.mErrors.increment();
+    }
+  }
+
+  /**
+   * Returns the (at most) limit statements with the highest total time, worst first.
+   *
+   * @param limit
+   * @return
+   */
+  public JsonArray getTopStatements(final int limit) {
+    final List<Map.Entry<String, Entry>> entries = new ArrayList<>(mEntries.entrySet());
+    final JsonArray topStatements = new JsonArray();
+
+    entries.sort(Comparator.comparingLong((final Map.Entry<String, Entry> entry) -> entry.getValue().mTotal.sum()).reversed());
+
+    for (int i = 0; i < entries.size() && i < limit; i++) {
+      topStatements.add(entries.get(i).getValue().toJson(entries.get(i).getKey()));
+    }
+
+    return topStatements;
+  }
+
+  /**
+   * Removes the statistics of all the statements.
+   */
+  public void clear() {
+    mEntries.clear();
+    mFingerprints.clear();
+  }
+
+  // -------------------------------------------------------------------------
+  // Private Protocol
+  // -------------------------------------------------------------------------
+
+  private String getFingerprint(final String sql) {
+    String fingerprint = mFingerprints.get(sql);
+
+    if (fingerprint == null) {
+      fingerprint = SqlFingerprint.fingerprint(sql);
+      if (mFingerprints.size() >= mMaxStatements) {
+        // Most likely SQL with literals, which would otherwise fill the cache with strings executed only once
+        mFingerprints.clear();
+      }
+      mFingerprints.put(sql, fingerprint);
+    }
+
+    return fingerprint;
+  }
+
+  private Entry getEntry(final String fingerprint) {
+    final Entry entry = mEntries.get(fingerprint);
+
+    if (entry != null) {
+      return entry;
+    }
+
+    synchronized (this) {
+      if (!mEntries.containsKey(fingerprint) && mEntries.size() >= mMaxStatements) {
+        evictLeastCalled();
+      }
+      return mEntries.computeIfAbsent(fingerprint, key -> new Entry());
+    }
+  }
+
+  /**
+   * Evicts the tenth (at least one) of the statements with the fewest calls.
+   */
+  private void evictLeastCalled() {
+    // The calls are summed once, before sorting, as they keep changing while the statements are sorted
+    final List<Map.Entry<String, Long>> calls = new ArrayList<>(mEntries.size());
+    for (final Map.Entry<String, Entry> entry : mEntries.entrySet()) {
+      calls.add(new SimpleImmutableEntry<>(entry.getKey(), entry.getValue().mCalls.sum()));
+    }
+
+    calls.sort(Map.Entry.comparingByValue());
+
+    final int evictions = Math.max(1, (int) (calls.size() * EVICTION_FRACTION));
+    for (int i = 0; i < evictions && i < calls.size(); i++) {
+      mEntries.remove(calls.get(i).getKey());
+    }
+  }
+
+  // -------------------------------------------------------------------------
+  // Inner Classes
+  // -------------------------------------------------------------------------
+
+  private static class Entry {
+
+    private final LongAdder mCalls = new LongAdder();
+    private final LongAdder mErrors = new LongAdder();
+    private final LongAdder mRows = new LongAdder();
+    private final LongAdder mTotal = new LongAdder();
+    private final AtomicLong mMin = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong mMax = new AtomicLong();
+    private final LatencyHistogram mHistogram = new LatencyHistogram();
+
+    private JsonObject toJson(final String fingerprint) {
+      final long calls = mCalls.sum();
+      final long total = mTotal.sum();
+
+      return new JsonObject()
+        .put("sql", fingerprint)
+        .put("calls", calls)
+        .put("errors", mErrors.sum())
+        .put("rows", mRows.sum())
+        .put("totalTime", total / NANOS_PER_MILLI)
+        .put("meanTime", calls == 0 ? 0.0 : total / NANOS_PER_MILLI / calls)
+        .put("minTime", calls == 0 ? 0.0 : mMin.get() / NANOS_PER_MILLI)
+        .put("maxTime", mMax.get() / NANOS_PER_MILLI)
+        .put("p99Time", mHistogram.getPercentile(99) / NANOS_PER_MILLI);
+    }
+
+  }
+
+}
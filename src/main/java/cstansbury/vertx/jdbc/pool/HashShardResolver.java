@@ -0,0 +1,147 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cstansbury.vertx.jdbc.pool;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.List;
+
+/**
+ * Resolves a shard key by hashing it into one of a fixed number of 'buckets', each of which belongs to the shard
+ * whose (inclusive) range of buckets contains it. Without explicit 'ranges', the buckets are split evenly across the
+ * shards, in the order they are configured. As the hash of a key never changes, a shard can be split by moving part
+ * of its range (and the data of its keys) to a new shard.
+ * <pre>
+ *   resolver: {
+ *     type: "hash",
+ *     buckets: 1024,
+ *     ranges: { "shard1": [0, 511], "shard2": [512, 1023] }
+ *   }
+ * </pre>
+ *
+ * @author cstansbury
+ */
+public class HashShardResolver implements ShardResolver {
+
+  // -------------------------------------------------------------------------
+  // Constants
+  // -------------------------------------------------------------------------
+
+  public static final int DEFAULT_BUCKETS = 1024;
+
+  // -------------------------------------------------------------------------
+  // Member Variables
+  // -------------------------------------------------------------------------
+
+  private final String[] mBucketShards;
+
+  // -------------------------------------------------------------------------
+  // Constructors
+  // -------------------------------------------------------------------------
+
+  /**
+   *
+   * @param config
+   * @param shards
+   * @throws IllegalArgumentException if the buckets or ranges are invalid, or a range is of an unknown shard
+   */
+  public HashShardResolver(final JsonObject config, final List<String> shards) {
+    final JsonObject ranges = config.getJsonObject("ranges");
+    final int buckets = config.getInteger("buckets", DEFAULT_BUCKETS);
+
+    if (buckets <= 0) {
+      throw new IllegalArgumentException("Invalid hash shard buckets: " + buckets);
+    }
+    mBucketShards = new String[buckets];
+
+    if (ranges == null) {
+      for (int bucket = 0; bucket < mBucketShards.length; bucket++) {
+        mBucketShards[bucket] = shards.get((int) ((long) bucket * shards.size() / mBucketShards.length));
+      }
+    } else {
+      for (final String shard : ranges.fieldNames()) {
+        if (!shards.contains(shard)) {
+          throw new IllegalArgumentException("Unknown shard of hash range: " + shard);
+        }
+        final Object range = ranges.getValue(shard);
+        if (!isRange(range, buckets)) {
+          throw new IllegalArgumentException("Invalid hash range of shard " + shard + ": " + range + " (must be [from, to] within [0, " + (buckets - 1) + "])");
+        }
+        for (int bucket = ((JsonArray) range).getInteger(0); bucket <= ((JsonArray) range).getInteger(1); bucket++) {
+          if (mBucketShards[bucket] != null) {
+            throw new IllegalArgumentException("Hash range of shard " + shard + " overlaps that of shard " + mBucketShards[bucket] + " at bucket " + bucket);
+          }
+          mBucketShards[bucket] = shard;
+        }
+      }
+    }
+  }
+
+  // -------------------------------------------------------------------------
+  // Overridden ShardResolver Protocol
+  // -------------------------------------------------------------------------
+
+  @Override
+  public String resolve(final Object shardKey) {
+    final String shard = mBucketShards[getBucket(shardKey)];
+
+    if (shard == null) {
+      throw new IllegalArgumentException("No shard for key: " + shardKey);
+    }
+
+    return shard;
+  }
+
+  // -------------------------------------------------------------------------
+  // Protected Protocol
+  // -------------------------------------------------------------------------
+
+  /**
+   * Returns the bucket of the key: the (stable) hash code of its string form, spread by the MurmurHash3 finalizer so
+   * that sequential keys do not land in adjacent buckets.
+   *
+   * @param shardKey
+   * @return
+   */
+  protected int getBucket(final Object shardKey) {
+    int hash = String.valueOf(shardKey).hashCode();
+
+    hash ^= hash >>> 16;
+    hash *= 0x85ebca6b;
+    hash ^= hash >>> 13;
+    hash *= 0xc2b2ae35;
+    hash ^= hash >>> 16;
+
+    return Math.floorMod(hash, mBucketShards.length);
+  }
+
+  // -------------------------------------------------------------------------
+  // Private Protocol
+  // -------------------------------------------------------------------------
+
+  private static boolean isRange(final Object range, final int buckets) {
+    if (!(range instanceof JsonArray) || ((JsonArray) range).size() != 2
+      || !(((JsonArray) range).getValue(0) instanceof Integer) || !(((JsonArray) range).getValue(1) instanceof Integer)) {
+      return false;
+    }
+
+    final int from = ((JsonArray) range).getInteger(0);
+    final int to = ((JsonArray) range).getInteger(1);
+    return from >= 0 && from <= to && to < buckets;
+  }
+
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cstansbury.vertx.jdbc.pool;
+
+import io.vertx.core.json.JsonObject;
+
+import java.util.List;
+
+/**
+ * Resolves a shard key that is the name of the shard itself, so that the senders choose the shard.
+ *
+ * @author cstansbury
+ */
+public class KeyShardResolver implements ShardResolver {
+
+  // -------------------------------------------------------------------------
+  // Constructors
+  // -------------------------------------------------------------------------
+
+  /**
+   *
+   * @param config
+   * @param shards
+   */
+  public KeyShardResolver(final JsonObject config, final List<String> shards) {
+  }
+
+  // -------------------------------------------------------------------------
+  // Overridden ShardResolver Protocol
+  // -------------------------------------------------------------------------
+
+  @Override
+  public String resolve(final Object shardKey) {
+    return String.valueOf(shardKey);
+  }
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cstansbury.vertx.jdbc.pool;
+
+import io.vertx.core.json.JsonObject;
+
+import java.util.List;
+
+/**
+ * Resolves a shard key from a lookup 'table' of keys to shard names, such as of tenants to the shards they were
+ * placed on. A key that is not in the table resolves to the 'default' shard, if any.
+ * <pre>
+ *   resolver: {
+ *     type: "lookup",
+ *     table: { "acme": "shard1", "initech": "shard2" },
+ *     default: "shard1"
+ *   }
+ * </pre>
+ *
+ * @author cstansbury
+ */
+public class LookupShardResolver implements ShardResolver {
+
+  // -------------------------------------------------------------------------
+  // Member Variables
+  // -------------------------------------------------------------------------
+
+  private final JsonObject mTable;
+
+  private final String mDefaultShard;
+
+  // -------------------------------------------------------------------------
+  // Constructors
+  // -------------------------------------------------------------------------
+
+  /**
+   *
+   * @param config
+   * @param shards
+   */
+  public LookupShardResolver(final JsonObject config, final List<String> shards) {
+    mTable = config.getJsonObject("table", new JsonObject());
+    mDefaultShard = config.getString("default");
+  }
+
+  // -------------------------------------------------------------------------
+  // Overridden ShardResolver Protocol
+  // -------------------------------------------------------------------------
+
+  @Override
+  public String resolve(final Object shardKey) {
+    final String shard = mTable.getString(String.valueOf(shardKey), mDefaultShard);
+
+    if (shard == null) {
+      throw new IllegalArgumentException("No shard for key: " + shardKey);
+    }
+
+    return shard;
+  }
+
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cstansbury.vertx.jdbc.pool;
+
+import io.vertx.core.json.JsonObject;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * The read replicas of the primary pool. A query is routed to the healthy replica with the fewest queries in flight
+ * (or to the primary if there is none), unless its sender has written within the 'read your writes' window, in which
+ * case it is routed to the primary so that it sees its own writes.
+ * <p>
+ * A replica that fails to return a connection is marked unhealthy, and skipped until its 'retryInterval' has passed,
+ * after which it is tried again by the next query.
+ *
+ * @author cstansbury
+ */
+public class ReplicaSet {
+
+  // -------------------------------------------------------------------------
+  // Constants
+  // -------------------------------------------------------------------------
+
+  public static final long DEFAULT_RETRY_INTERVAL = 5000;
+
+  /** The number of senders with recent writes above which the expired ones are purged. */
+  private static final int MAX_SENDERS = 1000;
+
+  // -------------------------------------------------------------------------
+  // Member Variables
+  // -------------------------------------------------------------------------
+
+  private final List<Replica> mReplicas;
+
+  private final long mRetryNanos;
+
+  private final long mReadYourWritesNanos;
+
+  private final ConcurrentMap<String, Long> mLastWrites = new ConcurrentHashMap<>();
+
+  private final AtomicInteger mNext = new AtomicInteger();
+
+  // -------------------------------------------------------------------------
+  // Constructors
+  // -------------------------------------------------------------------------
+
+  /**
+   *
+   * @param dataSources the pools of the replicas
+   * @param retryInterval the milliseconds an unhealthy replica is skipped for
+   * @param readYourWrites the milliseconds after a write that the reads of its sender go to the primary (0 disables)
+   */
+  public ReplicaSet(final List<HikariDataSource> dataSources, final long retryInterval, final long readYourWrites) {
+    final List<Replica> replicas = new ArrayList<>();
+    for (final HikariDataSource dataSource : dataSources) {
+      replicas.add(new Replica(dataSource));
+    }
+
+    mReplicas = Collections.unmodifiableList(replicas);
+    mRetryNanos = TimeUnit.MILLISECONDS.toNanos(retryInterval);
+    mReadYourWritesNanos = TimeUnit.MILLISECONDS.toNanos(readYourWrites);
+  }
+
+  // -------------------------------------------------------------------------
+  // Public Protocol
+  // -------------------------------------------------------------------------
+
+  /**
+   * Selects the replica of a read by the sender, counting the read as in flight on it until it is
+   * {@link Replica#release() released}.
+   *
+   * @param sender the sender of the read, or null
+   * @return the selected replica, or null if the read should go to the primary
+   */
+  public Replica select(final String sender) {
+    if (isReadYourWrites(sender)) {
+      return null;
+    }
+
+    final long now = System.nanoTime();
+    final int size = mReplicas.size();
+    // Start from a rotating index, so that idle replicas share the reads evenly
+    final int start = Math.floorMod(mNext.getAndIncrement(), size);
+    Replica selected = null;
+    int selectedInFlight = Integer.MAX_VALUE;
+
+    for (int i = 0; i < size; i++) {
+      final Replica replica = mReplicas.get((start + i) % size);
+      final int inFlight = replica.mInFlight.get();
+      if (replica.isHealthy(now) && inFlight < selectedInFlight) {
+        selected = replica;
+        selectedInFlight = inFlight;
+      }
+    }
+
+    if (selected != null) {
+      selected.mInFlight.incrementAndGet();
+    }
+
+    return selected;
+  }
+
+  /**
+   * Records a (completed) write by the sender, starting its 'read your writes' window.
+   *
+   * @param sender the sender of the write, or null
+   */
+  public void recordWrite(final String sender) {
+    if (sender == null || mReadYourWritesNanos <= 0) {
+      return;
+    }
+
+    final long now = System.nanoTime();
+    if (mLastWrites.size() >= MAX_SENDERS && !mLastWrites.containsKey(sender)) {
+      mLastWrites.values().removeIf(lastWrite -> now - lastWrite >= mReadYourWritesNanos);
+    }
+    mLastWrites.put(sender, now);
+  }
+
+  /**
+   * Returns true if the sender has written within the 'read your writes' window.
+   *
+   * @param sender
+   * @return
+   */
+  public boolean isReadYourWrites(final String sender) {
+    final Long lastWrite = sender != null ? mLastWrites.get(sender) : null;
+    return lastWrite != null && System.nanoTime() - lastWrite < mReadYourWritesNanos;
+  }
+
+  /**
+   * Closes the pools of the replicas.
+   */
+  public void close() {
+    for (final Replica replica : mReplicas) {
+      replica.mDataSource.close();
+    }
+  }
+
+  // -------------------------------------------------------------------------
+  // Member Accessors
+  // -------------------------------------------------------------------------
+
+  public List<Replica> getReplicas() {
+    return mReplicas;
+  }
+
+  /**
+   * Returns the total maximum size of the pools of the replicas.
+   *
+   * @return
+   */
+  public int getMaximumPoolSize() {
+    int maximumPoolSize = 0;
+    for (final Replica replica : mReplicas) {
+      maximumPoolSize += replica.mDataSource.getMaximumPoolSize();
+    }
+    return maximumPoolSize;
+  }
+
+  // -------------------------------------------------------------------------
+  // Inner Classes
+  // -------------------------------------------------------------------------
+
+  /**
+   * A replica's pool, and its health and reads in flight.
+   */
+  public class Replica {
+
+    private final HikariDataSource mDataSource;
+
+    private final AtomicInteger mInFlight = new AtomicInteger();
+
+    private final LongAdder mFailures = new LongAdder();
+
+    private volatile long mUnhealthyUntil;
+
+    private volatile boolean mUnhealthy;
+
+    private Replica(final HikariDataSource dataSource) {
+      mDataSource = dataSource;
+    }
+
+    /**
+     * Checks a connection out of the replica's pool, marking the replica unhealthy if it fails.
+     *
+     * @return
+     * @throws SQLException
+     */
+    public Connection getConnection() throws SQLException {
+      try {
+        final Connection connection = mDataSource.getConnection();
+        mUnhealthy = false;
+        return connection;
+      } catch (final SQLException e) {
+        mFailures.increment();
+        mUnhealthyUntil = System.nanoTime() + mRetryNanos;
+        mUnhealthy = true;
+        throw e;
+      }
+    }
+
+    /**
+     * Ends a read that was selected for the replica.
+     */
+    public void release() {
+      mInFlight.decrementAndGet();
+    }
+
+    public boolean isHealthy(final long now) {
+      return !mUnhealthy || now - mUnhealthyUntil >= 0;
+    }
+
+    public HikariDataSource getDataSource() {
+      return mDataSource;
+    }
+
+    public JsonObject toJson() {
+      return new JsonObject()
+        .put("poolName", mDataSource.getPoolName())
+        .put("healthy", !mUnhealthy)
+        .put("inFlight", mInFlight.get())
+        .put("failures", mFailures.sum());
+    }
+
+  }
+
+}
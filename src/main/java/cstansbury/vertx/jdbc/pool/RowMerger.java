@@ -0,0 +1,228 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cstansbury.vertx.jdbc.pool;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Merges the (array or columnar) query results of the shards of a scatter-gather query into one result. With an
+ * 'orderBy', each shard's rows must already be in that order (from the ORDER BY of the query), and are merged in
+ * order, as by the ORDER BY of a single database; otherwise the shards' rows are appended in shard order. The merge
+ * stops once 'limit' rows have been merged.
+ * <p>
+ * Databases differ in where they order nulls, so the nulls of a column are ordered as its "nulls first" or "nulls
+ * last" (if given), else as the default 'nulls' ("first" or "last", if given), else as the lowest values (first when
+ * ascending, last when descending). This must agree with the ORDER BY of each shard, or the rows are merged out of
+ * order.
+ *
+ * @author cstansbury
+ */
+public class RowMerger {
+
+  // -------------------------------------------------------------------------
+  // Member Variables
+  // -------------------------------------------------------------------------
+
+  private final List<String> mColumns = new ArrayList<>();
+
+  private final List<Boolean> mDescending = new ArrayList<>();
+
+  /** Whether the nulls of each column are ordered first, or last, or (if null) as the lowest values. */
+  private final List<Boolean> mNullsFirst = new ArrayList<>();
+
+  private final int mLimit;
+
+  // -------------------------------------------------------------------------
+  // Constructors
+  // -------------------------------------------------------------------------
+
+  /**
+   *
+   * @param orderBy the columns to order by, each optionally followed by "asc" or "desc", and by "nulls first" or
+   *    "nulls last"; or null
+   * @param nulls the default order of the nulls, "first" or "last"; or null to order them as the lowest values
+   * @param limit the maximum number of rows to merge (0 for no limit)
+   * @throws IllegalArgumentException if the orderBy or nulls is invalid
+   */
+  public RowMerger(final JsonArray orderBy, final String nulls, final int limit) {
+    final Boolean defaultNullsFirst = getNullsFirst(nulls);
+
+    if (orderBy != null) {
+      for (final Object column : orderBy) {
+        final List<String> parts = new ArrayList<>(Arrays.asList(String.valueOf(column).trim().toLowerCase().split("\\s+")));
+        Boolean nullsFirst = defaultNullsFirst;
+        if (parts.size() > 2 && "nulls".equals(parts.get(parts.size() - 2))) {
+          nullsFirst = getNullsFirst(parts.remove(parts.size() - 1));
+          parts.remove(parts.size() - 1);
+        }
+        if (parts.size() > 2 || (parts.size() == 2 && !"asc".equals(parts.get(1)) && !"desc".equals(parts.get(1)))) {
+          throw new IllegalArgumentException("Invalid orderBy: " + column);
+        }
+        mColumns.add(parts.get(0));
+        mDescending.add(parts.size() == 2 && "desc".equals(parts.get(1)));
+        mNullsFirst.add(nullsFirst);
+      }
+    }
+
+    mLimit = limit > 0 ? limit : Integer.MAX_VALUE;
+  }
+
+  // -------------------------------------------------------------------------
+  // Public Protocol
+  // -------------------------------------------------------------------------
+
+  /**
+   * Merges the results of the shards.
+   *
+   * @param results the result of each shard
+   * @return
+   * @throws IllegalArgumentException if the results are not (all) row arrays or columnar results of a single set of
+   *    bind params
+   */
+  public Object merge(final List<Object> results) {
+    final boolean columnar = !results.isEmpty() && results.get(0) instanceof JsonObject;
+    final List<JsonArray> shardRows = new ArrayList<>();
+
+    for (final Object result : results) {
+      final JsonArray rows = columnar && result instanceof JsonObject ? ((JsonObject) result).getJsonArray("rows") : result instanceof JsonArray ? (JsonArray) result : null;
+      if (rows == null || (!columnar && !rows.isEmpty() && !(rows.getValue(0) instanceof JsonObject))) {
+        throw new IllegalArgumentException("Scatter queries only support a single set of bind params");
+      }
+      shardRows.add(rows);
+    }
+
+    final JsonArray mergedRows = mColumns.isEmpty() ? append(shardRows) : mergeOrdered(shardRows, getComparator(columnar ? ((JsonObject) results.get(0)).getJsonArray("columns") : null));
+
+    if (columnar) {
+      return ((JsonObject) results.get(0)).copy().put("rows", mergedRows);
+    }
+
+    return mergedRows;
+  }
+
+  // -------------------------------------------------------------------------
+  // Private Protocol
+  // -------------------------------------------------------------------------
+
+  private JsonArray append(final List<JsonArray> shardRows) {
+    final JsonArray mergedRows = new JsonArray();
+
+    for (final JsonArray rows : shardRows) {
+      for (int i = 0; i < rows.size() && mergedRows.size() < mLimit; i++) {
+        mergedRows.add(rows.getValue(i));
+      }
+    }
+
+    return mergedRows;
+  }
+
+  /**
+   * Merges the (ordered) rows of the shards with a priority queue of the next row of each shard.
+   */
+  private JsonArray mergeOrdered(final List<JsonArray> shardRows, final Comparator<Object> comparator) {
+    final JsonArray mergedRows = new JsonArray();
+    final PriorityQueue<int[]> cursors = new PriorityQueue<>(Math.max(1, shardRows.size()), (a, b) -> {
+      final int result = comparator.compare(shardRows.get(a[0]).getValue(a[1]), shardRows.get(b[0]).getValue(b[1]));
+      return result != 0 ? result : Integer.compare(a[0], b[0]);
+    });
+
+    for (int shard = 0; shard < shardRows.size(); shard++) {
+      if (!shardRows.get(shard).isEmpty()) {
+        cursors.add(new int[] { shard, 0 });
+      }
+    }
+
+    while (!cursors.isEmpty() && mergedRows.size() < mLimit) {
+      final int[] cursor = cursors.poll();
+      final JsonArray rows = shardRows.get(cursor[0]);
+      mergedRows.add(rows.getValue(cursor[1]));
+      if (++cursor[1] < rows.size()) {
+        cursors.add(cursor);
+      }
+    }
+
+    return mergedRows;
+  }
+
+  /**
+   * Returns the comparator of the orderBy columns of the rows: the row objects of an array result, or the row arrays
+   * of a columnar result (whose columns are given).
+   */
+  private Comparator<Object> getComparator(final JsonArray columns) {
+    final int[] indexes = new int[mColumns.size()];
+
+    if (columns != null) {
+      for (int i = 0; i < indexes.length; i++) {
+        indexes[i] = columns.getList().indexOf(mColumns.get(i));
+        if (indexes[i] < 0) {
+          throw new IllegalArgumentException("Unknown orderBy column: " + mColumns.get(i));
+        }
+      }
+    }
+
+    return (a, b) -> {
+      for (int i = 0; i < indexes.length; i++) {
+        final Object aValue = columns != null ? ((JsonArray) a).getValue(indexes[i]) : ((JsonObject) a).getValue(mColumns.get(i));
+        final Object bValue = columns != null ? ((JsonArray) b).getValue(indexes[i]) : ((JsonObject) b).getValue(mColumns.get(i));
+        if (aValue == null && bValue == null) {
+          continue;
+        } else if ((aValue == null || bValue == null) && mNullsFirst.get(i) != null) {
+          return (aValue == null) == mNullsFirst.get(i) ? -1 : 1;
+        }
+        final int result = compareValues(aValue, bValue);
+        if (result != 0) {
+          return mDescending.get(i) ? -result : result;
+        }
+      }
+      return 0;
+    };
+  }
+
+  private static Boolean getNullsFirst(final String nulls) {
+    if (nulls == null) {
+      return null;
+    } else if ("first".equalsIgnoreCase(nulls) || "last".equalsIgnoreCase(nulls)) {
+      return "first".equalsIgnoreCase(nulls);
+    }
+    throw new IllegalArgumentException("Invalid nulls: " + nulls);
+  }
+
+  /**
+   * Compares two column values, with nulls as the lowest values.
+   */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  private static int compareValues(final Object a, final Object b) {
+    if (a == null || b == null) {
+      return a == null ? (b == null ? 0 : -1) : 1;
+    } else if (a instanceof Number && b instanceof Number) {
+      if ((a instanceof Integer || a instanceof Long) && (b instanceof Integer || b instanceof Long)) {
+        return Long.compare(((Number) a).longValue(), ((Number) b).longValue());
+      }
+      return Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue());
+    } else if (a instanceof Comparable && a.getClass() == b.getClass()) {
+      return ((Comparable) a).compareTo(b);
+    }
+    return a.toString().compareTo(b.toString());
+  }
+
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cstansbury.vertx.jdbc.pool;
+
+/**
+ * Resolves the 'shardKey' of a request to the name of the shard (the named pool) that holds its data.
+ * <p>
+ * A custom resolver is configured by its class name, and must have a public constructor that takes the (JsonObject)
+ * 'resolver' config and the (List&lt;String&gt;) names of the shards.
+ *
+ * @author cstansbury
+ */
+public interface ShardResolver {
+
+  /**
+   * Returns the name of the shard of the key.
+   *
+   * @param shardKey
+   * @return
+   * @throws IllegalArgumentException if the key cannot be resolved to a shard
+   */
+  String resolve(Object shardKey);
+
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cstansbury.vertx.jdbc.pool;
+
+import io.vertx.core.json.JsonObject;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * The named pools of the shards of the data, and the {@link ShardResolver} of the shard of a request's 'shardKey'.
+ *
+ * @author cstansbury
+ */
+public class ShardSet {
+
+  // -------------------------------------------------------------------------
+  // Member Variables
+  // -------------------------------------------------------------------------
+
+  private final Map<String, HikariDataSource> mDataSources;
+
+  private final ShardResolver mResolver;
+
+  // -------------------------------------------------------------------------
+  // Constructors
+  // -------------------------------------------------------------------------
+
+  /**
+   *
+   * @param dataSources the pools of the shards, by name
+   * @param resolver
+   */
+  public ShardSet(final Map<String, HikariDataSource> dataSources, final ShardResolver resolver) {
+    mDataSources = Collections.unmodifiableMap(new LinkedHashMap<>(dataSources));
+    mResolver = resolver;
+  }
+
+  // -------------------------------------------------------------------------
+  // Public Protocol
+  // -------------------------------------------------------------------------
+
+  /**
+   * Creates the resolver of the (optional) 'resolver' config entry: its 'type' is "key" (the default; the shard key
+   * is the shard name), "hash" (see {@link HashShardResolver}), "lookup" (see {@link LookupShardResolver}) or the
+   * class name of a custom {@link ShardResolver}.
+   *
+   * @param config
+   * @param shards the names of the shards
+   * @return
+   * @throws IllegalArgumentException if the resolver cannot be created
+   */
+  public static ShardResolver createResolver(final JsonObject config, final List<String> shards) {
+    final String type = config.getString("type", "key");
+
+    if ("key".equals(type)) {
+      return new KeyShardResolver(config, shards);
+    } else if ("hash".equals(type)) {
+      return new HashShardResolver(config, shards);
+    } else if ("lookup".equals(type)) {
+      return new LookupShardResolver(config, shards);
+    }
+
+    try {
+      return Class.forName(type).asSubclass(ShardResolver.class).getConstructor(JsonObject.class, List.class).newInstance(config, shards);
+    } catch (final ReflectiveOperationException | ClassCastException e) {
+      final Throwable cause = e instanceof InvocationTargetException ? e.getCause() : e;
+      throw new IllegalArgumentException("Invalid shard resolver: " + type + " (" + cause + ")", cause);
+    }
+  }
+
+  /**
+   * Returns the pool of the shard of the key.
+   *
+   * @param shardKey
+   * @return
+   * @throws IllegalArgumentException if the key does not resolve to a known shard
+   */
+  public HikariDataSource resolve(final Object shardKey) {
+    return getDataSource(mResolver.resolve(shardKey));
+  }
+
+  /**
+   * Returns the pool of the named shard.
+   *
+   * @param shard
+   * @return
+   * @throws IllegalArgumentException if there is no such shard
+   */
+  public HikariDataSource getDataSource(final String shard) {
+    final HikariDataSource dataSource = mDataSources.get(shard);
+
+    if (dataSource == null) {
+      throw new IllegalArgumentException("Unknown shard: " + shard);
+    }
+
+    return dataSource;
+  }
+
+  /**
+   * Closes the pools of the shards.
+   */
+  public void close() {
+    for (final HikariDataSource dataSource : mDataSources.values()) {
+      dataSource.close();
+    }
+  }
+
+  // -------------------------------------------------------------------------
+  // Member Accessors
+  // -------------------------------------------------------------------------
+
+  public List<String> getShards() {
+    return new ArrayList<>(mDataSources.keySet());
+  }
+
+  /**
+   * Returns the total maximum size of the pools of the shards.
+   *
+   * @return
+   */
+  public int getMaximumPoolSize() {
+    int maximumPoolSize = 0;
+    for (final HikariDataSource dataSource : mDataSources.values()) {
+      maximumPoolSize += dataSource.getMaximumPoolSize();
+    }
+    return maximumPoolSize;
+  }
+
+}
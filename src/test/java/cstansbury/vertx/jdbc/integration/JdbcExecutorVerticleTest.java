@@ -3,8 +3,10 @@ package cstansbury.vertx.jdbc.integration;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.eventbus.DeliveryOptions;
 import io.vertx.core.eventbus.Message;
+import io.vertx.core.eventbus.ReplyException;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.test.core.VertxTestBase;
@@ -15,10 +17,16 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 
 import org.junit.Test;
 
+import cstansbury.vertx.jdbc.JdbcExecutorVerticle;
+import cstansbury.vertx.jdbc.JdbcResultSet;
+import cstansbury.vertx.jdbc.JdbcResultSetCodec;
 import cstansbury.vertx.jdbc.JdbcUtils;
 
 public class JdbcExecutorVerticleTest extends VertxTestBase {
@@ -32,9 +40,14 @@ public class JdbcExecutorVerticleTest extends VertxTestBase {
   private static final String TESTDB_USER = "sa";
   private static final String TESTDB_PASSWORD = "";
 
+  private static final DeliveryOptions EXECUTE_BATCH = new DeliveryOptions().addHeader("action", "batch");
   private static final DeliveryOptions EXECUTE_CALL = new DeliveryOptions().addHeader("action", "call");
   private static final DeliveryOptions EXECUTE_QUERY = new DeliveryOptions().addHeader("action", "query");
+  private static final DeliveryOptions EXECUTE_STREAM = new DeliveryOptions().addHeader("action", "stream");
   private static final DeliveryOptions EXECUTE_UPDATE = new DeliveryOptions().addHeader("action", "update");
+  private static final DeliveryOptions START_TRANSACTION = new DeliveryOptions().addHeader("action", "startTransaction");
+  private static final DeliveryOptions COMMIT_TRANSACTION = new DeliveryOptions().addHeader("action", "commit");
+  private static final DeliveryOptions ROLLBACK_TRANSACTION = new DeliveryOptions().addHeader("action", "rollback");
 
   // -------------------------------------------------------------------------
   // Member Variables
@@ -54,8 +67,6 @@ public class JdbcExecutorVerticleTest extends VertxTestBase {
     vertx.deployVerticle(
       "java:cstansbury.vertx.jdbc.JdbcExecutorVerticle",
       new DeploymentOptions()
-        .setMultiThreaded(true)
-        .setWorker(true)
         .setConfig(new JsonObject()
           .put("address", TESTDB_ADDRESS)
           .put("pool", new JsonObject()
@@ -125,6 +136,30 @@ public class JdbcExecutorVerticleTest extends VertxTestBase {
     }
   }
 
+  /**
+   * Deploys an executor of the test database, with the given options, on an address of its own.
+   * 
+   * @param address
+   * @param options the config of the executor, other than its address and pool
+   * @param handler called once the executor is deployed
+   */
+  protected void deployExecutor(final String address, final JsonObject options, final Handler<Void> handler) {
+    final JsonObject config = new JsonObject()
+      .put("address", address)
+      .put("pool", new JsonObject()
+        .put("jdbcUrl", TESTDB_URL)
+        .put("username", TESTDB_USER)
+        .put("password", TESTDB_PASSWORD)
+        .put("minimumIdle", 1)
+      )
+      .mergeIn(options);
+    
+    vertx.deployVerticle("java:cstansbury.vertx.jdbc.JdbcExecutorVerticle", new DeploymentOptions().setConfig(config), deployResult -> {
+      assertTrue(deployResult.succeeded());
+      handler.handle(null);
+    });
+  }
+
   // -------------------------------------------------------------------------
   // Assert Utilities
   // -------------------------------------------------------------------------
@@ -188,7 +223,11 @@ public class JdbcExecutorVerticleTest extends VertxTestBase {
   // -------------------------------------------------------------------------
 
   protected void executeQuery(JsonObject query, Handler<AsyncResult<Message<Object>>> handler) {
-    vertx.eventBus().send(TESTDB_ADDRESS, query, EXECUTE_QUERY, handler);
+    executeQuery(TESTDB_ADDRESS, query, handler);
+  }
+  
+  protected void executeQuery(String address, JsonObject query, Handler<AsyncResult<Message<Object>>> handler) {
+    vertx.eventBus().send(address, query, EXECUTE_QUERY, handler);
   }
   
   /**
@@ -303,12 +342,513 @@ public class JdbcExecutorVerticleTest extends VertxTestBase {
     await();
   }
 
+  /**
+   * 
+   */
+  @Test
+  public void test_executeQuery_multiBind_parallel() {
+    final JsonArray params = new JsonArray();
+    for (int id = 5; id >= 1; id--) {
+      params.add(new JsonArray().add(id));
+    }
+    
+    executeQuery(
+      new JsonObject()
+        .put("sql", "select id, email from test_user where id = ?")
+        .put("params", params)
+        .put("parallel", 3),
+      response -> {
+        final JsonArray results = assertJsonArray(response.result().body(), 5);
+        // The results are in the order of the params, whichever connection they were executed on
+        assertJsonArray(results.getValue(0), 0);
+        assertJsonArray(results.getValue(1), 0);
+        for (int i = 2; i < 5; i++) {
+          final JsonArray rows = assertJsonArray(results.getValue(i), 1);
+          assertEquals(5 - i, (int) rows.getJsonObject(0).getInteger("id"));
+        }
+        testComplete();
+      }
+    );
+    await();
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void test_executeQuery_inList() {
+    executeQuery(
+      new JsonObject()
+        .put("sql", "select id from test_user where id in (?[]) and email <> '?[]' order by id")
+        .put("params", new JsonArray().add(new JsonArray().add(1).add(3))),
+      response -> {
+        final JsonArray rows = assertJsonArray(response.result().body(), 2);
+        assertEquals(1, (int) rows.getJsonObject(0).getInteger("id"));
+        assertEquals(3, (int) rows.getJsonObject(1).getInteger("id"));
+        executeQuery(
+          new JsonObject()
+            .put("sql", "select id from test_user where id in (?[]) and gender = ? order by id")
+            .put("params", new JsonArray()
+              .add(new JsonArray().add(new JsonArray().add(1).add(2).add(3)).add("F"))
+              .add(new JsonArray().add(new JsonArray()).add("F"))
+            ),
+          multiResponse -> {
+            final JsonArray results = assertJsonArray(multiResponse.result().body(), 2);
+            assertJsonArray(results.getValue(0), 2);
+            assertJsonArray(results.getValue(1), 0);
+            executeQuery(
+              new JsonObject()
+                .put("sql", "select id from test_user where id not in (?[])")
+                .put("params", new JsonArray().add(new JsonArray())),
+              notInResponse -> {
+                assertTrue(notInResponse.failed());
+                testComplete();
+              }
+            );
+          }
+        );
+      }
+    );
+    await();
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void test_executeQuery_typedColumns() throws SQLException {
+    try (final Statement statement = mTestConnection.createStatement()) {
+      statement.executeUpdate("insert into test_user(email, name, gender) values('nameless@test.com', null, 'M')");
+    }
+    executeQuery(
+      new JsonObject()
+        .put("sql", "select id, email, name, gender from test_user where email = ?")
+        .put("params", new JsonArray().add("nameless@test.com")), 
+      response -> {
+        assertNotNull(response.result());
+        final JsonArray rows = assertJsonArray(response.result().body(), 1);
+        final JsonObject row = assertJsonObject(rows.getValue(0), 4);
+        assertEquals(4, row.getInteger("id").intValue());
+        assertTrue(row.containsKey("name"));
+        assertNull(row.getValue("name"));
+        assertEquals("M", row.getString("gender"));
+        testComplete();
+      }
+    );
+    await();
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void test_executeQuery_temporalFormats() {
+    final JsonObject query = new JsonObject()
+      .put("sql", "select cast('2015-03-04' as date) as d, cast('2015-03-04 05:06:07' as timestamp) as ts from test_user where id = 1");
+    executeQuery(query, stringResponse -> {
+      assertNotNull(stringResponse.result());
+      final JsonObject stringRow = assertJsonObject(assertJsonArray(stringResponse.result().body(), 1).getValue(0), 2);
+      assertEquals("2015-03-04", stringRow.getString("d"));
+      assertEquals("2015-03-04 05:06:07", stringRow.getString("ts"));
+      executeQuery(query.copy().put("temporalFormat", "millis"), millisResponse -> {
+        assertNotNull(millisResponse.result());
+        final JsonObject millisRow = assertJsonObject(assertJsonArray(millisResponse.result().body(), 1).getValue(0), 2);
+        assertEquals(java.sql.Date.valueOf("2015-03-04").getTime(), millisRow.getLong("d").longValue());
+        assertEquals(java.sql.Timestamp.valueOf("2015-03-04 05:06:07").getTime(), millisRow.getLong("ts").longValue());
+        executeQuery(query.copy().put("temporalFormat", "iso8601"), isoResponse -> {
+          assertNotNull(isoResponse.result());
+          final JsonObject isoRow = assertJsonObject(assertJsonArray(isoResponse.result().body(), 1).getValue(0), 2);
+          assertEquals("2015-03-04", isoRow.getString("d"));
+          assertEquals(java.sql.Timestamp.valueOf("2015-03-04 05:06:07").toInstant().toString(), isoRow.getString("ts"));
+          testComplete();
+        });
+      });
+    });
+    await();
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void test_executeQuery_paramTypes() {
+    executeQuery(
+      new JsonObject()
+        .put("sql", "select id, email, name, gender from test_user where id = ? and gender = ?")
+        .put("params", new JsonArray().add(2L).add("M"))
+        .put("paramTypes", new JsonArray().add("INTEGER").add(Types.CHAR)), 
+      response -> {
+        assertNotNull(response.result());
+        final JsonArray rows = assertJsonArray(response.result().body(), 1);
+        assertEquals("bob@test.com", assertJsonObject(rows.getValue(0), 4).getString("email"));
+        testComplete();
+      }
+    );
+    await();
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void test_executeQuery_paramTypes_outOfRange() {
+    // 3000000000 does not fit the INTEGER id, and must be rejected rather than wrapped to a negative id
+    executeQuery(
+      new JsonObject()
+        .put("sql", "select id from test_user where id = ?")
+        .put("params", new JsonArray().add(3000000000L))
+        .put("paramTypes", new JsonArray().add("INTEGER")), 
+      response -> {
+        assertTrue(response.failed());
+        testComplete();
+      }
+    );
+    await();
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void test_executeQuery_statementCache_reuse() {
+    final String address = TESTDB_ADDRESS + ".statementCache";
+    deployExecutor(address, new JsonObject().put("statementCache", new JsonObject().put("maxSize", 16)), deployed -> {
+      final JsonObject query = new JsonObject()
+        .put("sql", "select id, email, name, gender from test_user where email = ?")
+        .put("params", new JsonArray().add("alice@test.com"));
+      executeQuery(address, query, firstResponse -> {
+        assertNotNull(firstResponse.result());
+        assertJsonArray(firstResponse.result().body(), 1);
+        executeQuery(address, query.copy().put("params", new JsonArray().add("eve@test.com")), secondResponse -> {
+          assertNotNull(secondResponse.result());
+          final JsonArray rows = assertJsonArray(secondResponse.result().body(), 1);
+          assertEquals("eve@test.com", assertJsonObject(rows.getValue(0), 4).getString("email"));
+          vertx.eventBus().send(address + ".metrics", null, new DeliveryOptions().addHeader("action", "stats"), (final AsyncResult<Message<Object>> statsResponse) -> {
+            // The first query prepares the statement, and the second reuses it
+            final JsonObject statementCache = ((JsonObject) statsResponse.result().body()).getJsonObject("statementCache");
+            assertEquals(1, (long) statementCache.getLong("misses"));
+            assertEquals(1, (long) statementCache.getLong("hits"));
+            testComplete();
+          });
+        });
+      });
+    });
+    await();
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void test_executeQuery_cached_invalidatedByUpdate() throws SQLException {
+    final String address = TESTDB_ADDRESS + ".queryCache";
+    deployExecutor(address, new JsonObject().put("queryCache", new JsonObject()), deployed -> {
+      final JsonObject query = new JsonObject()
+        .put("sql", "select id, email from test_user")
+        .put("cacheTtl", 60000);
+      executeQuery(address, query, firstResponse -> {
+        assertJsonArray(firstResponse.result().body(), 3);
+        try (final Statement statement = mTestConnection.createStatement()) {
+          // Bypasses the executor, so the cached result is (knowingly) stale
+          statement.executeUpdate("insert into test_user(email, name, gender) values('carol@test.com', 'Carol', 'F')");
+        } catch (final SQLException e) {
+          fail(e.getMessage());
+        }
+        executeQuery(address, query, cachedResponse -> {
+          assertJsonArray(cachedResponse.result().body(), 3);
+          final JsonObject update = new JsonObject()
+            .put("sql", "update test_user set name = ? where email = ?")
+            .put("params", new JsonArray().add("Alicia").add("alice@test.com"));
+          executeUpdate(address, update, updateResponse -> {
+            assertNotNull(updateResponse.result());
+            executeQuery(address, query, invalidatedResponse -> {
+              assertJsonArray(invalidatedResponse.result().body(), 4);
+              vertx.eventBus().send(address, null, new DeliveryOptions().addHeader("action", "cacheStats"), (final AsyncResult<Message<Object>> statsResponse) -> {
+                final JsonObject stats = assertJsonObject(statsResponse.result().body());
+                assertEquals(1, stats.getLong("hits").longValue());
+                assertEquals(1, stats.getLong("invalidations").longValue());
+                testComplete();
+              });
+            });
+          });
+        });
+      });
+    });
+    await();
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void test_executeQuery_cached_paramTypes() {
+    final String address = TESTDB_ADDRESS + ".queryCache";
+    deployExecutor(address, new JsonObject().put("queryCache", new JsonObject()), deployed -> {
+      // The param types change how the params are bound, so the same params of different types are cached separately
+      final JsonObject query = new JsonObject()
+        .put("sql", "select id, email from test_user where id = ?")
+        .put("params", new JsonArray().add(1))
+        .put("paramTypes", new JsonArray().add("INTEGER"))
+        .put("cacheTtl", 60000);
+      executeQuery(address, query, integerResponse -> {
+        assertJsonArray(integerResponse.result().body(), 1);
+        executeQuery(address, query.copy().put("paramTypes", new JsonArray().add("BIGINT")), bigintResponse -> {
+          assertJsonArray(bigintResponse.result().body(), 1);
+          vertx.eventBus().send(address, null, new DeliveryOptions().addHeader("action", "cacheStats"), (final AsyncResult<Message<Object>> statsResponse) -> {
+            final JsonObject stats = assertJsonObject(statsResponse.result().body());
+            assertEquals(0, stats.getLong("hits").longValue());
+            assertEquals(2, stats.getLong("misses").longValue());
+            testComplete();
+          });
+        });
+      });
+    });
+    await();
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void test_executeQuery_cached_invalidatedByCall() {
+    final String address = TESTDB_ADDRESS + ".queryCache";
+    deployExecutor(address, new JsonObject().put("queryCache", new JsonObject()), deployed -> {
+      final JsonObject query = new JsonObject()
+        .put("sql", "select id, email from test_user")
+        .put("cacheTtl", 60000);
+      executeQuery(address, query, firstResponse -> {
+        assertJsonArray(firstResponse.result().body(), 3);
+        final JsonObject call = new JsonObject()
+          .put("sql", "{call insert_test_user(?, ?, ?, ?, ?)}")
+          .put("params", new JsonArray().add("mallory@test.com").add("Mallory").add("F").add("ping"))
+          .put("paramsInfo", PARAMS_INFO_INSERT_TEST_USER);
+        executeCall(address, call, callResponse -> {
+          assertNotNull(callResponse.result());
+          executeQuery(address, query, invalidatedResponse -> {
+            assertJsonArray(invalidatedResponse.result().body(), 4);
+            testComplete();
+          });
+        });
+      });
+    });
+    await();
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void test_executeQuery_singleFlight() {
+    final String address = TESTDB_ADDRESS + ".singleFlight";
+    deployExecutor(address, new JsonObject().put("singleFlight", true), deployed -> {
+      final JsonObject query = new JsonObject()
+        .put("sql", "select id, email from test_user where email = ?")
+        .put("params", new JsonArray().add("alice@test.com"));
+      final int count = 10;
+      final List<Object> results = new ArrayList<>();
+    
+      for (int i = 0; i < count; i++) {
+        executeQuery(address, query, response -> {
+          assertNotNull(response.result());
+          results.add(response.result().body());
+          if (results.size() == count) {
+            for (final Object result : results) {
+              assertEquals("alice@test.com", assertJsonObject(assertJsonArray(result, 1).getValue(0), 2).getString("email"));
+            }
+            testComplete();
+          }
+        });
+      }
+    });
+    await();
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void test_executeQuery_singleFlight_unexpectedFailure() {
+    final String address = TESTDB_ADDRESS + ".singleFlight";
+    deployExecutor(address, new JsonObject().put("singleFlight", true), deployed -> {
+      // The params are not an array, so the query fails with a ClassCastException rather than an SQLException
+      final JsonObject query = new JsonObject()
+        .put("sql", "select id, email from test_user where email = ?")
+        .put("params", "alice@test.com");
+      executeQuery(address, query, firstResponse -> {
+        assertNull(firstResponse.result());
+        executeQuery(address, query, secondResponse -> {
+          assertNull(secondResponse.result());
+          testComplete();
+        });
+      });
+    });
+    await();
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void test_executeQuery_columnar() {
+    executeQuery(
+      new JsonObject()
+        .put("sql", "select id, email from test_user where gender = ? order by id")
+        .put("params", new JsonArray().add("F"))
+        .put("format", "columnar"),
+      response -> {
+        assertNotNull(response.result());
+        final JsonObject result = assertJsonObject(response.result().body(), 3);
+        assertEquals(new JsonArray().add("id").add("email"), result.getJsonArray("columns"));
+        assertEquals(new JsonArray().add("INTEGER").add("VARCHAR"), result.getJsonArray("types"));
+        final JsonArray rows = assertJsonArray(result.getValue("rows"), 2);
+        assertEquals(new JsonArray().add(1).add("alice@test.com"), rows.getJsonArray(0));
+        testComplete();
+      }
+    );
+    await();
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void test_executeQuery_resultSetEncoding() {
+    final DeliveryOptions options = new DeliveryOptions().addHeader("action", "query").addHeader("replyEncoding", "resultset");
+    final JsonObject query = new JsonObject()
+      .put("sql", "select id, email, name from test_user where gender = ? order by id")
+      .put("params", new JsonArray().add("F"));
+    vertx.eventBus().send(TESTDB_ADDRESS, query, options, (final AsyncResult<Message<Object>> response) -> {
+      assertNotNull(response.result());
+      assertTrue(response.result().body() instanceof JdbcResultSet);
+      final JdbcResultSet resultSet = (JdbcResultSet) response.result().body();
+      assertEquals(2, resultSet.getRowCount());
+      assertEquals("email", resultSet.getColumnName(1));
+      assertEquals(Types.INTEGER, resultSet.getColumnType(0));
+      assertEquals(1, resultSet.getValue(0, 0));
+      
+      // Round trip through the wire encoding, as for a clustered reply
+      final Buffer buffer = Buffer.buffer();
+      final JdbcResultSetCodec codec = new JdbcResultSetCodec();
+      codec.encodeToWire(buffer, resultSet);
+      assertEquals(resultSet.toJsonArray(), codec.decodeFromWire(0, buffer).toJsonArray());
+      testComplete();
+    });
+    await();
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void test_executeQuery_bufferEncoding() throws SQLException {
+    try (final Statement statement = mTestConnection.createStatement()) {
+      statement.executeUpdate("insert into test_user(email, name, gender) values('dan@test.com', 'Dan \"The Man\"' || char(10) || '\\o/', 'M')");
+    }
+    final DeliveryOptions options = new DeliveryOptions().addHeader("action", "query").addHeader("replyEncoding", "buffer");
+    final JsonObject query = new JsonObject().put("sql", "select id, email, name, gender from test_user order by id");
+    executeQuery(query, jsonResponse -> {
+      vertx.eventBus().send(TESTDB_ADDRESS, query, options, (final AsyncResult<Message<Object>> bufferResponse) -> {
+        assertNotNull(bufferResponse.result());
+        assertTrue(bufferResponse.result().body() instanceof Buffer);
+        assertEquals(jsonResponse.result().body(), new JsonArray(bufferResponse.result().body().toString()));
+        testComplete();
+      });
+    });
+    await();
+  }
+
+  // -------------------------------------------------------------------------
+  // Stream Tests
+  // -------------------------------------------------------------------------
+
+  protected void executeStream(JsonObject query, Handler<AsyncResult<Message<Object>>> handler) {
+    vertx.eventBus().send(TESTDB_ADDRESS, query, EXECUTE_STREAM, handler);
+  }
+  
+  /**
+   * 
+   */
+  @Test
+  public void test_executeStream_chunks() {
+    executeStream(
+      new JsonObject()
+        .put("sql", "select id, email, name, gender from test_user order by id")
+        .put("chunkSize", 2), 
+      firstResponse -> {
+        assertNotNull(firstResponse.result());
+        final JsonObject firstChunk = assertJsonObject(firstResponse.result().body(), 2);
+        assertTrue(firstChunk.getBoolean("more"));
+        assertEquals("alice@test.com", assertJsonArray(firstChunk.getValue("rows"), 2).getJsonObject(0).getString("email"));
+        firstResponse.result().reply(new JsonObject(), (final AsyncResult<Message<Object>> secondResponse) -> {
+          assertNotNull(secondResponse.result());
+          final JsonObject secondChunk = assertJsonObject(secondResponse.result().body(), 2);
+          assertFalse(secondChunk.getBoolean("more"));
+          assertEquals("eve@test.com", assertJsonArray(secondChunk.getValue("rows"), 1).getJsonObject(0).getString("email"));
+          testComplete();
+        });
+      }
+    );
+    await();
+  }
+  
+  /**
+   * 
+   */
+  @Test
+  public void test_executeStream_close() {
+    executeStream(
+      new JsonObject()
+        .put("sql", "select id, email, name, gender from test_user where gender = ? order by id")
+        .put("params", new JsonArray().add("F"))
+        .put("chunkSize", 1), 
+      firstResponse -> {
+        assertNotNull(firstResponse.result());
+        final JsonObject firstChunk = assertJsonObject(firstResponse.result().body(), 2);
+        assertTrue(firstChunk.getBoolean("more"));
+        assertJsonArray(firstChunk.getValue("rows"), 1);
+        firstResponse.result().reply(new JsonObject().put("close", true), (final AsyncResult<Message<Object>> closeResponse) -> {
+          assertNotNull(closeResponse.result());
+          final JsonObject lastChunk = assertJsonObject(closeResponse.result().body(), 2);
+          assertFalse(lastChunk.getBoolean("more"));
+          assertJsonArray(lastChunk.getValue("rows"), 0);
+          testComplete();
+        });
+      }
+    );
+    await();
+  }
+
+  /**
+   * 
+   */
+  @Test
+  public void test_executeStream_invalidParams() {
+    // The params are not an array, so opening the cursor fails with a ClassCastException rather than an SQLException
+    executeStream(
+      new JsonObject()
+        .put("sql", "select id, email, name, gender from test_user where gender = ? order by id")
+        .put("params", "F"), 
+      response -> {
+        assertTrue(response.failed());
+        vertx.eventBus().send(TESTDB_ADDRESS + ".metrics", null, new DeliveryOptions().addHeader("action", "stats"), (final AsyncResult<Message<Object>> statsResponse) -> {
+          assertEquals(0, (int) ((JsonObject) statsResponse.result().body()).getJsonObject("pool").getInteger("active"));
+          testComplete();
+        });
+      }
+    );
+    await();
+  }
+
   // -------------------------------------------------------------------------
   // Insert Tests
   // -------------------------------------------------------------------------
 
   protected void executeUpdate(JsonObject update, Handler<AsyncResult<Message<Object>>> handler) {
-    vertx.eventBus().send(TESTDB_ADDRESS, update, EXECUTE_UPDATE, handler);
+    executeUpdate(TESTDB_ADDRESS, update, handler);
+  }
+  
+  protected void executeUpdate(String address, JsonObject update, Handler<AsyncResult<Message<Object>>> handler) {
+    vertx.eventBus().send(address, update, EXECUTE_UPDATE, handler);
   }
   
   /**
@@ -364,6 +904,67 @@ public class JdbcExecutorVerticleTest extends VertxTestBase {
     await();
   }
   
+  /**
+   * 
+   */
+  @Test
+  public void test_executeUpdate_insert_batch() {
+    assertResultSetNotExists("select * from test_user where email = 'mallory@test.com'");
+    assertResultSetNotExists("select * from test_user where email = 'trent@test.com'");
+    executeUpdate( 
+      new JsonObject()
+        .put("sql", "insert into test_user(email, name, gender) values (?, ?, ?)")
+        .put("params", new JsonArray()
+          .add(new JsonArray().add("mallory@test.com").add("Mallory").add("F"))
+          .add(new JsonArray().add("chuck@test.com").add("Chuck").add("M"))
+          .add(new JsonArray().add("trent@test.com").add("Trent").add("M")))
+        .put("batch", true)
+        .put("batchSize", 2)
+        .put("generatedKeys", true), 
+      response -> {
+        assertNotNull(response.result());
+        final JsonObject result = assertJsonObject(response.result().body(), 2);
+        final JsonArray rowCounts = assertJsonArray(result.getValue("rowCount"), 3);
+        for (int i = 0; i < rowCounts.size(); i++) {
+          assertEquals(1, rowCounts.getInteger(i).intValue());
+        }
+        final JsonArray generatedKeys = assertJsonArray(result.getValue("generatedKeys"), 3);
+        for (int i = 0; i < generatedKeys.size(); i++) {
+          assertNotNull(generatedKeys.getJsonObject(i).getValue("id"));
+        }
+        assertResultSetExists("select * from test_user where email = 'mallory@test.com'");
+        assertResultSetExists("select * from test_user where email = 'trent@test.com'");
+        testComplete();
+      }
+    );
+    await();
+  }
+  
+  /**
+   * 
+   */
+  @Test
+  public void test_executeUpdate_insert_batch_columnarKeys() {
+    executeUpdate(
+      new JsonObject()
+        .put("sql", "insert into test_user(email, name, gender) values (?, ?, ?)")
+        .put("params", new JsonArray()
+          .add(new JsonArray().add("carol@test.com").add("Carol").add("F"))
+          .add(new JsonArray().add("dave@test.com").add("Dave").add("M")))
+        .put("batch", true)
+        .put("generatedKeys", true)
+        .put("format", "columnar"),
+      response -> {
+        assertNotNull(response.result());
+        final JsonObject generatedKeys = assertJsonObject(response.result().body(), 2).getJsonObject("generatedKeys");
+        assertEquals(new JsonArray().add("id"), generatedKeys.getJsonArray("columns"));
+        assertJsonArray(generatedKeys.getValue("rows"), 2);
+        testComplete();
+      }
+    );
+    await();
+  }
+
   /**
    * 
    */
@@ -409,6 +1010,27 @@ public class JdbcExecutorVerticleTest extends VertxTestBase {
     await();
   }
   
+  /**
+   * 
+   */
+  @Test
+  public void test_executeUpdate_update_singleBind_null() {
+    assertResultSetNotExists("select * from test_user where name is null");
+    executeUpdate( 
+      new JsonObject()
+        .put("sql", "update test_user set name = ? where email = ?")
+        .put("params", new JsonArray().addNull().add("bob@test.com")),
+      response -> {
+        assertNotNull(response.result());
+        final JsonObject result = assertJsonObject(response.result().body(), 1);
+        assertEquals(1, result.getInteger("rowCount").intValue());
+        assertResultSetExists("select * from test_user where name is null and email = 'bob@test.com'");
+        testComplete();
+      }
+    );
+    await();
+  }
+  
   /**
    * 
    */
@@ -631,7 +1253,11 @@ public class JdbcExecutorVerticleTest extends VertxTestBase {
     .add(new JsonObject().put("mode", "INOUT").put("name", "echoToken").put("type", Types.VARCHAR));
   
   protected void executeCall(JsonObject call, Handler<AsyncResult<Message<Object>>> handler) {
-    vertx.eventBus().send(TESTDB_ADDRESS, call, EXECUTE_CALL, handler);
+    executeCall(TESTDB_ADDRESS, call, handler);
+  }
+  
+  protected void executeCall(String address, JsonObject call, Handler<AsyncResult<Message<Object>>> handler) {
+    vertx.eventBus().send(address, call, EXECUTE_CALL, handler);
   }
   
   /**
@@ -686,4 +1312,658 @@ public class JdbcExecutorVerticleTest extends VertxTestBase {
     await();
   }
   
+  // -------------------------------------------------------------------------
+  // Batch Tests
+  // -------------------------------------------------------------------------
+
+  protected void executeBatch(JsonObject batch, Handler<AsyncResult<Message<Object>>> handler) {
+    vertx.eventBus().send(TESTDB_ADDRESS, batch, EXECUTE_BATCH, handler);
+  }
+  
+  /**
+   * 
+   */
+  @Test
+  public void test_executeBatch_transaction_references() {
+    assertResultSetNotExists("select * from test_user where email = 'mallory@test.com'");
+    executeBatch(
+      new JsonObject()
+        .put("transaction", true)
+        .put("batch", new JsonArray()
+          .add(new JsonObject()
+            .put("action", "update")
+            .put("sql", "insert into test_user(email, name, gender) values (?, ?, ?)")
+            .put("params", new JsonArray().add("mallory@test.com").add("Mallory").add("F"))
+            .put("generatedKeys", true))
+          .add(new JsonObject()
+            .put("action", "update")
+            .put("sql", "update test_user set name = ? where id = ?")
+            .put("params", new JsonArray().add("Mal").add(new JsonObject().put("$ref", "0.generatedKeys.0.id"))))
+          .add(new JsonObject()
+            .put("action", "query")
+            .put("sql", "select id, email, name, gender from test_user where id = ?")
+            .put("params", new JsonArray().add(new JsonObject().put("$ref", "0.generatedKeys.0.id"))))
+        ),
+      response -> {
+        assertNotNull(response.result());
+        final JsonArray results = assertJsonArray(response.result().body(), 3);
+        assertEquals(1, assertJsonObject(results.getValue(1), 1).getInteger("rowCount").intValue());
+        final JsonObject row = assertJsonObject(assertJsonArray(results.getValue(2), 1).getValue(0), 4);
+        assertEquals("mallory@test.com", row.getString("email"));
+        assertEquals("Mal", row.getString("name"));
+        assertResultSetExists("select * from test_user where email = 'mallory@test.com' and name = 'Mal'");
+        testComplete();
+      }
+    );
+    await();
+  }
+  
+  /**
+   * 
+   */
+  @Test
+  public void test_executeBatch_transaction_rollback() {
+    assertResultSetNotExists("select * from test_user where email = 'mallory@test.com'");
+    executeBatch(
+      new JsonObject()
+        .put("transaction", true)
+        .put("batch", new JsonArray()
+          .add(new JsonObject()
+            .put("action", "update")
+            .put("sql", "insert into test_user(email, name, gender) values (?, ?, ?)")
+            .put("params", new JsonArray().add("mallory@test.com").add("Mallory").add("F")))
+          .add(new JsonObject()
+            .put("action", "update")
+            .put("sql", "insert into test_user(email, name, gender) values (?, ?, ?)")
+            .put("params", new JsonArray().add("chuck@test.com").add("Chuck")))
+        ),
+      response -> {
+        assertNull(response.result());
+        assertNotNull(response.cause());
+        assertTrue(response.cause().getMessage().startsWith("Batch step 1"));
+        assertResultSetNotExists("select * from test_user where email = 'mallory@test.com'");
+        testComplete();
+      }
+    );
+    await();
+  }
+  
+  // -------------------------------------------------------------------------
+  // Transaction Tests
+  // -------------------------------------------------------------------------
+
+  protected void startTransaction(JsonObject options, Handler<String> handler) {
+    vertx.eventBus().send(TESTDB_ADDRESS, options, START_TRANSACTION, (final AsyncResult<Message<Object>> response) -> {
+      assertNotNull(response.result());
+      handler.handle(assertJsonObject(response.result().body(), 1).getString("address"));
+    });
+  }
+  
+  protected static final JsonObject INSERT_MALLORY = new JsonObject()
+    .put("sql", "insert into test_user(email, name, gender) values (?, ?, ?)")
+    .put("params", new JsonArray().add("mallory@test.com").add("Mallory").add("F"));
+  
+  /**
+   * 
+   */
+  @Test
+  public void test_transaction_commit() {
+    assertResultSetNotExists("select * from test_user where email = 'mallory@test.com'");
+    startTransaction(new JsonObject(), address -> {
+      vertx.eventBus().send(address, INSERT_MALLORY, EXECUTE_UPDATE, (final AsyncResult<Message<Object>> updateResponse) -> {
+        assertNotNull(updateResponse.result());
+        assertEquals(1, assertJsonObject(updateResponse.result().body(), 1).getInteger("rowCount").intValue());
+        vertx.eventBus().send(address, null, COMMIT_TRANSACTION, (final AsyncResult<Message<Object>> commitResponse) -> {
+          assertNotNull(commitResponse.result());
+          assertResultSetExists("select * from test_user where email = 'mallory@test.com'");
+          testComplete();
+        });
+      });
+    });
+    await();
+  }
+  
+  /**
+   * 
+   */
+  @Test
+  public void test_transaction_rollback() {
+    assertResultSetNotExists("select * from test_user where email = 'mallory@test.com'");
+    startTransaction(new JsonObject(), address -> {
+      vertx.eventBus().send(address, INSERT_MALLORY, EXECUTE_UPDATE, (final AsyncResult<Message<Object>> updateResponse) -> {
+        assertNotNull(updateResponse.result());
+        vertx.eventBus().send(address, null, ROLLBACK_TRANSACTION, (final AsyncResult<Message<Object>> rollbackResponse) -> {
+          assertNotNull(rollbackResponse.result());
+          assertResultSetNotExists("select * from test_user where email = 'mallory@test.com'");
+          testComplete();
+        });
+      });
+    });
+    await();
+  }
+  
+  /**
+   * 
+   */
+  @Test
+  public void test_transaction_idleTimeout() {
+    assertResultSetNotExists("select * from test_user where email = 'mallory@test.com'");
+    startTransaction(new JsonObject().put("timeout", 100), address -> {
+      vertx.eventBus().send(address, INSERT_MALLORY, EXECUTE_UPDATE, (final AsyncResult<Message<Object>> updateResponse) -> {
+        assertNotNull(updateResponse.result());
+        vertx.setTimer(500, timerId -> {
+          vertx.eventBus().send(address, null, COMMIT_TRANSACTION, (final AsyncResult<Message<Object>> commitResponse) -> {
+            assertNull(commitResponse.result());
+            assertResultSetNotExists("select * from test_user where email = 'mallory@test.com'");
+            testComplete();
+          });
+        });
+      });
+    });
+    await();
+  }
+  
+  /**
+   * 
+   */
+  @Test
+  public void test_transaction_pipelined() {
+    startTransaction(new JsonObject(), address -> {
+      final List<String> replies = new ArrayList<>();
+      // Sent without waiting for the replies, the actions must run (and reply) in the order they were sent
+      vertx.eventBus().send(address, INSERT_MALLORY, EXECUTE_UPDATE, (final AsyncResult<Message<Object>> response) -> {
+        assertNotNull(response.result());
+        replies.add("insert");
+      });
+      vertx.eventBus().send(address, new JsonObject()
+        .put("sql", "update test_user set name = ? where email = ?")
+        .put("params", new JsonArray().add("Mal").add("mallory@test.com")), EXECUTE_UPDATE, (final AsyncResult<Message<Object>> response) -> {
+        assertNotNull(response.result());
+        assertEquals(1, assertJsonObject(response.result().body(), 1).getInteger("rowCount").intValue());
+        replies.add("update");
+      });
+      vertx.eventBus().send(address, null, COMMIT_TRANSACTION, (final AsyncResult<Message<Object>> response) -> {
+        assertNotNull(response.result());
+        replies.add("commit");
+      });
+      vertx.eventBus().send(address, INSERT_MALLORY, EXECUTE_UPDATE, (final AsyncResult<Message<Object>> response) -> {
+        assertNull(response.result());
+        assertEquals(Arrays.asList("insert", "update", "commit"), replies);
+        assertResultSetExists("select * from test_user where email = 'mallory@test.com' and name = 'Mal'");
+        testComplete();
+      });
+    });
+    await();
+  }
+  
+  // -------------------------------------------------------------------------
+  // Coalesce Tests
+  // -------------------------------------------------------------------------
+  
+  /**
+   * 
+   */
+  @Test
+  public void test_update_coalesced() {
+    final String address = TESTDB_ADDRESS + ".coalesced";
+    final String sql = "insert into test_user(email, name, gender) values (?, ?, ?)";
+    final int count = 5;
+    final List<AsyncResult<Message<Object>>> responses = new ArrayList<>();
+    
+    deployExecutor(address, new JsonObject().put("coalesce", new JsonObject().put("windowMs", 10)), deployed -> {
+      for (int i = 0; i < count; i++) {
+        // The third insert violates the not null constraint on email, and must fail on its own
+        final JsonArray params = i == 2 ? new JsonArray().addNull() : new JsonArray().add("user" + i + "@test.com");
+        params.add("User " + i).add("F");
+        vertx.eventBus().send(address, new JsonObject().put("sql", sql).put("params", params), EXECUTE_UPDATE, (final AsyncResult<Message<Object>> response) -> {
+          responses.add(response);
+          if (responses.size() == count) {
+            assertEquals(1, responses.stream().filter(AsyncResult::failed).count());
+            for (final AsyncResult<Message<Object>> result : responses) {
+              if (result.succeeded()) {
+                assertEquals(1, assertJsonObject(result.result().body(), 1).getInteger("rowCount").intValue());
+              }
+            }
+            assertResultSetExists("select * from test_user where email = 'user4@test.com'");
+            assertResultSetNotExists("select * from test_user where name = 'User 2'");
+            testComplete();
+          }
+        });
+      }
+    });
+    await();
+  }
+  
+  // -------------------------------------------------------------------------
+  // Executor Tests
+  // -------------------------------------------------------------------------
+  
+  /**
+   * 
+   */
+  @Test
+  public void test_executor_overloaded() {
+    final String address = TESTDB_ADDRESS + ".bounded";
+    final JsonObject config = new JsonObject()
+      .put("address", address)
+      .put("pool", new JsonObject()
+        .put("jdbcUrl", TESTDB_URL)
+        .put("username", TESTDB_USER)
+        .put("password", TESTDB_PASSWORD)
+        .put("minimumIdle", 1)
+        .put("maximumPoolSize", 1)
+        .put("connectionTimeout", 1000)
+      )
+      .put("executor", new JsonObject()
+        .put("queueSize", 1)
+      );
+    final List<Integer> failureCodes = new ArrayList<>();
+    
+    vertx.deployVerticle("java:cstansbury.vertx.jdbc.JdbcExecutorVerticle", new DeploymentOptions().setConfig(config), deployResult -> {
+      assertTrue(deployResult.succeeded());
+      // The transaction holds the only connection, so (at most) one query runs and one waits in the queue
+      vertx.eventBus().send(address, new JsonObject(), START_TRANSACTION, (final AsyncResult<Message<Object>> txResponse) -> {
+        assertNotNull(txResponse.result());
+        for (int i = 0; i < 3; i++) {
+          // Distinct queries, so that they are not executed as one
+          final JsonObject query = new JsonObject().put("sql", "select * from test_user where id > ?").put("params", new JsonArray().add(i));
+          vertx.eventBus().send(address, query, EXECUTE_QUERY, (final AsyncResult<Message<Object>> response) -> {
+            assertTrue(response.failed());
+            failureCodes.add(((ReplyException) response.cause()).failureCode());
+            if (failureCodes.size() == 3) {
+              assertTrue(failureCodes.contains(JdbcExecutorVerticle.FAILURE_OVERLOADED));
+              assertTrue(failureCodes.contains(JdbcExecutorVerticle.FAILURE_TIMEOUT));
+              testComplete();
+            }
+          });
+        }
+      });
+    });
+    await();
+  }
+  
+  /**
+   * 
+   */
+  @Test
+  public void test_executor_metrics() {
+    executeQuery(new JsonObject().put("sql", "select id, email from test_user order by id"), queryResponse -> {
+      final int rows = assertJsonArray(queryResponse.result().body()).size();
+      executeQuery(new JsonObject().put("sql", "select * from no_such_table"), errorResponse -> {
+        assertTrue(errorResponse.failed());
+        vertx.eventBus().send(TESTDB_ADDRESS + ".metrics", null, new DeliveryOptions().addHeader("action", "stats"), (final AsyncResult<Message<Object>> statsResponse) -> {
+          final JsonObject stats = (JsonObject) statsResponse.result().body();
+          final JsonObject queryStats = stats.getJsonObject("actions").getJsonObject("query");
+          assertEquals(2, (long) queryStats.getLong("requests"));
+          assertEquals(1, (long) queryStats.getLong("errors"));
+          assertEquals(rows, (long) queryStats.getLong("rows"));
+          assertTrue(stats.getJsonObject("latency").getJsonObject("execute").getLong("count") >= 1);
+          assertTrue(stats.getJsonObject("latency").getJsonObject("checkout").getLong("count") >= 2);
+          assertTrue(stats.getJsonObject("pool").getInteger("total") >= 1);
+          assertEquals(0, (int) stats.getJsonObject("executor").getInteger("queueDepth"));
+          testComplete();
+        });
+      });
+    });
+    await();
+  }
+  
+  /**
+   * 
+   */
+  @Test
+  public void test_executor_topStatements() {
+    executeQuery(new JsonObject().put("sql", "select * from test_user where id in (1, 2)"), firstResponse -> {
+      assertNotNull(firstResponse.result());
+      executeQuery(new JsonObject().put("sql", "SELECT *  FROM test_user WHERE id IN (?, ?, ?)").put("params", new JsonArray().add(1).add(2).add(3)), secondResponse -> {
+        assertNotNull(secondResponse.result());
+        vertx.eventBus().send(TESTDB_ADDRESS + ".metrics", new JsonObject().put("limit", 5), new DeliveryOptions().addHeader("action", "topStatements"), (final AsyncResult<Message<Object>> topResponse) -> {
+          final JsonArray topStatements = assertJsonArray(topResponse.result().body());
+          JsonObject inStatement = null;
+          for (int i = 0; i < topStatements.size(); i++) {
+            if (topStatements.getJsonObject(i).getString("sql").equals("select * from test_user where id in (?...)")) {
+              inStatement = topStatements.getJsonObject(i);
+            }
+          }
+          assertNotNull(inStatement);
+          assertEquals(2, (long) inStatement.getLong("calls"));
+          assertEquals(5, (long) inStatement.getLong("rows"));
+          assertTrue(topStatements.size() <= 5);
+          testComplete();
+        });
+      });
+    });
+    await();
+  }
+  
+  /**
+   * 
+   */
+  @Test
+  public void test_executor_slowQueries() {
+    final String address = TESTDB_ADDRESS + ".slow";
+    final JsonObject config = new JsonObject()
+      .put("address", address)
+      .put("pool", new JsonObject()
+        .put("jdbcUrl", TESTDB_URL)
+        .put("username", TESTDB_USER)
+        .put("password", TESTDB_PASSWORD)
+      )
+      .put("slowQueries", new JsonObject()
+        .put("threshold", 0)
+        .put("redactParams", true)
+        .put("publishAddress", address + ".slowQueries")
+      );
+    
+    vertx.eventBus().<JsonObject>consumer(address + ".slowQueries", published -> {
+      assertEquals("select email from test_user where id = ?", published.body().getString("sql"));
+      assertEquals(new JsonArray().add("?"), published.body().getJsonArray("params"));
+      vertx.eventBus().send(address + ".metrics", null, new DeliveryOptions().addHeader("action", "slowQueries"), (final AsyncResult<Message<Object>> slowResponse) -> {
+        final JsonObject record = assertJsonArray(slowResponse.result().body(), 1).getJsonObject(0);
+        assertEquals(1, (long) record.getLong("rows"));
+        assertTrue(record.getDouble("totalTime") >= record.getDouble("executeTime"));
+        assertNotNull(record.getJsonObject("pool"));
+        testComplete();
+      });
+    });
+    vertx.deployVerticle("java:cstansbury.vertx.jdbc.JdbcExecutorVerticle", new DeploymentOptions().setConfig(config), deployResult -> {
+      assertTrue(deployResult.succeeded());
+      final JsonObject query = new JsonObject().put("sql", "select email from test_user where id = ?").put("params", new JsonArray().add(1));
+      vertx.eventBus().send(address, query, EXECUTE_QUERY, (final AsyncResult<Message<Object>> response) -> {
+        assertNotNull(response.result());
+      });
+    });
+    await();
+  }
+  
+  /**
+   * 
+   */
+  @Test
+  public void test_executor_replicas() throws SQLException {
+    final String address = TESTDB_ADDRESS + ".replicas";
+    final JsonObject config = new JsonObject()
+      .put("address", address)
+      .put("pool", new JsonObject()
+        .put("jdbcUrl", TESTDB_URL)
+        .put("username", TESTDB_USER)
+        .put("password", TESTDB_PASSWORD)
+      )
+      .put("replicas", new JsonObject()
+        .put("pools", new JsonArray().add(new JsonObject()
+          .put("jdbcUrl", "jdbc:hsqldb:mem:replicadb")
+          .put("username", TESTDB_USER)
+          .put("password", TESTDB_PASSWORD)
+        ))
+        .put("readYourWrites", 60000)
+      );
+    final JsonObject query = new JsonObject().put("sql", "select * from test_user");
+    final DeliveryOptions writerQuery = new DeliveryOptions().addHeader("action", "query").addHeader("sender", "writer");
+    final DeliveryOptions writerUpdate = new DeliveryOptions().addHeader("action", "update").addHeader("sender", "writer");
+    
+    // The replica is (deliberately) behind the primary: it only has the first user
+    try (final Connection replicaConnection = DriverManager.getConnection("jdbc:hsqldb:mem:replicadb", TESTDB_USER, TESTDB_PASSWORD);
+      final Statement statement = replicaConnection.createStatement()) {
+      statement.execute("drop table test_user if exists");
+      statement.execute("create table test_user (id integer primary key, email varchar(30) not null)");
+      statement.executeUpdate("insert into test_user values(1, 'alice@test.com')");
+    }
+    
+    vertx.deployVerticle("java:cstansbury.vertx.jdbc.JdbcExecutorVerticle", new DeploymentOptions().setConfig(config), deployResult -> {
+      assertTrue(deployResult.succeeded());
+      vertx.eventBus().send(address, query, writerQuery, (final AsyncResult<Message<Object>> replicaResponse) -> {
+        assertJsonArray(replicaResponse.result().body(), 1);
+        final JsonObject update = new JsonObject().put("sql", "update test_user set name = 'Eve2' where id = ?").put("params", new JsonArray().add(3));
+        vertx.eventBus().send(address, update, writerUpdate, (final AsyncResult<Message<Object>> updateResponse) -> {
+          assertNotNull(updateResponse.result());
+          // The writer reads its own write from the primary, while other senders still read from the replica
+          vertx.eventBus().send(address, query, writerQuery, (final AsyncResult<Message<Object>> primaryResponse) -> {
+            assertJsonArray(primaryResponse.result().body(), 3);
+            vertx.eventBus().send(address, query, EXECUTE_QUERY, (final AsyncResult<Message<Object>> otherResponse) -> {
+              assertJsonArray(otherResponse.result().body(), 1);
+              vertx.eventBus().send(address + ".metrics", null, new DeliveryOptions().addHeader("action", "stats"), (final AsyncResult<Message<Object>> statsResponse) -> {
+                final JsonObject replica = ((JsonObject) statsResponse.result().body()).getJsonArray("replicas").getJsonObject(0);
+                assertTrue(replica.getBoolean("healthy"));
+                assertEquals(0, (int) replica.getInteger("inFlight"));
+                testComplete();
+              });
+            });
+          });
+        });
+      });
+    });
+    await();
+  }
+  
+  /**
+   * 
+   */
+  @Test
+  public void test_executor_replicas_unhealthy() {
+    final String address = TESTDB_ADDRESS + ".unhealthy";
+    final JsonObject config = new JsonObject()
+      .put("address", address)
+      .put("pool", new JsonObject()
+        .put("jdbcUrl", TESTDB_URL)
+        .put("username", TESTDB_USER)
+        .put("password", TESTDB_PASSWORD)
+      )
+      .put("replicas", new JsonObject()
+        .put("pools", new JsonArray().add(new JsonObject()
+          .put("jdbcUrl", "jdbc:hsqldb:hsql://127.0.0.1:1/none")
+          .put("username", TESTDB_USER)
+          .put("password", TESTDB_PASSWORD)
+          .put("connectionTimeout", 1000)
+        ))
+      );
+    final JsonObject query = new JsonObject().put("sql", "select * from test_user");
+    
+    vertx.deployVerticle("java:cstansbury.vertx.jdbc.JdbcExecutorVerticle", new DeploymentOptions().setConfig(config), deployResult -> {
+      assertTrue(deployResult.succeeded());
+      // The replica is down, so the query falls back to the primary, and the replica is skipped from then on
+      vertx.eventBus().send(address, query, EXECUTE_QUERY, (final AsyncResult<Message<Object>> response) -> {
+        assertJsonArray(response.result().body(), 3);
+        vertx.eventBus().send(address + ".metrics", null, new DeliveryOptions().addHeader("action", "stats"), (final AsyncResult<Message<Object>> statsResponse) -> {
+          final JsonObject replica = ((JsonObject) statsResponse.result().body()).getJsonArray("replicas").getJsonObject(0);
+          assertFalse(replica.getBoolean("healthy"));
+          assertEquals(1, (long) replica.getLong("failures"));
+          testComplete();
+        });
+      });
+    });
+    await();
+  }
+  
+  /**
+   * 
+   */
+  @Test
+  public void test_executor_shards() throws SQLException {
+    final String address = TESTDB_ADDRESS + ".shards";
+    final JsonObject config = new JsonObject()
+      .put("address", address)
+      .put("pool", new JsonObject()
+        .put("jdbcUrl", TESTDB_URL)
+        .put("username", TESTDB_USER)
+        .put("password", TESTDB_PASSWORD)
+      )
+      .put("shards", new JsonObject()
+        .put("pools", new JsonObject()
+          .put("shard1", new JsonObject().put("jdbcUrl", "jdbc:hsqldb:mem:shard1").put("username", TESTDB_USER).put("password", TESTDB_PASSWORD))
+          .put("shard2", new JsonObject().put("jdbcUrl", "jdbc:hsqldb:mem:shard2").put("username", TESTDB_USER).put("password", TESTDB_PASSWORD))
+        )
+        .put("resolver", new JsonObject()
+          .put("type", "lookup")
+          .put("table", new JsonObject().put("acme", "shard1").put("initech", "shard2"))
+        )
+      );
+    
+    // The customers (ids 1 to 6) are split across the shards: odd ids on shard1, even on shard2; ids 1 and 2 are unranked
+    for (int shard = 1; shard <= 2; shard++) {
+      try (final Connection shardConnection = DriverManager.getConnection("jdbc:hsqldb:mem:shard" + shard, TESTDB_USER, TESTDB_PASSWORD);
+        final Statement statement = shardConnection.createStatement()) {
+        statement.execute("drop table customer if exists");
+        statement.execute("create table customer (id integer primary key, tenant varchar(30) not null, rank integer)");
+        for (int id = shard; id <= 6; id += 2) {
+          statement.executeUpdate("insert into customer values(" + id + ", '" + (shard == 1 ? "acme" : "initech") + "', " + (id > 2 ? id : null) + ")");
+        }
+      }
+    }
+    
+    vertx.deployVerticle("java:cstansbury.vertx.jdbc.JdbcExecutorVerticle", new DeploymentOptions().setConfig(config), deployResult -> {
+      assertTrue(deployResult.succeeded());
+      final JsonObject shardQuery = new JsonObject().put("sql", "select * from customer order by id").put("shardKey", "initech");
+      vertx.eventBus().send(address, shardQuery, EXECUTE_QUERY, (final AsyncResult<Message<Object>> shardResponse) -> {
+        final JsonArray rows = assertJsonArray(shardResponse.result().body(), 3);
+        assertEquals(2, (int) rows.getJsonObject(0).getInteger("id"));
+        assertEquals("initech", rows.getJsonObject(2).getString("tenant"));
+        final JsonObject scatterQuery = new JsonObject()
+          .put("sql", "select * from customer order by id desc")
+          .put("scatter", true)
+          .put("orderBy", new JsonArray().add("id desc"))
+          .put("limit", 4);
+        vertx.eventBus().send(address, scatterQuery, EXECUTE_QUERY, (final AsyncResult<Message<Object>> scatterResponse) -> {
+          final JsonArray mergedRows = assertJsonArray(scatterResponse.result().body(), 4);
+          for (int i = 0; i < 4; i++) {
+            assertEquals(6 - i, (int) mergedRows.getJsonObject(i).getInteger("id"));
+          }
+          final JsonObject nullsQuery = new JsonObject()
+            .put("sql", "select * from customer order by rank nulls last, id")
+            .put("scatter", true)
+            .put("orderBy", new JsonArray().add("rank nulls last").add("id"));
+          vertx.eventBus().send(address, nullsQuery, EXECUTE_QUERY, (final AsyncResult<Message<Object>> nullsResponse) -> {
+            final JsonArray nullsRows = assertJsonArray(nullsResponse.result().body(), 6);
+            for (int i = 0; i < 6; i++) {
+              assertEquals(i < 4 ? i + 3 : i - 3, (int) nullsRows.getJsonObject(i).getInteger("id"));
+            }
+            vertx.eventBus().send(address, shardQuery.copy().put("shardKey", "unknown"), EXECUTE_QUERY, (final AsyncResult<Message<Object>> unknownResponse) -> {
+              assertTrue(unknownResponse.failed());
+              testComplete();
+            });
+          });
+        });
+      });
+    });
+    await();
+  }
+  
+  /**
+   * 
+   */
+  @Test
+  public void test_executor_multiRowInsertDialect() {
+    final String address = TESTDB_ADDRESS + ".multiRow";
+    final JsonObject config = new JsonObject()
+      .put("address", address)
+      .put("dialect", "cstansbury.vertx.jdbc.dialect.MultiRowInsertDialect")
+      .put("dialectConfig", new JsonObject()
+        .put("rowsPerStatement", 2)
+        .put("fetchSize", 50)
+      )
+      .put("pool", new JsonObject()
+        .put("jdbcUrl", TESTDB_URL)
+        .put("username", TESTDB_USER)
+        .put("password", TESTDB_PASSWORD)
+      )
+      .put("statementCache", new JsonObject());
+    final JsonArray params = new JsonArray();
+    for (int i = 0; i < 5; i++) {
+      params.add(new JsonArray().add("user" + i + "@test.com").add("User " + i).add(i % 2 == 0 ? "F" : "M"));
+    }
+    final JsonObject insert = new JsonObject()
+      .put("sql", "INSERT INTO test_user(email, name, gender) VALUES (?, ?, ?)")
+      .put("params", params)
+      .put("batch", true);
+    
+    vertx.deployVerticle("java:cstansbury.vertx.jdbc.JdbcExecutorVerticle", new DeploymentOptions().setConfig(config), deployResult -> {
+      assertTrue(deployResult.succeeded());
+      vertx.eventBus().send(address, insert, EXECUTE_UPDATE, (final AsyncResult<Message<Object>> batchResponse) -> {
+        final JsonArray rowCounts = assertJsonObject(batchResponse.result().body()).getJsonArray("rowCount");
+        assertEquals(5, rowCounts.size());
+        for (int i = 0; i < rowCounts.size(); i++) {
+          assertEquals(1, (int) rowCounts.getInteger(i));
+        }
+        assertResultSetExists("select * from test_user where email = 'user4@test.com'");
+        insert.remove("batch");
+        vertx.eventBus().send(address, insert, EXECUTE_UPDATE, (final AsyncResult<Message<Object>> updateResponse) -> {
+          final JsonArray results = assertJsonArray(updateResponse.result().body(), 5);
+          assertEquals(1, (int) results.getJsonObject(4).getInteger("rowCount"));
+          vertx.eventBus().send(address, new JsonObject().put("sql", "select count(*) as total from test_user"), EXECUTE_QUERY, (final AsyncResult<Message<Object>> countResponse) -> {
+            assertEquals(13, (long) assertJsonArray(countResponse.result().body(), 1).getJsonObject(0).getLong("total"));
+            testComplete();
+          });
+        });
+      });
+    });
+    await();
+  }
+  
+  /**
+   * 
+   */
+  @Test
+  public void test_executor_shards_invalidRanges() {
+    final JsonObject config = new JsonObject()
+      .put("address", TESTDB_ADDRESS + ".invalidRanges")
+      .put("pool", new JsonObject()
+        .put("jdbcUrl", TESTDB_URL)
+        .put("username", TESTDB_USER)
+        .put("password", TESTDB_PASSWORD)
+      )
+      .put("shards", new JsonObject()
+        .put("pools", new JsonObject()
+          .put("shard1", new JsonObject().put("jdbcUrl", "jdbc:hsqldb:mem:shard1").put("username", TESTDB_USER).put("password", TESTDB_PASSWORD))
+          .put("shard2", new JsonObject().put("jdbcUrl", "jdbc:hsqldb:mem:shard2").put("username", TESTDB_USER).put("password", TESTDB_PASSWORD))
+        )
+        .put("resolver", new JsonObject()
+          .put("type", "hash")
+          .put("buckets", 1024)
+          .put("ranges", new JsonObject()
+            .put("shard1", new JsonArray().add(0).add(511))
+            .put("shard2", new JsonArray().add(512).add(2047))
+          )
+        )
+      );
+    
+    // The range of shard2 runs past the last bucket; a range of an unknown shard is rejected as well
+    vertx.deployVerticle("java:cstansbury.vertx.jdbc.JdbcExecutorVerticle", new DeploymentOptions().setConfig(config), deployResult -> {
+      assertTrue(deployResult.failed());
+      assertTrue(deployResult.cause().getMessage().contains("Invalid hash range of shard shard2"));
+      
+      config.getJsonObject("shards").getJsonObject("resolver").put("ranges", new JsonObject()
+        .put("shard1", new JsonArray().add(0).add(511))
+        .put("shard3", new JsonArray().add(512).add(1023))
+      );
+      vertx.deployVerticle("java:cstansbury.vertx.jdbc.JdbcExecutorVerticle", new DeploymentOptions().setConfig(config), unknownResult -> {
+        assertTrue(unknownResult.failed());
+        assertTrue(unknownResult.cause().getMessage().contains("Unknown shard of hash range: shard3"));
+        testComplete();
+      });
+    });
+    await();
+  }
+  
+  /**
+   * 
+   */
+  @Test
+  public void test_executor_invalidDialect() {
+    final JsonObject config = new JsonObject()
+      .put("address", TESTDB_ADDRESS + ".invalidDialect")
+      .put("dialect", "cstansbury.vertx.jdbc.dialect.BaseJdbcDialect")
+      .put("dialectConfig", new JsonObject().put("noSuchSetting", true))
+      .put("pool", new JsonObject()
+        .put("jdbcUrl", TESTDB_URL)
+        .put("username", TESTDB_USER)
+        .put("password", TESTDB_PASSWORD)
+      );
+    
+    vertx.deployVerticle("java:cstansbury.vertx.jdbc.JdbcExecutorVerticle", new DeploymentOptions().setConfig(config), deployResult -> {
+      assertTrue(deployResult.failed());
+      assertTrue(deployResult.cause().getMessage().contains("noSuchSetting"));
+      testComplete();
+    });
+    await();
+  }
+  
 }